@@ -0,0 +1,522 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Draws the watch face with Java2D, off the device: the same dial
+ * layout, tick geometry, bezel scales, and style as the watch face,
+ * with its tick, bezel, and hand drawing going through the shared
+ * {@link FaceDrawing} routines on a {@link Java2DFaceCanvas}.
+ *
+ * Lays out once for a surface size, shape, and bezel; after that,
+ * {@link #render} only reads, so one renderer can draw frames on
+ * several threads at once.  Leaves out the face name and the
+ * complications, and draws hand shadows as a few translucent strokes
+ * rather than a blur.
+ */
+public class FaceRenderer {
+    private static final String CONDENSED = "condensed";
+
+    private final int mSurfaceWidthPx;
+    private final int mSurfaceHeightPx;
+    private final float mSurfaceCenterXPx;
+    private final float mSurfaceCenterYPx;
+    private final float mSurfaceVminPx;
+    private final float mDialRadiusPx;
+    private final float mClockDialDiameterPx;
+    private final float mClockDialRadiusPx;
+
+    private final List<DialLayout.DialSpec> mDialSpecs;
+    private final List<DialGeometry.PlainDial> mDials;
+    private final BufferedImage[] mDialTextures;
+    private final BezelScale mBezelScale;
+
+    /* indexed by the FaceStyle hand slots */
+    private final Shape[] mHandPaths = new Shape[FaceStyle.HAND_COUNT];
+    private final Color[] mHandColors = new Color[FaceStyle.HAND_COUNT];
+    private final float[] mHandShadowRadiiPx = new float[FaceStyle.HAND_COUNT];
+    private final boolean[] mHandNonAmbientOnly = new boolean[FaceStyle.HAND_COUNT];
+    private final float[] mHandCenterXPx = new float[FaceStyle.HAND_COUNT];
+    private final float[] mHandCenterYPx = new float[FaceStyle.HAND_COUNT];
+    private final float[] mHandStartAngle = new float[FaceStyle.HAND_COUNT];
+    private final float[] mHandSweepAngle = new float[FaceStyle.HAND_COUNT];
+
+    private final Font mFont;
+    private final Font mCondensedFont;
+    private final Font mDayDateFont;
+    private final Font mCondensedDayDateFont;
+    private final Rectangle2D.Float mDayWindow = new Rectangle2D.Float();
+    private final Rectangle2D.Float mDateWindow = new Rectangle2D.Float();
+    private final float mDayDateMaxDayWidthPx;
+    private final AffineTransform mDayDateZoomTransform;
+    private final float mDayDateZoomScale;
+    private final float mDayDateZoomFixedXPx;
+    private final float mDayDateZoomFixedYPx;
+
+    public FaceRenderer(DialLayout layout, int surfaceWidthPx, int surfaceHeightPx, boolean isRound,
+                        Utility.BezelType bezelType) {
+        mSurfaceWidthPx = surfaceWidthPx;
+        mSurfaceHeightPx = surfaceHeightPx;
+        mSurfaceCenterXPx = surfaceWidthPx / 2f;
+        mSurfaceCenterYPx = surfaceHeightPx / 2f;
+        mSurfaceVminPx = Math.min(surfaceWidthPx, surfaceHeightPx);
+
+        mBezelScale = BezelScale.forType(bezelType);
+        float dialDiameterPx = DialGeometry.getDialDiameterPx(surfaceWidthPx, surfaceHeightPx, isRound);
+        mDialRadiusPx = dialDiameterPx / 2;
+        mClockDialDiameterPx = mBezelScale != null ? dialDiameterPx * mBezelScale.innerDiameter : dialDiameterPx;
+        mClockDialRadiusPx = mClockDialDiameterPx / 2;
+        if (mBezelScale != null) {
+            mBezelScale.build(mSurfaceCenterXPx, mSurfaceCenterYPx, mDialRadiusPx);
+        }
+
+        mDialSpecs = layout.getDials();
+        mDials = layout.createPlainDials();
+        mDialTextures = new BufferedImage[mDials.size()];
+        for (int i = 0; i < mDials.size(); i += 1) {
+            DialGeometry.PlainDial dial = mDials.get(i);
+            dial.layout(mSurfaceCenterXPx, mSurfaceCenterYPx, mClockDialDiameterPx);
+            dial.computeTickLines(mSurfaceVminPx);
+            if (mDialSpecs.get(i).backgroundStyle == Utility.WatchDialBackgroundStyle.CONIC_GRADIENT) {
+                mDialTextures[i] = createConicTexture(getTextureRadiusPx(dial));
+            }
+        }
+
+        for (int i = 0; i < FaceStyle.HAND_COUNT; i += 1) {
+            DialLayout.HandSpec spec = layout.getHand(FaceStyle.HAND_NAMES[i]);
+            DialGeometry.PlainDial dial = mDials.get(mDialSpecs.indexOf(layout.getDial(spec.dialName)));
+            mHandCenterXPx[i] = dial.centerXPx;
+            mHandCenterYPx[i] = dial.centerYPx;
+            mHandStartAngle[i] = dial.startAngle;
+            mHandSweepAngle[i] = dial.endAngle - dial.startAngle;
+            mHandPaths[i] = createHandPath(spec, dial);
+            mHandColors[i] = new Color(FaceStyle.getHandColor(spec.color), true);
+            mHandShadowRadiiPx[i] = spec.shadowRadiusPx;
+            mHandNonAmbientOnly[i] = spec.nonAmbientOnly || layout.getDial(spec.dialName).nonAmbientOnly;
+        }
+
+        mFont = new Font(Font.SANS_SERIF, Font.PLAIN, 1);
+        mCondensedFont = condense(mFont);
+        mDayDateFont = mFont.deriveFont(getClockDialTextSizePx(FaceStyle.DAY_DATE_TEXT_SIZE_VMIN));
+        mCondensedDayDateFont = condense(mDayDateFont);
+
+        /* same measurements as the watch face's updateDayDateWindows */
+        FontRenderContext frc = new FontRenderContext(null, true, true);
+        float maxDayWidthPx = 0f;
+        Calendar calendar = Calendar.getInstance();
+        for (String dayText : calendar.getDisplayNames(Calendar.DAY_OF_WEEK, Calendar.SHORT, Locale.getDefault()).keySet()) {
+            dayText = dayText.toUpperCase();
+            maxDayWidthPx = Math.max(maxDayWidthPx, getTextWidthPx(mCondensedDayDateFont, frc, dayText));
+        }
+        mDayDateMaxDayWidthPx = maxDayWidthPx;
+        float maxDateWidthPx = 0f;
+        for (int date = 1; date <= 31; date += 1) {
+            maxDateWidthPx = Math.max(maxDateWidthPx, getTextWidthPx(mDayDateFont, frc, Integer.toString(date)));
+        }
+        float dayDateTextSizePx = getClockDialTextSizePx(FaceStyle.DAY_DATE_TEXT_SIZE_VMIN);
+        float dateWindowRightXPx = mSurfaceCenterXPx + mClockDialRadiusPx * FaceStyle.DAY_DATE_OUTER_VMIN;
+        float dateWindowLeftXPx = dateWindowRightXPx - maxDateWidthPx - mClockDialDiameterPx * 0.02f;
+        float dayWindowRightXPx = dateWindowLeftXPx - mClockDialDiameterPx * 0.01f;
+        float dayWindowLeftXPx = dayWindowRightXPx - maxDayWidthPx - mClockDialDiameterPx * 0.02f;
+        float dayDateTopPx = mSurfaceCenterYPx - dayDateTextSizePx * 0.5f;
+        mDayWindow.setRect(dayWindowLeftXPx, dayDateTopPx, dayWindowRightXPx - dayWindowLeftXPx, dayDateTextSizePx);
+        mDateWindow.setRect(dateWindowLeftXPx, dayDateTopPx, dateWindowRightXPx - dateWindowLeftXPx, dayDateTextSizePx);
+
+        mDayDateZoomTransform = createZoomTransform(dayWindowLeftXPx, dateWindowRightXPx,
+                dayDateTopPx, dayDateTopPx + dayDateTextSizePx);
+        mDayDateZoomScale = (float) mDayDateZoomTransform.getScaleX();
+        if (mDayDateZoomScale != 1f) {
+            mDayDateZoomFixedXPx = (float) mDayDateZoomTransform.getTranslateX() / (1f - mDayDateZoomScale);
+            mDayDateZoomFixedYPx = (float) mDayDateZoomTransform.getTranslateY() / (1f - mDayDateZoomScale);
+        } else {
+            mDayDateZoomFixedXPx = mSurfaceCenterXPx;
+            mDayDateZoomFixedYPx = mSurfaceCenterYPx;
+        }
+    }
+
+    /**
+     * Reads the named layout from the dial layout file bundled with
+     * the renderer.
+     */
+    public static DialLayout readDefaultLayout() throws IOException {
+        InputStream in = FaceRenderer.class.getResourceAsStream("/dial_layout.txt");
+        if (in == null) {
+            throw new IOException("dial_layout.txt not on the classpath");
+        }
+        try {
+            return DialLayout.read(in, DialLayout.DEFAULT_LAYOUT_NAME);
+        } finally {
+            in.close();
+        }
+    }
+
+    public int getWidth() {
+        return mSurfaceWidthPx;
+    }
+
+    public int getHeight() {
+        return mSurfaceHeightPx;
+    }
+
+    /**
+     * A rendered frame, with what it took to draw.
+     */
+    public static class RenderedFrame {
+        public final BufferedImage image;
+        public final int drawOpCount;
+        public final long renderTimeNs;
+
+        RenderedFrame(BufferedImage image, int drawOpCount, long renderTimeNs) {
+            this.image = image;
+            this.drawOpCount = drawOpCount;
+            this.renderTimeNs = renderTimeNs;
+        }
+    }
+
+    public BufferedImage render(FrameState state) {
+        return renderFrame(state).image;
+    }
+
+    public RenderedFrame renderFrame(FrameState state) {
+        long startNs = System.nanoTime();
+        BufferedImage image = new BufferedImage(mSurfaceWidthPx, mSurfaceHeightPx, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Java2DFaceCanvas p = new Java2DFaceCanvas(g, mFont);
+        p.setHands(mHandPaths, mHandColors, mHandShadowRadiiPx);
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            drawFrame(p, state);
+        } finally {
+            g.dispose();
+        }
+        return new RenderedFrame(image, p.drawOpCount, System.nanoTime() - startNs);
+    }
+
+    private void drawFrame(Java2DFaceCanvas p, FrameState state) {
+        p.g.setColor(Color.BLACK);
+        p.fill(new Rectangle2D.Float(0, 0, mSurfaceWidthPx, mSurfaceHeightPx));
+        if (state.zoomProgress > 0f) {
+            p.g.transform(getZoomTransform(state.zoomProgress));
+        }
+        drawClockDial(p, state.ambient);
+        for (int i = 0; i < mDials.size(); i += 1) {
+            drawDial(p, i, state.ambient);
+        }
+        drawDate(p, state);
+        drawBezel(p, state);
+        drawHands(p, state);
+    }
+
+    // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+    private void drawClockDial(Java2DFaceCanvas p, boolean ambient) {
+        p.g.setColor(Color.WHITE);
+        p.fill(new Rectangle2D.Float(0, 0, mSurfaceWidthPx, mSurfaceHeightPx));
+
+        Area dialArea = new Area(new Rectangle2D.Float(0, 0, mSurfaceWidthPx, mSurfaceHeightPx));
+        dialArea.subtract(new Area(mDayWindow));
+        dialArea.subtract(new Area(mDateWindow));
+        if (!ambient) {
+            /* the watch face's 2px shadow layer, as seen inside the windows */
+            p.g.setColor(new Color(0, 0, 0, 0x60));
+            p.g.setStroke(new BasicStroke(4f));
+            p.draw(mDayWindow);
+            p.draw(mDateWindow);
+        }
+        p.g.setColor(ambient ? Color.BLACK : new Color(FaceStyle.BACKGROUND_COLOR, true));
+        p.fill(dialArea);
+    }
+
+    private void drawDial(Java2DFaceCanvas p, int index, boolean ambient) {
+        DialLayout.DialSpec spec = mDialSpecs.get(index);
+        DialGeometry.PlainDial dial = mDials.get(index);
+        if (ambient && spec.nonAmbientOnly) {
+            return;
+        }
+        if (!ambient) {
+            drawDialBackground(p, index);
+            drawTicks(p, dial, false, true);
+            drawCircles(p, dial, false, true);
+            drawText(p, spec, dial, false, true);
+        }
+        drawTicks(p, dial, ambient, false);
+        drawCircles(p, dial, ambient, false);
+        drawText(p, spec, dial, ambient, false);
+    }
+
+    private void drawDialBackground(Java2DFaceCanvas p, int index) {
+        DialLayout.DialSpec spec = mDialSpecs.get(index);
+        DialGeometry.PlainDial dial = mDials.get(index);
+        Shape circle = circle(dial.centerXPx, dial.centerYPx, dial.radiusPx);
+        if (spec.filled) {
+            p.g.setColor(new Color(FaceStyle.BACKGROUND_COLOR, true));
+            p.fill(circle);
+        }
+        if (spec.backgroundBrightness < 0f) {
+            float darkness = -1 * Utility.clamp(spec.backgroundBrightness, -1f, 0f);
+            p.g.setColor(new Color(0, 0, 0, Math.round(255 * darkness)));
+            p.fill(circle);
+        } else if (spec.backgroundBrightness > 0f) {
+            float brightness = Utility.clamp(spec.backgroundBrightness, 0f, 1f);
+            p.g.setColor(new Color(255, 255, 255, Math.round(255 * brightness)));
+            p.fill(circle);
+        }
+
+        BufferedImage texture = mDialTextures[index];
+        if (texture == null) {
+            return;
+        }
+        Shape oldClip = p.g.getClip();
+        if (!isFullCircle(dial)) {
+            p.g.clip(getSectorShape(dial, getTextureRadiusPx(dial)));
+        }
+        p.drawImage(texture,
+                Math.round(dial.centerXPx - texture.getWidth() / 2f),
+                Math.round(dial.centerYPx - texture.getHeight() / 2f));
+        p.g.setClip(oldClip);
+    }
+
+    private void drawTicks(Java2DFaceCanvas p, DialGeometry.PlainDial dial, boolean ambient, boolean isShadow) {
+        for (DialGeometry.TickSet tickSet : dial.tickSets) {
+            FaceDrawing.drawTickSet(p, tickSet, FaceStyle.TICK_COLOR, mSurfaceVminPx, ambient, isShadow,
+                    FaceStyle.DIAL_SHADOW_DX_PX, FaceStyle.DIAL_SHADOW_DY_PX);
+        }
+    }
+
+    private void drawCircles(Java2DFaceCanvas p, DialGeometry.PlainDial dial, boolean ambient, boolean isShadow) {
+        float strokeWidthPx = dial.getCircleStrokeWidth(mSurfaceVminPx);
+        if (strokeWidthPx == 0f) {
+            return;
+        }
+        p.setStroke(FaceDrawing.getLineColor(FaceStyle.TICK_COLOR, ambient, isShadow),
+                Math.max(DialGeometry.MINIMUM_STROKE_WIDTH_PX, strokeWidthPx));
+        float dy = isShadow ? FaceStyle.DIAL_SHADOW_DY_PX : 0f;
+        if (dial.circle1Diameter != 0f) {
+            drawArc(p, dial, dial.circle1Diameter * dial.contentRadiusPx, dy);
+        }
+        if (dial.circle2Diameter != 0f) {
+            drawArc(p, dial, dial.circle2Diameter * dial.contentRadiusPx, dy);
+        }
+    }
+
+    /**
+     * Strokes the dial's arc, or its two arcs either side of the
+     * excluded range.  Java2D angles run counterclockwise from three
+     * o'clock, so the watch face's are negated.
+     */
+    private void drawArc(Java2DFaceCanvas p, DialGeometry.PlainDial dial, float radiusPx, float dy) {
+        float startAngle = Math.min(dial.startAngle, dial.endAngle);
+        float sweepAngle = Math.abs(dial.endAngle - dial.startAngle);
+        float x = dial.centerXPx - radiusPx;
+        float y = dial.centerYPx - radiusPx + dy;
+        if (dial.excludeTicksFrom == 0f && dial.excludeTicksTo == 0f) {
+            p.draw(new Arc2D.Float(x, y, radiusPx * 2, radiusPx * 2,
+                    90f - startAngle, -sweepAngle, Arc2D.OPEN));
+        } else {
+            p.draw(new Arc2D.Float(x, y, radiusPx * 2, radiusPx * 2,
+                    90f - startAngle, -sweepAngle * dial.excludeTicksFrom, Arc2D.OPEN));
+            p.draw(new Arc2D.Float(x, y, radiusPx * 2, radiusPx * 2,
+                    90f - startAngle - sweepAngle * dial.excludeTicksTo,
+                    -(sweepAngle - sweepAngle * dial.excludeTicksTo), Arc2D.OPEN));
+        }
+    }
+
+    private void drawText(Java2DFaceCanvas p, DialLayout.DialSpec spec, DialGeometry.PlainDial dial,
+                          boolean ambient, boolean isShadow) {
+        if (spec.texts.isEmpty()) {
+            return;
+        }
+        Font font = CONDENSED.equals(spec.typeface) ? mCondensedFont : mFont;
+        p.setText(isShadow ? FaceStyle.BLACK : FaceStyle.WHITE,
+                font.deriveFont(getClockDialTextSizePx(FaceStyle.DEFAULT_TEXT_SIZE_VMIN)));
+        float dy = isShadow ? FaceStyle.DIAL_SHADOW_DY_PX : 0f;
+        for (DialLayout.TextSpec text : spec.texts) {
+            float angle = dial.startAngle + (dial.endAngle - dial.startAngle) * text.rotation;
+            /* horizontal text: rotated out to its place, then back upright */
+            float distancePx = dial.contentRadiusPx * 0.6f;
+            float xPx = dial.centerXPx + distancePx * Utility.sinDegrees(angle);
+            float yPx = dial.centerYPx - distancePx * Utility.cosDegrees(angle) + dy;
+            p.drawVerticallyCenteredText(text.text, xPx, yPx);
+        }
+    }
+
+    private void drawDate(Java2DFaceCanvas p, FrameState state) {
+        String dayText = state.dayText;
+        FontRenderContext frc = p.g.getFontRenderContext();
+        boolean condensed = getTextWidthPx(mDayDateFont, frc, dayText) > mDayDateMaxDayWidthPx;
+        p.setText(FaceStyle.BLACK, condensed ? mCondensedDayDateFont : mDayDateFont);
+        p.drawVerticallyCenteredText(dayText, (float) mDayWindow.getCenterX(), mSurfaceCenterYPx);
+        p.setText(FaceStyle.BLACK, mDayDateFont);
+        p.drawVerticallyCenteredText(Integer.toString(state.dayOfMonth), (float) mDateWindow.getCenterX(), mSurfaceCenterYPx);
+    }
+
+    private void drawBezel(Java2DFaceCanvas p, FrameState state) {
+        if (mBezelScale == null) {
+            return;
+        }
+        p.save();
+        p.rotate(state.bezelRotationDegrees, mSurfaceCenterXPx, mSurfaceCenterYPx);
+        FaceDrawing.drawBezel(p, mBezelScale, mSurfaceCenterXPx, mSurfaceCenterYPx,
+                getClockDialTextSizePx(FaceStyle.BEZEL_TEXT_SIZE_VMIN), FaceStyle.TICK_COLOR, state.ambient);
+        p.restore();
+    }
+
+    private void drawHands(Java2DFaceCanvas p, FrameState state) {
+        float[] rotations = new float[FaceStyle.HAND_COUNT];
+        FaceDrawing.getHandRotations(state, FaceStyle.PUT_CHRONOGRAPH_SECONDS_ON_SUB_DIAL, rotations);
+        FaceDrawing.drawHands(p, rotations, mHandCenterXPx, mHandCenterYPx, mHandStartAngle, mHandSweepAngle,
+                mHandNonAmbientOnly, state.ambient);
+    }
+
+    // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+    /**
+     * The watch face's hand outline, pointing to 12 o'clock.
+     */
+    private Shape createHandPath(DialLayout.HandSpec spec, DialGeometry.PlainDial dial) {
+        float widthPx = spec.widthVmin * mClockDialDiameterPx;
+        final Path2D.Float path = new Path2D.Float();
+        final Area area = new Area();
+        FaceDrawing.traceHand(new FaceDrawing.HandOutline() {
+            @Override
+            public void moveTo(float xPx, float yPx) {
+                path.moveTo(xPx, yPx);
+            }
+
+            @Override
+            public void lineTo(float xPx, float yPx) {
+                path.lineTo(xPx, yPx);
+            }
+
+            @Override
+            public void close() {
+                path.closePath();
+            }
+
+            @Override
+            public void addShroud(float centerXPx, float centerYPx, float radiusPx, float holeRadiusPx) {
+                area.add(new Area(path));
+                area.add(new Area(circle(centerXPx, centerYPx, radiusPx)));
+                area.subtract(new Area(circle(centerXPx, centerYPx, holeRadiusPx)));
+            }
+        }, dial.centerXPx, dial.centerYPx,
+                spec.lengthPctRadius * dial.contentRadiusPx, spec.lengthBehindPctRadius * dial.contentRadiusPx,
+                widthPx, spec.hasArrowHead, FaceStyle.ARROW_HEAD_ANGLE, FaceStyle.ARROW_HEAD_SIZE,
+                FaceDrawing.getShroudRadiusPx(mClockDialRadiusPx, widthPx),
+                FaceDrawing.getShroudHoleRadiusPx(mClockDialRadiusPx));
+        return area;
+    }
+
+    private static BufferedImage createConicTexture(float radiusPx) {
+        int sizePx = ConicGradient.getSizePx(radiusPx);
+        int[] pixels = ConicGradient.render(radiusPx, FaceStyle.CONIC_HIGHLIGHT, FaceStyle.CONIC_SHADOW, ConicGradient.DEFAULT_LIGHT_ANGLE);
+        BufferedImage texture = new BufferedImage(sizePx, sizePx, BufferedImage.TYPE_INT_ARGB);
+        texture.setRGB(0, 0, sizePx, sizePx, pixels, 0, sizePx);
+        return texture;
+    }
+
+    private static float getTextureRadiusPx(DialGeometry.PlainDial dial) {
+        float textureRadiusPx = dial.contentRadiusPx;
+        if (dial.circle1Diameter != 0f) {
+            textureRadiusPx = Math.min(textureRadiusPx, dial.circle1Diameter * dial.contentRadiusPx);
+        }
+        if (dial.circle2Diameter != 0f) {
+            textureRadiusPx = Math.min(textureRadiusPx, dial.circle2Diameter * dial.contentRadiusPx);
+        }
+        return textureRadiusPx;
+    }
+
+    private static boolean isFullCircle(DialGeometry.PlainDial dial) {
+        return dial.startAngle == 0f && dial.endAngle == 360f && dial.excludeTicksFrom == 0f && dial.excludeTicksTo == 0f;
+    }
+
+    private static Shape getSectorShape(DialGeometry.PlainDial dial, float radiusPx) {
+        float startAngle = Math.min(dial.startAngle, dial.endAngle);
+        float sweepAngle = Math.abs(dial.endAngle - dial.startAngle);
+        float x = dial.centerXPx - radiusPx;
+        float y = dial.centerYPx - radiusPx;
+        if (dial.excludeTicksFrom == 0f && dial.excludeTicksTo == 0f) {
+            return new Arc2D.Float(x, y, radiusPx * 2, radiusPx * 2, 90f - startAngle, -sweepAngle, Arc2D.PIE);
+        }
+        Area area = new Area(new Arc2D.Float(x, y, radiusPx * 2, radiusPx * 2,
+                90f - startAngle, -sweepAngle * dial.excludeTicksFrom, Arc2D.PIE));
+        area.add(new Area(new Arc2D.Float(x, y, radiusPx * 2, radiusPx * 2,
+                90f - startAngle - sweepAngle * dial.excludeTicksTo,
+                -(sweepAngle - sweepAngle * dial.excludeTicksTo), Arc2D.PIE)));
+        return area;
+    }
+
+    /**
+     * The watch face's setZoomMatrix: the rectangle, plus a little,
+     * scaled up to fill the surface.
+     */
+    private AffineTransform createZoomTransform(float x1, float x2, float y1, float y2) {
+        float fudge = mSurfaceVminPx * 0.02f;
+        x1 = Math.max(x1 - fudge, 0);
+        x2 = Math.min(x2 + fudge, mSurfaceWidthPx);
+        y1 = Math.max(y1 - fudge, 0);
+        y2 = Math.min(y2 + fudge, mSurfaceHeightPx);
+        float dx = (x1 + x2) / 2f - mSurfaceCenterXPx;
+        float dy = (y1 + y2) / 2f - mSurfaceCenterYPx;
+        float scale = Math.min(mSurfaceWidthPx / (x2 - x1), mSurfaceHeightPx / (y2 - y1));
+        AffineTransform transform = new AffineTransform();
+        transform.translate(mSurfaceCenterXPx, mSurfaceCenterYPx);
+        transform.scale(scale, scale);
+        transform.translate(-mSurfaceCenterXPx - dx, -mSurfaceCenterYPx - dy);
+        return transform;
+    }
+
+    /**
+     * The watch face's setZoomAnimationMatrix.
+     */
+    private AffineTransform getZoomTransform(float progress) {
+        if (progress >= 1f) {
+            return mDayDateZoomTransform;
+        }
+        double scale = Math.pow(mDayDateZoomScale, progress);
+        AffineTransform transform = new AffineTransform();
+        transform.translate(mDayDateZoomFixedXPx, mDayDateZoomFixedYPx);
+        transform.scale(scale, scale);
+        transform.translate(-mDayDateZoomFixedXPx, -mDayDateZoomFixedYPx);
+        return transform;
+    }
+
+    private float getClockDialTextSizePx(float vmin) {
+        return mClockDialDiameterPx * vmin;
+    }
+
+    private static float getTextWidthPx(Font font, FontRenderContext frc, String text) {
+        return (float) font.createGlyphVector(frc, text).getVisualBounds().getWidth();
+    }
+
+    /* no condensed family to count on off the device */
+    private static Font condense(Font font) {
+        return font.deriveFont(AffineTransform.getScaleInstance(0.82, 1.0));
+    }
+
+    private static Ellipse2D.Float circle(float centerXPx, float centerYPx, float radiusPx) {
+        return new Ellipse2D.Float(centerXPx - radiusPx, centerYPx - radiusPx, radiusPx * 2, radiusPx * 2);
+    }
+}
@@ -0,0 +1,145 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+
+/**
+ * {@link FaceCanvas} on one frame's Graphics2D, counting every stroke,
+ * fill, text run, and image drawn: the calls that would each be a
+ * canvas draw call on the watch.
+ */
+class Java2DFaceCanvas implements FaceCanvas {
+    final Graphics2D g;
+    int drawOpCount = 0;
+
+    private final Font mFont;
+    private final ArrayDeque<AffineTransform> mSavedTransforms = new ArrayDeque<AffineTransform>();
+    private final Line2D.Float mLine = new Line2D.Float();
+
+    private Shape[] mHandShapes;
+    private Color[] mHandColors;
+    private float[] mHandShadowRadiiPx;
+
+    Java2DFaceCanvas(Graphics2D g, Font font) {
+        this.g = g;
+        mFont = font;
+    }
+
+    void setHands(Shape[] shapes, Color[] colors, float[] shadowRadiiPx) {
+        mHandShapes = shapes;
+        mHandColors = colors;
+        mHandShadowRadiiPx = shadowRadiiPx;
+    }
+
+    void draw(Shape shape) {
+        drawOpCount += 1;
+        g.draw(shape);
+    }
+
+    void fill(Shape shape) {
+        drawOpCount += 1;
+        g.fill(shape);
+    }
+
+    void drawImage(BufferedImage image, int xPx, int yPx) {
+        drawOpCount += 1;
+        g.drawImage(image, xPx, yPx, null);
+    }
+
+    /**
+     * Like {@link #setText}, in a font other than the regular one.
+     */
+    void setText(int color, Font font) {
+        g.setColor(new Color(color, true));
+        g.setFont(font);
+    }
+
+    @Override
+    public void save() {
+        mSavedTransforms.push(g.getTransform());
+    }
+
+    @Override
+    public void restore() {
+        g.setTransform(mSavedTransforms.pop());
+    }
+
+    @Override
+    public void translate(float dxPx, float dyPx) {
+        g.translate(dxPx, dyPx);
+    }
+
+    @Override
+    public void rotate(float degrees, float pivotXPx, float pivotYPx) {
+        g.rotate(Math.toRadians(degrees), pivotXPx, pivotYPx);
+    }
+
+    @Override
+    public boolean quickReject(float leftPx, float topPx, float rightPx, float bottomPx) {
+        Shape clip = g.getClip();
+        return clip != null && !clip.intersects(leftPx, topPx, rightPx - leftPx, bottomPx - topPx);
+    }
+
+    @Override
+    public void setStroke(int color, float widthPx) {
+        g.setColor(new Color(color, true));
+        g.setStroke(new BasicStroke(widthPx, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+    }
+
+    @Override
+    public void setText(int color, float sizePx) {
+        setText(color, mFont.deriveFont(sizePx));
+    }
+
+    @Override
+    public void drawCircle(float centerXPx, float centerYPx, float radiusPx) {
+        draw(new Ellipse2D.Float(centerXPx - radiusPx, centerYPx - radiusPx, radiusPx * 2, radiusPx * 2));
+    }
+
+    @Override
+    public void drawLines(float[] lines) {
+        for (int i = 0; i + 3 < lines.length; i += 4) {
+            mLine.setLine(lines[i], lines[i + 1], lines[i + 2], lines[i + 3]);
+            draw(mLine);
+        }
+    }
+
+    @Override
+    public void drawVerticallyCenteredText(String text, float xPx, float yPx) {
+        FontRenderContext frc = g.getFontRenderContext();
+        float widthPx = (float) g.getFont().getStringBounds(text, frc).getWidth();
+        drawOpCount += 1;
+        g.drawString(text, xPx - widthPx / 2f, yPx + g.getFont().getSize2D() * FaceStyle.TEXT_CAP_HEIGHT / 2f);
+    }
+
+    /**
+     * Approximates the watch's blurred shadow layer with strokes of the
+     * outline, widest and faintest first.
+     */
+    @Override
+    public void drawHand(int slot, boolean ambient) {
+        Shape shape = mHandShapes[slot];
+        if (!ambient) {
+            float radiusPx = mHandShadowRadiiPx[slot];
+            int steps = (int) Math.ceil(radiusPx);
+            if (steps > 0) {
+                g.setColor(new Color(0, 0, 0, Math.max(1, 96 / steps)));
+                for (int i = steps; i >= 1; i -= 1) {
+                    g.setStroke(new BasicStroke(2f * radiusPx * i / steps, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+                    draw(shape);
+                }
+            }
+        }
+        g.setColor(ambient ? Color.WHITE : mHandColors[slot]);
+        fill(shape);
+    }
+}
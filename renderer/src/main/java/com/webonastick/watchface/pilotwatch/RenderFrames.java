@@ -0,0 +1,241 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders watch face frames to PNG files from the command line, e.g.
+ * for store screenshots or to see a layout change at sizes no device
+ * at hand has.  With --frames, renders a time-lapse, one frame per
+ * step, spread over every core.  Run with --help for the options.
+ */
+public class RenderFrames {
+    private static final String TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+    private static final String SHORT_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+    /* the time the watch face's demo mode shows */
+    private static final String DEMO_TIME = "2019-06-30T10:10:32.000";
+    private static final long DEMO_CHRONOGRAPH_MS = 650 + 1000 * (32 + 60 * (10 + 600));
+
+    private static final int DEFAULT_SIZE_PX = 454;
+    private static final int SECOND_HAND_TICK_MS = 200;
+
+    private static final String USAGE =
+            "usage: RenderFrames [options]\n" +
+            "  --size WxH            surface size in pixels (default 454x454)\n" +
+            "  --square              square screen (default round)\n" +
+            "  --time T              wall time, yyyy-MM-ddTHH:mm:ss[.SSS] (default the demo time)\n" +
+            "  --stopwatch MS        stopwatch time (default the demo's)\n" +
+            "  --running             the stopwatch runs along with the time-lapse\n" +
+            "  --battery PCT         battery level (default 100)\n" +
+            "  --ambient             ambient mode\n" +
+            "  --zoom P              day/date zoom, 0 to 1 (default 0)\n" +
+            "  --bezel TYPE          none, slide-rule, tachymeter, telemeter, pulsometer,\n" +
+            "                        decimal-minutes, elapsed-time (default none)\n" +
+            "  --bezel-rotation DEG  bezel rotation (default 0)\n" +
+            "  --layout FILE         dial layout file (default the watch face's)\n" +
+            "  --frames N            render a time-lapse of N frames\n" +
+            "  --step MS             time between time-lapse frames (default 1000)\n" +
+            "  --threads N           threads for a time-lapse (default one per core)\n" +
+            "  --out FILE            output PNG; for a time-lapse, a String.format\n" +
+            "                        pattern taking the frame number (default frame.png,\n" +
+            "                        frame%04d.png)\n";
+
+    /**
+     * What one frame shows, apart from the time offset.
+     */
+    static class FrameSpec {
+        long timeMs;
+        long stopwatchMs = DEMO_CHRONOGRAPH_MS;
+        boolean stopwatchRunning = false;
+        float batteryFraction = 1f;
+        boolean ambient = false;
+        float zoomProgress = 0f;
+        float bezelRotationDegrees = 0f;
+
+        FrameSpec() {
+            timeMs = parseTime(DEMO_TIME);
+        }
+
+        FrameState createFrameState(long offsetMs) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(timeMs + offsetMs);
+            long chronographMs = stopwatchRunning ? stopwatchMs + offsetMs : stopwatchMs;
+            return new FrameState(timeMs + offsetMs, calendar, chronographMs, batteryFraction,
+                    ambient, zoomProgress, SECOND_HAND_TICK_MS, bezelRotationDegrees, 0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int widthPx = DEFAULT_SIZE_PX;
+        int heightPx = DEFAULT_SIZE_PX;
+        boolean isRound = true;
+        Utility.BezelType bezelType = Utility.BezelType.BEZEL_NONE;
+        String layoutPath = null;
+        int frameCount = 0;
+        long stepMs = 1000;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        String out = null;
+        FrameSpec spec = new FrameSpec();
+
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                String arg = args[i];
+                if (arg.equals("--help")) {
+                    System.out.print(USAGE);
+                    return;
+                } else if (arg.equals("--square")) {
+                    isRound = false;
+                } else if (arg.equals("--running")) {
+                    spec.stopwatchRunning = true;
+                } else if (arg.equals("--ambient")) {
+                    spec.ambient = true;
+                } else if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value for " + arg);
+                } else if (arg.equals("--size")) {
+                    String[] size = args[++i].split("x");
+                    if (size.length != 2) {
+                        throw new IllegalArgumentException("bad size " + args[i]);
+                    }
+                    widthPx = Integer.parseInt(size[0]);
+                    heightPx = Integer.parseInt(size[1]);
+                } else if (arg.equals("--time")) {
+                    spec.timeMs = parseTime(args[++i]);
+                } else if (arg.equals("--stopwatch")) {
+                    spec.stopwatchMs = Long.parseLong(args[++i]);
+                } else if (arg.equals("--battery")) {
+                    spec.batteryFraction = Float.parseFloat(args[++i]) / 100f;
+                } else if (arg.equals("--zoom")) {
+                    spec.zoomProgress = Utility.clamp(Float.parseFloat(args[++i]), 0f, 1f);
+                } else if (arg.equals("--bezel")) {
+                    bezelType = parseBezelType(args[++i]);
+                } else if (arg.equals("--bezel-rotation")) {
+                    spec.bezelRotationDegrees = Float.parseFloat(args[++i]);
+                } else if (arg.equals("--layout")) {
+                    layoutPath = args[++i];
+                } else if (arg.equals("--frames")) {
+                    frameCount = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--step")) {
+                    stepMs = Long.parseLong(args[++i]);
+                } else if (arg.equals("--threads")) {
+                    threadCount = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (arg.equals("--out")) {
+                    out = args[++i];
+                } else {
+                    throw new IllegalArgumentException("unknown option " + arg);
+                }
+            }
+            if (widthPx <= 0 || heightPx <= 0) {
+                throw new IllegalArgumentException("bad size " + widthPx + "x" + heightPx);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        DialLayout layout = layoutPath == null ? FaceRenderer.readDefaultLayout() : readLayout(layoutPath);
+        FaceRenderer renderer = new FaceRenderer(layout, widthPx, heightPx, isRound, bezelType);
+
+        if (frameCount <= 0) {
+            write(renderer.render(spec.createFrameState(0)), new File(out == null ? "frame.png" : out));
+            return;
+        }
+        renderTimeLapse(renderer, spec, frameCount, stepMs, threadCount, out == null ? "frame%04d.png" : out);
+    }
+
+    /**
+     * Renders and writes every frame on a pool of threads sharing the
+     * one renderer; fails on the first frame that does.
+     */
+    static void renderTimeLapse(final FaceRenderer renderer, final FrameSpec spec, int frameCount,
+                                final long stepMs, int threadCount, final String pattern)
+            throws IOException, InterruptedException {
+        long startNs = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int frame = 0; frame < frameCount; frame += 1) {
+                final int frameNumber = frame;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        BufferedImage image = renderer.render(spec.createFrameState(frameNumber * stepMs));
+                        write(image, new File(String.format(Locale.US, pattern, frameNumber)));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.err.println(String.format(Locale.US, "%d frames in %.2f s on %d threads",
+                frameCount, (System.nanoTime() - startNs) / 1e9, threadCount));
+    }
+
+    private static void write(BufferedImage image, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("no PNG writer");
+        }
+    }
+
+    private static DialLayout readLayout(String path) throws IOException {
+        InputStream in = new FileInputStream(path);
+        try {
+            return DialLayout.read(in, DialLayout.DEFAULT_LAYOUT_NAME);
+        } finally {
+            in.close();
+        }
+    }
+
+    static long parseTime(String text) {
+        String format = text.indexOf('.') >= 0 ? TIME_FORMAT : SHORT_TIME_FORMAT;
+        try {
+            Date date = new SimpleDateFormat(format, Locale.US).parse(text);
+            return date.getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("bad time " + text);
+        }
+    }
+
+    static Utility.BezelType parseBezelType(String name) {
+        try {
+            return Utility.BezelType.valueOf("BEZEL_" + name.toUpperCase(Locale.US).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad bezel type " + name);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.webonastick.watchface.pilotwatch;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders canonical frames with the headless renderer and checks them
+ * against the golden images in src/test/resources/golden, and their
+ * draw op counts and render costs against budgets.txt there.  Ticks,
+ * bezel, and hands go through the FaceDrawing routines the watch face
+ * draws with, so these cover its drawing code too.
+ *
+ * A frame's cost is its render time over that of a fixed calibration
+ * frame, timed alternately with it in the same JVM, so the budgets
+ * carry over between machines and load changes during the run cancel
+ * out.
+ *
+ * After an intended change in the look or the cost of a frame, run
+ * with -PupdateGoldens to write new golden images and budgets, and
+ * check them in.  Differences and a report of every scenario are
+ * written to build/golden.
+ */
+@RunWith(Parameterized.class)
+public class GoldenFrameTest {
+    private static final int SIZE_PX = 320;
+
+    /* a pixel differs if any channel is off by more than this */
+    private static final int CHANNEL_TOLERANCE = 32;
+    /* share of differing pixels allowed, for rasterizer and font differences between JDKs */
+    private static final double MAX_DIFFERING_PIXELS = 0.005;
+
+    private static final double MAX_DRAW_OP_GROWTH = 0.1;
+    private static final double MAX_RENDER_COST_GROWTH = 0.25;
+    private static final int WARM_UP_RENDERS = 50;
+    private static final int TIMED_RENDERS = 41;
+
+    private static final String BUDGETS_FILE_NAME = "budgets.txt";
+
+    private static final File GOLDEN_DIR = new File(System.getProperty("golden.dir", "src/test/resources/golden"));
+    private static final File REPORT_DIR = new File(System.getProperty("golden.reportDir", "build/golden"));
+    private static final boolean UPDATE = Boolean.getBoolean("golden.update");
+
+    private static Locale sDefaultLocale;
+    private static Map<String, Budget> sBudgets;
+    private static final Map<String, Budget> sMeasured = new TreeMap<String, Budget>();
+
+    private static class Budget {
+        final int drawOpCount;
+        /* median render time over the calibration frame's */
+        final double renderCost;
+
+        Budget(int drawOpCount, double renderCost) {
+            this.drawOpCount = drawOpCount;
+            this.renderCost = renderCost;
+        }
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> scenarios() {
+        List<Object[]> scenarios = new ArrayList<Object[]>();
+
+        scenarios.add(scenario("demo", Utility.BezelType.BEZEL_NONE, new RenderFrames.FrameSpec(), 0));
+
+        RenderFrames.FrameSpec ambient = new RenderFrames.FrameSpec();
+        ambient.ambient = true;
+        scenarios.add(scenario("ambient", Utility.BezelType.BEZEL_NONE, ambient, 0));
+
+        RenderFrames.FrameSpec zoomed = new RenderFrames.FrameSpec();
+        zoomed.zoomProgress = 1f;
+        scenarios.add(scenario("zoomed", Utility.BezelType.BEZEL_NONE, zoomed, 0));
+
+        RenderFrames.FrameSpec zooming = new RenderFrames.FrameSpec();
+        zooming.zoomProgress = 0.5f;
+        scenarios.add(scenario("zooming", Utility.BezelType.BEZEL_NONE, zooming, 0));
+
+        RenderFrames.FrameSpec running = new RenderFrames.FrameSpec();
+        running.stopwatchRunning = true;
+        scenarios.add(scenario("stopwatchRunning", Utility.BezelType.BEZEL_NONE, running, 1350));
+
+        for (Utility.BezelType bezelType : Utility.BezelType.values()) {
+            if (bezelType == Utility.BezelType.BEZEL_NONE) {
+                continue;
+            }
+            String name = bezelType.name().substring("BEZEL_".length()).toLowerCase(Locale.US).replace('_', '-');
+            scenarios.add(scenario("bezel-" + name, bezelType, new RenderFrames.FrameSpec(), 0));
+        }
+        return scenarios;
+    }
+
+    private static Object[] scenario(String name, Utility.BezelType bezelType, RenderFrames.FrameSpec spec,
+                                     long offsetMs) {
+        return new Object[]{name, bezelType, spec, offsetMs};
+    }
+
+    private final String mName;
+    private final Utility.BezelType mBezelType;
+    private final RenderFrames.FrameSpec mSpec;
+    private final long mOffsetMs;
+
+    public GoldenFrameTest(String name, Utility.BezelType bezelType, RenderFrames.FrameSpec spec, long offsetMs) {
+        mName = name;
+        mBezelType = bezelType;
+        mSpec = spec;
+        mOffsetMs = offsetMs;
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        /* day names are drawn in the default locale */
+        sDefaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        sBudgets = readBudgets(new File(GOLDEN_DIR, BUDGETS_FILE_NAME));
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws IOException {
+        Locale.setDefault(sDefaultLocale);
+        writeBudgets(new File(REPORT_DIR, "report.txt"), sMeasured);
+        if (UPDATE) {
+            /* keep the budgets of scenarios not run this time */
+            sBudgets.putAll(sMeasured);
+            writeBudgets(new File(GOLDEN_DIR, BUDGETS_FILE_NAME), sBudgets);
+        }
+    }
+
+    private FaceRenderer createRenderer() throws IOException {
+        return new FaceRenderer(FaceRenderer.readDefaultLayout(), SIZE_PX, SIZE_PX, true, mBezelType);
+    }
+
+    @Test
+    public void matchesGoldenImage() throws IOException {
+        BufferedImage actual = createRenderer().render(mSpec.createFrameState(mOffsetMs));
+        File goldenFile = new File(GOLDEN_DIR, mName + ".png");
+        if (UPDATE) {
+            write(actual, goldenFile);
+            return;
+        }
+        assertTrue("no golden image " + goldenFile + "; run with -PupdateGoldens", goldenFile.isFile());
+        BufferedImage golden = ImageIO.read(goldenFile);
+        assertEquals("width", golden.getWidth(), actual.getWidth());
+        assertEquals("height", golden.getHeight(), actual.getHeight());
+
+        BufferedImage diff = new BufferedImage(actual.getWidth(), actual.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int differingPixels = 0;
+        for (int y = 0; y < actual.getHeight(); y += 1) {
+            for (int x = 0; x < actual.getWidth(); x += 1) {
+                if (getChannelDifference(golden.getRGB(x, y), actual.getRGB(x, y)) > CHANNEL_TOLERANCE) {
+                    differingPixels += 1;
+                    diff.setRGB(x, y, 0xff0000);
+                } else {
+                    diff.setRGB(x, y, (actual.getRGB(x, y) >> 2) & 0x3f3f3f);
+                }
+            }
+        }
+        double differingShare = (double) differingPixels / (actual.getWidth() * actual.getHeight());
+        if (differingShare > MAX_DIFFERING_PIXELS) {
+            write(actual, new File(REPORT_DIR, mName + ".actual.png"));
+            write(diff, new File(REPORT_DIR, mName + ".diff.png"));
+            fail(String.format(Locale.US, "%s: %.2f%% of pixels differ from the golden image, more than %.2f%%; see %s",
+                    mName, differingShare * 100, MAX_DIFFERING_PIXELS * 100, REPORT_DIR));
+        }
+    }
+
+    @Test
+    public void staysWithinBudgets() throws IOException {
+        FaceRenderer renderer = createRenderer();
+        FrameState state = mSpec.createFrameState(mOffsetMs);
+        for (int i = 0; i < WARM_UP_RENDERS; i += 1) {
+            renderer.renderFrame(state);
+            renderCalibrationFrame();
+        }
+        long[] renderTimesNs = new long[TIMED_RENDERS];
+        long[] calibrationTimesNs = new long[TIMED_RENDERS];
+        int drawOpCount = 0;
+        for (int i = 0; i < TIMED_RENDERS; i += 1) {
+            FaceRenderer.RenderedFrame frame = renderer.renderFrame(state);
+            renderTimesNs[i] = frame.renderTimeNs;
+            drawOpCount = frame.drawOpCount;
+            calibrationTimesNs[i] = renderCalibrationFrame();
+        }
+        Arrays.sort(renderTimesNs);
+        Arrays.sort(calibrationTimesNs);
+        double renderCost = (double) renderTimesNs[TIMED_RENDERS / 2] / calibrationTimesNs[TIMED_RENDERS / 2];
+        synchronized (sMeasured) {
+            sMeasured.put(mName, new Budget(drawOpCount, renderCost));
+        }
+        if (UPDATE) {
+            return;
+        }
+
+        Budget budget = sBudgets.get(mName);
+        assertNotNull("no budget for " + mName + "; run with -PupdateGoldens", budget);
+        int maxDrawOpCount = (int) Math.floor(budget.drawOpCount * (1 + MAX_DRAW_OP_GROWTH));
+        assertTrue(String.format(Locale.US, "%s: %d draw ops, budget %d (+%.0f%%)",
+                        mName, drawOpCount, budget.drawOpCount, MAX_DRAW_OP_GROWTH * 100),
+                drawOpCount <= maxDrawOpCount);
+        double maxRenderCost = budget.renderCost * (1 + MAX_RENDER_COST_GROWTH);
+        assertTrue(String.format(Locale.US, "%s: render cost %.2f calibration frames, budget %.2f (+%.0f%%)",
+                        mName, renderCost, budget.renderCost, MAX_RENDER_COST_GROWTH * 100),
+                renderCost <= maxRenderCost);
+    }
+
+    /**
+     * Draws a fixed mix of antialiased fills, strokes, and text, much
+     * like a frame's, and returns how long it took.
+     */
+    private static long renderCalibrationFrame() {
+        long startNs = System.nanoTime();
+        BufferedImage image = new BufferedImage(SIZE_PX, SIZE_PX, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setColor(Color.DARK_GRAY);
+            for (int i = 0; i < 40; i += 1) {
+                float radiusPx = SIZE_PX / 2f - i * 3;
+                g.fill(new Ellipse2D.Float(SIZE_PX / 2f - radiusPx, SIZE_PX / 2f - radiusPx, radiusPx * 2, radiusPx * 2));
+            }
+            g.setColor(Color.WHITE);
+            g.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER));
+            Line2D.Float line = new Line2D.Float();
+            for (int i = 0; i < 600; i += 1) {
+                double angle = Math.PI * 2 * i / 600;
+                float radiusPx = SIZE_PX * (0.1f + 0.3f * (i % 7) / 6f);
+                line.setLine(SIZE_PX / 2f + radiusPx * Math.sin(angle), SIZE_PX / 2f - radiusPx * Math.cos(angle),
+                        SIZE_PX / 2f + (radiusPx + 10) * Math.sin(angle), SIZE_PX / 2f - (radiusPx + 10) * Math.cos(angle));
+                g.draw(line);
+            }
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 16));
+            for (int i = 0; i < 60; i += 1) {
+                g.drawString(Integer.toString(i), (i % 10) * SIZE_PX / 10f, (i / 10 + 1) * SIZE_PX / 7f);
+            }
+        } finally {
+            g.dispose();
+        }
+        return System.nanoTime() - startNs;
+    }
+
+    /**
+     * The largest difference in any channel, alpha included.
+     */
+    private static int getChannelDifference(int argb1, int argb2) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            result = Math.max(result, Math.abs(((argb1 >>> shift) & 0xff) - ((argb2 >>> shift) & 0xff)));
+        }
+        return result;
+    }
+
+    private static void write(BufferedImage image, File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        ImageIO.write(image, "png", file);
+    }
+
+    /* lines of "scenario drawOps renderCost"; # starts a comment */
+    private static Map<String, Budget> readBudgets(File file) throws IOException {
+        Map<String, Budget> budgets = new TreeMap<String, Budget>();
+        if (!file.isFile()) {
+            return budgets;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length != 3) {
+                    throw new IOException("bad budget line: " + line);
+                }
+                budgets.put(fields[0], new Budget(Integer.parseInt(fields[1]), Double.parseDouble(fields[2])));
+            }
+        } finally {
+            reader.close();
+        }
+        return budgets;
+    }
+
+    private static void writeBudgets(File file, Map<String, Budget> budgets) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("# scenario, draw ops, median render time at " + SIZE_PX + "x" + SIZE_PX
+                    + " in calibration frames\n");
+            for (Map.Entry<String, Budget> entry : budgets.entrySet()) {
+                writer.write(String.format(Locale.US, "%s %d %.2f\n",
+                        entry.getKey(), entry.getValue().drawOpCount, entry.getValue().renderCost));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.webonastick.watchface;
+
+public interface GestureEventHandler {
+    public void onGesture(int region, int gesture);
+}
@@ -0,0 +1,152 @@
+package com.webonastick.watchface;
+
+/**
+ * Turns tap events into single, double, and triple taps and
+ * press-and-hold gestures, per tap region.
+ *
+ * Times are monotonic milliseconds (e.g., the eventTime passed to
+ * onTapCommand, or SystemClock.uptimeMillis()).  The recognizer
+ * never looks at a clock itself and never allocates after
+ * construction; whoever owns it calls {@link #onTimeout(long)} at
+ * {@link #getDeadline()} to resolve a pending multi-tap.
+ */
+public class GestureRecognizer {
+
+    public static final int GESTURE_SINGLE_TAP = 1;
+    public static final int GESTURE_DOUBLE_TAP = 2;
+    public static final int GESTURE_TRIPLE_TAP = 3;
+    public static final int GESTURE_PRESS_AND_HOLD = 4;
+
+    public static final int NO_REGION = -1;
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // Windows default double-tap threshold.
+    public static final int DEFAULT_MULTI_TAP_THRESHOLD_MS = 500;
+
+    // Well short of the system long press, which opens the watch face picker.
+    public static final int DEFAULT_PRESS_AND_HOLD_THRESHOLD_MS = 350;
+
+    private final GestureEventHandler mEventHandler;
+    private final int[] mBindings;
+
+    private int mMultiTapThresholdMs = DEFAULT_MULTI_TAP_THRESHOLD_MS;
+    private int mPressAndHoldThresholdMs = DEFAULT_PRESS_AND_HOLD_THRESHOLD_MS;
+
+    private int mTouchRegion = NO_REGION;
+    private long mTouchTimeMs = -1;
+
+    private int mPendingRegion = NO_REGION;
+    private int mPendingTaps = 0;
+    private long mDeadlineMs = NO_DEADLINE;
+
+    public GestureRecognizer(GestureEventHandler eventHandler, int numberOfRegions) {
+        mEventHandler = eventHandler;
+        mBindings = new int[numberOfRegions];
+    }
+
+    public void setMultiTapThresholdMs(int thresholdMs) {
+        mMultiTapThresholdMs = thresholdMs;
+    }
+
+    public void setPressAndHoldThresholdMs(int thresholdMs) {
+        mPressAndHoldThresholdMs = thresholdMs;
+    }
+
+    public void bind(int region, int gesture) {
+        mBindings[region] |= 1 << gesture;
+    }
+
+    public void unbind(int region, int gesture) {
+        mBindings[region] &= ~(1 << gesture);
+    }
+
+    public boolean isBound(int region, int gesture) {
+        return (mBindings[region] & (1 << gesture)) != 0;
+    }
+
+    /**
+     * Highest number of taps anything in the region is waiting for.
+     * Once a sequence reaches it there is no point in waiting.
+     */
+    private int getMaximumTaps(int region) {
+        if (isBound(region, GESTURE_TRIPLE_TAP)) {
+            return 3;
+        }
+        if (isBound(region, GESTURE_DOUBLE_TAP)) {
+            return 2;
+        }
+        return 1;
+    }
+
+    public void onTouch(int region, long eventTimeMs) {
+        mTouchRegion = region;
+        mTouchTimeMs = eventTimeMs;
+    }
+
+    public void onTouchCancel(long eventTimeMs) {
+        mTouchRegion = NO_REGION;
+        mTouchTimeMs = -1;
+    }
+
+    public void onTap(int region, long eventTimeMs) {
+        boolean held = mTouchTimeMs >= 0 && mTouchRegion == region &&
+                eventTimeMs - mTouchTimeMs >= mPressAndHoldThresholdMs;
+        mTouchRegion = NO_REGION;
+        mTouchTimeMs = -1;
+
+        if (mPendingTaps > 0 && (region != mPendingRegion || eventTimeMs >= mDeadlineMs)) {
+            flush();
+        }
+        if (region == NO_REGION) {
+            return;
+        }
+        if (held && isBound(region, GESTURE_PRESS_AND_HOLD)) {
+            flush();
+            mEventHandler.onGesture(region, GESTURE_PRESS_AND_HOLD);
+            return;
+        }
+
+        mPendingRegion = region;
+        mPendingTaps += 1;
+        if (mPendingTaps >= getMaximumTaps(region)) {
+            flush();
+        } else {
+            mDeadlineMs = eventTimeMs + mMultiTapThresholdMs;
+        }
+    }
+
+    public void onTimeout(long nowMs) {
+        if (mPendingTaps > 0 && nowMs >= mDeadlineMs) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns when {@link #onTimeout(long)} should next be called, or
+     * {@link #NO_DEADLINE} if nothing is pending.
+     */
+    public long getDeadline() {
+        return mPendingTaps > 0 ? mDeadlineMs : NO_DEADLINE;
+    }
+
+    public void cancel() {
+        mTouchRegion = NO_REGION;
+        mTouchTimeMs = -1;
+        reset();
+    }
+
+    private void flush() {
+        int region = mPendingRegion;
+        int numberOfTaps = mPendingTaps;
+        reset();
+        if (numberOfTaps > 0) {
+            mEventHandler.onGesture(region, Math.min(numberOfTaps, GESTURE_TRIPLE_TAP));
+        }
+    }
+
+    private void reset() {
+        mPendingRegion = NO_REGION;
+        mPendingTaps = 0;
+        mDeadlineMs = NO_DEADLINE;
+    }
+}
@@ -0,0 +1,186 @@
+package com.webonastick.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.util.HashMap;
+
+/**
+ * Rasterizes each distinct label once per text size, typeface, and
+ * alignment, and draws it afterwards as a matrix-transformed bitmap
+ * instead of rotating the canvas around a drawText call.
+ *
+ * Sprites are ALPHA_8, so the same sprite serves any paint color
+ * (e.g., a label and its drop shadow).
+ */
+public class LabelAtlas {
+    private static final int PADDING_PX = 2;
+
+    private static class Key {
+        String text;
+        float textSize;
+        Typeface typeface;
+        Paint.Align align;
+        float letterSpacing;
+        boolean antiAlias;
+
+        void set(String text, Paint paint) {
+            this.text = text;
+            this.textSize = paint.getTextSize();
+            this.typeface = paint.getTypeface();
+            this.align = paint.getTextAlign();
+            this.letterSpacing = paint.getLetterSpacing();
+            this.antiAlias = paint.isAntiAlias();
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.text = text;
+            key.textSize = textSize;
+            key.typeface = typeface;
+            key.align = align;
+            key.letterSpacing = letterSpacing;
+            key.antiAlias = antiAlias;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return text.equals(key.text) && textSize == key.textSize &&
+                    (typeface == null ? key.typeface == null : typeface.equals(key.typeface)) &&
+                    align == key.align && letterSpacing == key.letterSpacing &&
+                    antiAlias == key.antiAlias;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface == null ? 0 : typeface.hashCode());
+            result = 31 * result + align.hashCode();
+            result = 31 * result + Float.floatToIntBits(letterSpacing);
+            result = 31 * result + (antiAlias ? 1 : 0);
+            return result;
+        }
+    }
+
+    private static class Sprite {
+        Bitmap bitmap;
+        float anchorXPx;
+        float anchorYPx;
+    }
+
+    private final float mCapHeight;
+    private final HashMap<Key, Sprite> mSprites = new HashMap<Key, Sprite>();
+    private final Key mLookupKey = new Key();
+    private final Matrix mDrawMatrix = new Matrix();
+    private final Paint mDrawPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+    private final Rect mBounds = new Rect();
+
+    /**
+     * @param capHeight cap height as a fraction of the text size,
+     *                  used to center labels vertically on their anchor.
+     */
+    public LabelAtlas(float capHeight) {
+        mCapHeight = capHeight;
+    }
+
+    /**
+     * Draws text vertically centered on the origin of the given
+     * placement matrix, horizontally aligned per the paint's text
+     * alignment.
+     */
+    public synchronized void drawVerticallyCenteredText(Canvas canvas, String text, Matrix placement, Paint textPaint) {
+        Sprite sprite = getSprite(text, textPaint);
+        mDrawMatrix.setTranslate(-sprite.anchorXPx, -sprite.anchorYPx);
+        mDrawMatrix.postConcat(placement);
+        mDrawPaint.setColor(textPaint.getColor());
+        mDrawPaint.setColorFilter(textPaint.getColorFilter());
+        canvas.drawBitmap(sprite.bitmap, mDrawMatrix, mDrawPaint);
+    }
+
+    /**
+     * Rasterizes the text now, if it isn't already, so that drawing
+     * it later is only a blit.
+     */
+    public synchronized void prerender(String text, Paint textPaint) {
+        getSprite(text, textPaint);
+    }
+
+    private Sprite getSprite(String text, Paint textPaint) {
+        mLookupKey.set(text, textPaint);
+        Sprite sprite = mSprites.get(mLookupKey);
+        if (sprite == null) {
+            sprite = rasterize(text, textPaint);
+            mSprites.put(mLookupKey.copy(), sprite);
+        }
+        return sprite;
+    }
+
+    private Sprite rasterize(String text, Paint textPaint) {
+        Paint paint = new Paint(textPaint);
+        paint.setColor(Color.BLACK);
+        paint.setColorFilter(null);
+        paint.setShadowLayer(0, 0, 0, 0);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setTextAlign(Paint.Align.LEFT);
+
+        float advancePx = paint.measureText(text);
+        paint.getTextBounds(text, 0, text.length(), mBounds);
+        Paint.FontMetrics fontMetrics = paint.getFontMetrics();
+        float inkLeftPx = Math.min(0f, mBounds.left);
+        float inkRightPx = Math.max(advancePx, mBounds.right);
+
+        int widthPx = (int) Math.ceil(inkRightPx - inkLeftPx) + PADDING_PX * 2;
+        int heightPx = (int) Math.ceil(fontMetrics.bottom - fontMetrics.top) + PADDING_PX * 2;
+        float originXPx = PADDING_PX - inkLeftPx;
+        float baselineYPx = PADDING_PX - fontMetrics.top;
+
+        Sprite sprite = new Sprite();
+        sprite.bitmap = Bitmap.createBitmap(Math.max(widthPx, 1), Math.max(heightPx, 1), Bitmap.Config.ALPHA_8);
+        new Canvas(sprite.bitmap).drawText(text, originXPx, baselineYPx, paint);
+
+        sprite.anchorXPx = originXPx;
+        switch (textPaint.getTextAlign()) {
+            case CENTER:
+                sprite.anchorXPx += advancePx / 2f;
+                break;
+            case RIGHT:
+                sprite.anchorXPx += advancePx;
+                break;
+        }
+        sprite.anchorYPx = baselineYPx - textPaint.getTextSize() * mCapHeight / 2f;
+        return sprite;
+    }
+
+    public synchronized int getSpriteCount() {
+        return mSprites.size();
+    }
+
+    /**
+     * Returns the bytes held by all sprites.
+     */
+    public synchronized long getByteCount() {
+        long byteCount = 0;
+        for (Sprite sprite : mSprites.values()) {
+            byteCount += sprite.bitmap.getAllocationByteCount();
+        }
+        return byteCount;
+    }
+
+    public synchronized void clear() {
+        for (Sprite sprite : mSprites.values()) {
+            sprite.bitmap.recycle();
+        }
+        mSprites.clear();
+    }
+}
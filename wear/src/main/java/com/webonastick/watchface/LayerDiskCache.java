@@ -0,0 +1,232 @@
+package com.webonastick.watchface;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Stores rendered ARGB_8888 layers as raw pixels, one file per key,
+ * so a warm start can map the file and copy the pixels straight into
+ * a bitmap instead of drawing the layer again.
+ *
+ * File layout: a fixed header (magic, format version, width, height,
+ * pixel byte count, CRC32 of the pixels), then the pixels exactly as
+ * Bitmap.copyPixelsToBuffer wrote them.  An entry whose header or
+ * checksum doesn't match is deleted and reported as a miss.
+ *
+ * Not thread-safe; use it from one thread.
+ */
+public class LayerDiskCache {
+    private static final String TAG = "LayerDiskCache";
+
+    private static final int MAGIC = 0x50574c59; /* "PWLY" */
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 * 5 + 8;
+    private static final int CHECKSUM_CHUNK_BYTES = 64 * 1024;
+    private static final String SUFFIX = ".layer";
+
+    private final File mDirectory;
+    private final int mMaxEntries;
+    private final byte[] mChunk = new byte[CHECKSUM_CHUNK_BYTES];
+
+    public LayerDiskCache(File directory, int maxEntries) {
+        mDirectory = directory;
+        mMaxEntries = maxEntries;
+    }
+
+    /**
+     * Returns a hex SHA-1 of the given parts, for use as a key.
+     */
+    public static String key(Object... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (Object part : parts) {
+            builder.append(part).append('\u0000');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(builder.toString().getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(mDirectory, key + SUFFIX);
+    }
+
+    /**
+     * Returns the cached layer, or null on a miss.
+     */
+    public Bitmap load(String key, int widthPx, int heightPx) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("truncated header");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("bad magic or version");
+            }
+            int fileWidthPx = buffer.getInt();
+            int fileHeightPx = buffer.getInt();
+            int pixelBytes = buffer.getInt();
+            long checksum = buffer.getLong();
+            if (fileWidthPx != widthPx || fileHeightPx != heightPx ||
+                    pixelBytes != widthPx * heightPx * 4 || size != HEADER_BYTES + (long) pixelBytes) {
+                throw new IOException("size mismatch");
+            }
+            if (checksum(buffer, pixelBytes) != checksum) {
+                throw new IOException("checksum mismatch");
+            }
+            buffer.position(HEADER_BYTES);
+            Bitmap bitmap = Bitmap.createBitmap(widthPx, heightPx, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(buffer);
+            file.setLastModified(System.currentTimeMillis());
+            return bitmap;
+        } catch (IOException e) {
+            Log.w(TAG, "dropping " + file.getName() + ": " + e.getMessage());
+            file.delete();
+            return null;
+        } finally {
+            close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Writes the layer to a temporary file and renames it into place,
+     * so a reader never sees a partial entry.
+     */
+    public void store(String key, Bitmap bitmap) {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        int pixelBytes = bitmap.getByteCount();
+        ByteBuffer pixels = ByteBuffer.allocate(pixelBytes);
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.rewind();
+
+        CRC32 crc = new CRC32();
+        crc.update(pixels.array(), 0, pixelBytes);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(bitmap.getWidth());
+        header.putInt(bitmap.getHeight());
+        header.putInt(pixelBytes);
+        header.putLong(crc.getValue());
+        header.rewind();
+
+        File file = getFile(key);
+        /* one per writer: engines may store the same key at once */
+        File temporaryFile = new File(mDirectory, key + SUFFIX + "." + Thread.currentThread().getId() + ".tmp");
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            FileChannel channel = outputStream.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+            outputStream.close();
+            outputStream = null;
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "could not store " + file.getName() + ": " + e.getMessage());
+            temporaryFile.delete();
+        } finally {
+            close(outputStream);
+        }
+        trim();
+    }
+
+    /**
+     * Deletes the least recently used entries beyond the limit.
+     */
+    public void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null || files.length <= mMaxEntries) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = b.lastModified() - a.lastModified();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        for (int i = mMaxEntries; i < files.length; i += 1) {
+            files[i].delete();
+        }
+    }
+
+    public void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private long checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        int remaining = length;
+        while (remaining > 0) {
+            int count = Math.min(remaining, mChunk.length);
+            buffer.get(mChunk, 0, count);
+            crc.update(mChunk, 0, count);
+            remaining -= count;
+        }
+        return crc.getValue();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            /* nothing to do */
+        }
+    }
+}
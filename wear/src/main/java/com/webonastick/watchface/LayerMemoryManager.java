@@ -0,0 +1,318 @@
+package com.webonastick.watchface;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Accounts for cached layers, sprites, and textures, and evicts them
+ * when the process is asked to trim memory or they exceed a budget.
+ *
+ * Each cache registers under an owner and a name with its size in
+ * bytes, an estimate of what rebuilding it would cost, and an
+ * {@link Evictor}.  Whatever is evicted must be rebuilt lazily by its
+ * owner, the next time it is needed.
+ *
+ * Victims are picked by cost and benefit: the rebuild time risked per
+ * byte freed, discounted the longer an entry has gone unused.  Over
+ * budget, or on a TRIM_MEMORY_RUNNING_* level, only entries that may
+ * go at any time are evicted, and none used in the last
+ * RECENT_USE_MS while merely over budget.  From TRIM_MEMORY_UI_HIDDEN
+ * up, every entry whose minimum trim level has been reached goes.
+ *
+ * An object shared between owners, e.g. through SharedLayerCache, is
+ * registered by each of them under the same shared key, and counts
+ * once however many register it.  Evicting one owner's registration
+ * only lets that owner go of it, so it frees nothing until the last
+ * registration goes.  Thread-safe; evictors run on the main thread,
+ * with no lock of this class held.
+ */
+public class LayerMemoryManager {
+    private static final String TAG = "LayerMemoryManager";
+
+    private static final long RECENT_USE_MS = 1000;
+    private static final long IDLE_DISCOUNT_MS = 60 * 1000;
+    private static final long DEFAULT_BUDGET_BYTES = 16L * 1024 * 1024;
+
+    private static final LayerMemoryManager sInstance = new LayerMemoryManager();
+
+    /**
+     * Drops a cache.  Returns false to keep it after all, e.g. if it
+     * is on screen.
+     */
+    public interface Evictor {
+        boolean evict();
+    }
+
+    private static class Entry {
+        Object owner;
+        String name;
+        String sharedKey;
+        long byteCount;
+        float rebuildCostMs;
+        int minTrimLevel;
+        Evictor evictor;
+        long lastUseMs;
+    }
+
+    /* an entry as it was when picked; lower scores go first */
+    private static class Candidate {
+        final Entry entry;
+        final long byteCount;
+        final double score;
+
+        Candidate(Entry entry, long nowMs) {
+            this.entry = entry;
+            this.byteCount = entry.byteCount;
+            double idleMs = Math.max(0, nowMs - entry.lastUseMs);
+            this.score = (entry.rebuildCostMs + 1.0) / Math.max(1, entry.byteCount) / (1.0 + idleMs / IDLE_DISCOUNT_MS);
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<Entry>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private long mBudgetBytes = DEFAULT_BUDGET_BYTES;
+    private boolean mBudgetCheckPosted = false;
+    private int mEvictionCount = 0;
+    private long mEvictedBytes = 0;
+
+    private final Runnable mBudgetCheck = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (LayerMemoryManager.this) {
+                mBudgetCheckPosted = false;
+            }
+            evictDownTo(getBudgetBytes(), 0, true);
+        }
+    };
+
+    public static LayerMemoryManager getInstance() {
+        return sInstance;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+        postBudgetCheck();
+    }
+
+    /**
+     * Registers a cache, or updates it if the owner already registered
+     * one under this name.  A new entry counts as just used; updating
+     * an entry's size does not count as a use, see {@link #touch}.
+     *
+     * @param minTrimLevel   0 if it may be evicted at any time, else the
+     *                       lowest ComponentCallbacks2 trim level that
+     *                       evicts it.
+     */
+    public synchronized void register(Object owner, String name, long byteCount, float rebuildCostMs,
+                                      int minTrimLevel, Evictor evictor) {
+        register(owner, name, null, byteCount, rebuildCostMs, minTrimLevel, evictor);
+    }
+
+    /**
+     * Registers a cache that other owners may register too, under the
+     * same shared key; see the class comment.  A null key registers a
+     * cache of the owner's own.
+     */
+    public synchronized void register(Object owner, String name, String sharedKey, long byteCount,
+                                      float rebuildCostMs, int minTrimLevel, Evictor evictor) {
+        Entry entry = find(owner, name);
+        if (entry == null) {
+            entry = new Entry();
+            entry.owner = owner;
+            entry.name = name;
+            entry.lastUseMs = now();
+            mEntries.add(entry);
+        }
+        entry.sharedKey = sharedKey;
+        entry.byteCount = byteCount;
+        entry.rebuildCostMs = rebuildCostMs;
+        entry.minTrimLevel = minTrimLevel;
+        entry.evictor = evictor;
+        postBudgetCheck();
+    }
+
+    public synchronized void unregister(Object owner, String name) {
+        Entry entry = find(owner, name);
+        if (entry != null) {
+            mEntries.remove(entry);
+        }
+    }
+
+    public synchronized void unregisterAll(Object owner) {
+        for (int i = mEntries.size() - 1; i >= 0; i -= 1) {
+            if (mEntries.get(i).owner == owner) {
+                mEntries.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Marks a cache as just used, which protects it from eviction
+     * over budget for a while.
+     */
+    public synchronized void touch(Object owner, String name) {
+        Entry entry = find(owner, name);
+        if (entry != null) {
+            entry.lastUseMs = now();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        long usedBytes = 0;
+        Set<String> sharedKeys = new HashSet<String>();
+        for (Entry entry : mEntries) {
+            if (entry.sharedKey == null || sharedKeys.add(entry.sharedKey)) {
+                usedBytes += entry.byteCount;
+            }
+        }
+        return usedBytes;
+    }
+
+    /**
+     * Whether another owner still registers the entry's shared object.
+     */
+    private boolean isSharedElsewhere(Entry entry) {
+        if (entry.sharedKey == null) {
+            return false;
+        }
+        for (Entry other : mEntries) {
+            if (other != entry && entry.sharedKey.equals(other.sharedKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Call from ComponentCallbacks2.onTrimMemory, on the main thread.
+     */
+    public void onTrimMemory(int level) {
+        long usedBytes = getUsedBytes();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            evictDownTo(0, level, false);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            evictDownTo(getBudgetBytes() / 4, 0, false);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            evictDownTo(getBudgetBytes() / 2, 0, false);
+        } else {
+            evictDownTo(getBudgetBytes() * 3 / 4, 0, false);
+        }
+        Log.d(TAG, String.format(Locale.US, "trim level %d: %d KiB -> %d KiB",
+                level, usedBytes / 1024, getUsedBytes() / 1024));
+    }
+
+    /**
+     * Call from ComponentCallbacks.onLowMemory, on the main thread.
+     */
+    public void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Evicts entries eligible at the trim level, in score order, until
+     * no more than targetBytes are used.  Main thread only.
+     */
+    private void evictDownTo(long targetBytes, int trimLevel, boolean spareRecent) {
+        long nowMs = now();
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        long usedBytes;
+        synchronized (this) {
+            usedBytes = getUsedBytes();
+            if (usedBytes <= targetBytes) {
+                return;
+            }
+            for (Entry entry : mEntries) {
+                if (entry.minTrimLevel > trimLevel) {
+                    continue;
+                }
+                if (spareRecent && nowMs - entry.lastUseMs < RECENT_USE_MS) {
+                    continue;
+                }
+                candidates.add(new Candidate(entry, nowMs));
+            }
+        }
+        Collections.sort(candidates, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                return Double.compare(a.score, b.score);
+            }
+        });
+        for (Candidate candidate : candidates) {
+            if (usedBytes <= targetBytes) {
+                break;
+            }
+            boolean sharedElsewhere;
+            synchronized (this) {
+                if (!mEntries.contains(candidate.entry)) {
+                    /* gone since it was picked, e.g. with its owner */
+                    continue;
+                }
+                sharedElsewhere = isSharedElsewhere(candidate.entry);
+            }
+            /*
+             * The evictor may unregister or re-register its owner's
+             * entries, this one included, so what it frees is decided
+             * before, not by whether the entry is still there after.
+             */
+            if (!candidate.entry.evictor.evict()) {
+                continue;
+            }
+            long freedBytes = sharedElsewhere ? 0 : candidate.byteCount;
+            synchronized (this) {
+                mEntries.remove(candidate.entry);
+                usedBytes -= freedBytes;
+                mEvictionCount += 1;
+                mEvictedBytes += freedBytes;
+            }
+            Log.d(TAG, String.format(Locale.US, "evicted %s (%d KiB freed)",
+                    candidate.entry.name, freedBytes / 1024));
+        }
+    }
+
+    private void postBudgetCheck() {
+        if (mBudgetCheckPosted || getUsedBytes() <= mBudgetBytes) {
+            return;
+        }
+        mBudgetCheckPosted = true;
+        mHandler.post(mBudgetCheck);
+    }
+
+    public synchronized void logUsage() {
+        Log.d(TAG, String.format(Locale.US, "%d KiB of %d KiB in %d entries; %d evictions, %d KiB",
+                getUsedBytes() / 1024, mBudgetBytes / 1024, mEntries.size(),
+                mEvictionCount, mEvictedBytes / 1024));
+        for (Entry entry : mEntries) {
+            Log.d(TAG, String.format(Locale.US, "  %s: %d KiB%s, %.1f ms to rebuild",
+                    entry.name, entry.byteCount / 1024, entry.sharedKey == null ? "" : " (shared)",
+                    entry.rebuildCostMs));
+        }
+    }
+
+    private Entry find(Object owner, String name) {
+        for (Entry entry : mEntries) {
+            if (entry.owner == owner && entry.name.equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static long now() {
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -1,5 +0,0 @@
-package com.webonastick.watchface;
-
-public interface MultiTapEventHandler {
-    public void onMultiTapCommand(int type, int numberOfTaps);
-}
@@ -0,0 +1,153 @@
+package com.webonastick.watchface;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Picks a render quality tier from recent frame times and the battery
+ * level.  Tier 0 is full quality; each higher tier sheds more work.
+ *
+ * Frame times are averaged over back-to-back windows of frames.  A
+ * tier changes only after several windows in a row agree:
+ * STEP_DOWN_WINDOWS windows over the budget shed one tier, and
+ * STEP_UP_WINDOWS windows under half the budget restore one.  A window
+ * in between resets both streaks.  The gap between the thresholds and
+ * the longer wait to step up keep a face that sits near the budget
+ * from flapping, and the streaks restart after every step so that each
+ * tier is judged on its own frames.
+ *
+ * The battery level sets a floor: at or below batteryThresholds[i]
+ * percent the tier is at least i + 1.  A floor is only lifted once
+ * the level is BATTERY_HYSTERESIS_PERCENT above its threshold.
+ */
+public class RenderQualityGovernor {
+    private static final String TAG = "RenderQualityGovernor";
+
+    private static final int WINDOW_FRAMES = 30;
+    private static final float STEP_UP_FRACTION = 0.5f;
+    private static final int STEP_DOWN_WINDOWS = 2;
+    private static final int STEP_UP_WINDOWS = 4;
+    private static final float BATTERY_HYSTERESIS_PERCENT = 2f;
+
+    private final String[] mTierNames;
+    private final long mFrameBudgetNs;
+    private final float[] mBatteryThresholds;
+
+    private int mFrameCount = 0;
+    private long mFrameTimeSumNs = 0;
+    private int mSlowWindowCount = 0;
+    private int mFastWindowCount = 0;
+
+    private int mPerformanceTier = 0;
+    private int mBatteryTier = 0;
+    private int mTier = 0;
+    private int mTransitionCount = 0;
+
+    /**
+     * @param tierNames         one name per tier, for logging.
+     * @param frameBudgetMs     average frame time above which to shed work.
+     * @param batteryThresholds battery percentages, descending.
+     */
+    public RenderQualityGovernor(String[] tierNames, float frameBudgetMs, float... batteryThresholds) {
+        mTierNames = tierNames;
+        mFrameBudgetNs = (long) (frameBudgetMs * 1e6f);
+        mBatteryThresholds = batteryThresholds;
+    }
+
+    public int getTier() {
+        return mTier;
+    }
+
+    public String getTierName() {
+        return mTierNames[mTier];
+    }
+
+    /**
+     * Records one frame's draw time.  Returns true if the tier changed.
+     */
+    public boolean recordFrame(long frameTimeNs) {
+        mFrameTimeSumNs += frameTimeNs;
+        mFrameCount += 1;
+        if (mFrameCount < WINDOW_FRAMES) {
+            return false;
+        }
+
+        long averageNs = mFrameTimeSumNs / WINDOW_FRAMES;
+        mFrameCount = 0;
+        mFrameTimeSumNs = 0;
+        if (averageNs > mFrameBudgetNs) {
+            mSlowWindowCount += 1;
+            mFastWindowCount = 0;
+        } else if (averageNs < mFrameBudgetNs * STEP_UP_FRACTION) {
+            mFastWindowCount += 1;
+            mSlowWindowCount = 0;
+        } else {
+            mSlowWindowCount = 0;
+            mFastWindowCount = 0;
+            return false;
+        }
+
+        int performanceTier = mPerformanceTier;
+        if (mSlowWindowCount >= STEP_DOWN_WINDOWS && performanceTier < mTierNames.length - 1) {
+            performanceTier += 1;
+        } else if (mFastWindowCount >= STEP_UP_WINDOWS && performanceTier > 0) {
+            performanceTier -= 1;
+        } else {
+            return false;
+        }
+        mPerformanceTier = performanceTier;
+        clearWindow();
+        return updateTier(String.format(Locale.US, "average frame %.2f ms", averageNs / 1e6));
+    }
+
+    /**
+     * Returns true if the tier changed.
+     */
+    public boolean setBatteryPercentage(float percentage) {
+        int batteryTier = 0;
+        for (int i = 0; i < mBatteryThresholds.length; i += 1) {
+            float threshold = mBatteryThresholds[i];
+            if (mBatteryTier > i) {
+                threshold += BATTERY_HYSTERESIS_PERCENT;
+            }
+            if (percentage <= threshold) {
+                batteryTier = i + 1;
+            }
+        }
+        batteryTier = Math.min(batteryTier, mTierNames.length - 1);
+        if (batteryTier == mBatteryTier) {
+            return false;
+        }
+        mBatteryTier = batteryTier;
+        return updateTier(String.format(Locale.US, "battery %.0f%%", percentage));
+    }
+
+    /**
+     * Forgets recent frame times, e.g., after ambient mode, where
+     * frames cost something else entirely.
+     */
+    public void clearWindow() {
+        mFrameCount = 0;
+        mFrameTimeSumNs = 0;
+        mSlowWindowCount = 0;
+        mFastWindowCount = 0;
+    }
+
+    private boolean updateTier(String reason) {
+        int tier = Math.max(mPerformanceTier, mBatteryTier);
+        if (tier == mTier) {
+            return false;
+        }
+        Log.i(TAG, String.format(Locale.US, "quality %s -> %s (%s)",
+                mTierNames[mTier], mTierNames[tier], reason));
+        mTier = tier;
+        mTransitionCount += 1;
+        return true;
+    }
+
+    public void logStatistics() {
+        Log.d(TAG, String.format(Locale.US, "quality %s after %d transition(s)",
+                mTierNames[mTier], mTransitionCount));
+    }
+}
@@ -0,0 +1,118 @@
+package com.webonastick.watchface;
+
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Rendered layers and other objects built from nothing but their key,
+ * shared by every engine in the process, e.g. the watch face picker's
+ * preview and the active watch face at the same size.
+ *
+ * Entries are reference-counted by holder, usually an engine: an
+ * entry is dropped as soon as no holder is left.  A released holder
+ * can still look entries up, but no longer holds anything, so a
+ * background build finishing after its engine is gone can't leak.
+ *
+ * Values are handed out as they are, so they must not change once
+ * put, or else be confined to one thread.  Thread-safe.
+ */
+public class SharedLayerCache {
+    private static final String TAG = "SharedLayerCache";
+
+    private static final SharedLayerCache sInstance = new SharedLayerCache();
+
+    private static class Entry {
+        final Object value;
+        final Set<Object> holders = new HashSet<Object>();
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    private final HashMap<String, Entry> mEntries = new HashMap<String, Entry>();
+    private final Set<Object> mReleasedHolders = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+
+    public static SharedLayerCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the value for the key, now also held by the holder, or
+     * null on a miss.
+     */
+    public synchronized <T> T get(Object holder, String key, Class<T> type) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMissCount += 1;
+            return null;
+        }
+        mHitCount += 1;
+        hold(entry, holder);
+        return type.cast(entry.value);
+    }
+
+    /**
+     * Stores the value for the key, held by the holder.  If another
+     * holder stored one first, returns that instead.
+     */
+    public synchronized <T> T put(Object holder, String key, T value, Class<T> type) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            if (mReleasedHolders.contains(holder)) {
+                return value;
+            }
+            entry = new Entry(value);
+            mEntries.put(key, entry);
+        }
+        hold(entry, holder);
+        return type.cast(entry.value);
+    }
+
+    private void hold(Entry entry, Object holder) {
+        if (!mReleasedHolders.contains(holder)) {
+            entry.holders.add(holder);
+        }
+    }
+
+    /**
+     * Lets go of everything the holder holds except the given keys.
+     */
+    public synchronized void retainOnly(Object holder, Collection<String> keys) {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            if (keys.contains(mapEntry.getKey())) {
+                continue;
+            }
+            Entry entry = mapEntry.getValue();
+            if (entry.holders.remove(holder) && entry.holders.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Lets go of everything the holder holds, for good.
+     */
+    public synchronized void release(Object holder) {
+        retainOnly(holder, Collections.<String>emptySet());
+        mReleasedHolders.add(holder);
+    }
+
+    public synchronized void logStatistics() {
+        Log.d(TAG, String.format(Locale.US, "%d entries, %d hits, %d misses",
+                mEntries.size(), mHitCount, mMissCount));
+    }
+}
@@ -0,0 +1,120 @@
+package com.webonastick.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Renders a full-surface layer as horizontal bands on a small fixed
+ * thread pool, then stitches the bands together.
+ *
+ * Every band replays the painter, translated so the band's top row
+ * lands at y = 0 and clipped to the band's own rows.  The canvas
+ * rejects drawing that falls wholly outside the clip, and painters
+ * should skip whole parts with Canvas.quickReject where they can;
+ * anything that crosses a seam is drawn on both sides of it and
+ * clipped at a whole-pixel boundary, so the stitched layer matches a
+ * single-canvas render.  Painters must therefore use the surface
+ * dimensions, never canvas.getWidth()/getHeight(), and must not
+ * mutate shared state while drawing.
+ *
+ * Whether this is faster than one canvas depends on how much of the
+ * painter's work culls, and on how much it spends in caches the bands
+ * share, which serialize them; measure before turning it on.
+ */
+public class TiledRenderer {
+    public interface Painter {
+        void paint(Canvas canvas);
+    }
+
+    private final ExecutorService mExecutor;
+
+    public TiledRenderer(int numberOfThreads) {
+        mExecutor = Executors.newFixedThreadPool(Math.max(numberOfThreads, 1), new ThreadFactory() {
+            private int mCount = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TiledRenderer-" + mCount);
+                mCount += 1;
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Renders the painter into a new ARGB_8888 bitmap in the given
+     * number of bands.  The calling thread renders the first band
+     * itself while the pool renders the rest.
+     */
+    public Bitmap render(int widthPx, int heightPx, int numberOfTiles, final Painter painter) {
+        Bitmap result = Bitmap.createBitmap(widthPx, heightPx, Bitmap.Config.ARGB_8888);
+        if (numberOfTiles <= 1) {
+            painter.paint(new Canvas(result));
+            return result;
+        }
+
+        final int tileHeightPx = (heightPx + numberOfTiles - 1) / numberOfTiles;
+        final int finalWidthPx = widthPx;
+        List<Future<Bitmap>> futures = new ArrayList<Future<Bitmap>>();
+        for (int i = 1; i < numberOfTiles; i += 1) {
+            final int topPx = i * tileHeightPx;
+            final int bottomPx = Math.min(heightPx, topPx + tileHeightPx);
+            if (topPx >= bottomPx) {
+                break;
+            }
+            futures.add(mExecutor.submit(new Callable<Bitmap>() {
+                @Override
+                public Bitmap call() {
+                    return renderTile(finalWidthPx, topPx, bottomPx, painter);
+                }
+            }));
+        }
+
+        Canvas canvas = new Canvas(result);
+        canvas.save();
+        canvas.clipRect(0, 0, widthPx, Math.min(heightPx, tileHeightPx));
+        painter.paint(canvas);
+        canvas.restore();
+
+        try {
+            for (int i = 0; i < futures.size(); i += 1) {
+                Bitmap tile = futures.get(i).get();
+                canvas.drawBitmap(tile, 0, (i + 1) * tileHeightPx, null);
+                tile.recycle();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    private static Bitmap renderTile(int widthPx, int topPx, int bottomPx, Painter painter) {
+        Bitmap tile = Bitmap.createBitmap(widthPx, bottomPx - topPx, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(tile);
+        canvas.translate(0, -topPx);
+        canvas.clipRect(0, topPx, widthPx, bottomPx);
+        painter.paint(canvas);
+        return tile;
+    }
+
+    /**
+     * Interrupts running bands and stops the pool.  Call it from the
+     * thread that calls render, once no render is in progress.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+package com.webonastick.watchface.pilotwatch;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Typeface;
+
+import com.webonastick.watchface.LabelAtlas;
+
+/**
+ * {@link FaceCanvas} on an Android canvas.  Keeps its paints between
+ * frames; point it at each frame's canvas with {@link #setCanvas}.
+ */
+final class AndroidFaceCanvas implements FaceCanvas {
+    private Canvas mCanvas;
+    private final Paint mStrokePaint = new Paint();
+    private final Paint mTextPaint = new Paint();
+    private final Matrix mLabelMatrix = new Matrix();
+    private LabelAtlas mLabelAtlas;
+
+    private Path[] mHandPaths;
+    private Paint[] mHandInteractivePaints;
+    private Paint[] mHandAmbientPaints;
+
+    AndroidFaceCanvas(Typeface typeface) {
+        mStrokePaint.setAntiAlias(true);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+        mStrokePaint.setStrokeCap(Paint.Cap.BUTT);
+
+        mTextPaint.setAntiAlias(true);
+        mTextPaint.setStyle(Paint.Style.FILL);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTypeface(typeface);
+    }
+
+    void setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    /**
+     * Draws text as sprites from the atlas, or with drawText if null.
+     */
+    void setLabelAtlas(LabelAtlas labelAtlas) {
+        mLabelAtlas = labelAtlas;
+    }
+
+    /**
+     * The hand paths and paints, indexed by slot; the arrays are kept,
+     * not copied.
+     */
+    void setHands(Path[] paths, Paint[] interactivePaints, Paint[] ambientPaints) {
+        mHandPaths = paths;
+        mHandInteractivePaints = interactivePaints;
+        mHandAmbientPaints = ambientPaints;
+    }
+
+    @Override
+    public void save() {
+        mCanvas.save();
+    }
+
+    @Override
+    public void restore() {
+        mCanvas.restore();
+    }
+
+    @Override
+    public void translate(float dxPx, float dyPx) {
+        mCanvas.translate(dxPx, dyPx);
+    }
+
+    @Override
+    public void rotate(float degrees, float pivotXPx, float pivotYPx) {
+        mCanvas.rotate(degrees, pivotXPx, pivotYPx);
+    }
+
+    @Override
+    public boolean quickReject(float leftPx, float topPx, float rightPx, float bottomPx) {
+        return mCanvas.quickReject(leftPx, topPx, rightPx, bottomPx, Canvas.EdgeType.AA);
+    }
+
+    @Override
+    public void setStroke(int color, float widthPx) {
+        mStrokePaint.setColor(color);
+        mStrokePaint.setStrokeWidth(widthPx);
+    }
+
+    @Override
+    public void setText(int color, float sizePx) {
+        mTextPaint.setColor(color);
+        mTextPaint.setTextSize(sizePx);
+    }
+
+    @Override
+    public void drawCircle(float centerXPx, float centerYPx, float radiusPx) {
+        mCanvas.drawCircle(centerXPx, centerYPx, radiusPx, mStrokePaint);
+    }
+
+    @Override
+    public void drawLines(float[] lines) {
+        mCanvas.drawLines(lines, mStrokePaint);
+    }
+
+    @Override
+    public void drawVerticallyCenteredText(String text, float xPx, float yPx) {
+        if (mLabelAtlas != null) {
+            mLabelMatrix.setTranslate(xPx, yPx);
+            mLabelAtlas.drawVerticallyCenteredText(mCanvas, text, mLabelMatrix, mTextPaint);
+        } else {
+            mCanvas.drawText(text, xPx, yPx + mTextPaint.getTextSize() * FaceStyle.TEXT_CAP_HEIGHT / 2, mTextPaint);
+        }
+    }
+
+    @Override
+    public void drawHand(int slot, boolean ambient) {
+        mCanvas.drawPath(mHandPaths[slot], ambient ? mHandAmbientPaints[slot] : mHandInteractivePaints[slot]);
+    }
+}
@@ -0,0 +1,335 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * A bezel scale: a function from scale values to fractions of a
+ * revolution, plus tick ranges, labels, and circles.
+ *
+ * Positions across the bezel ring are "band" fractions: 0 is the
+ * inner edge (the clock dial's rim), 1 is the outer edge.
+ *
+ * {@link #build} turns the definition into flat tick-endpoint and
+ * label-placement arrays for one dial size; drawing the bezel then
+ * does no per-tick math.
+ */
+public abstract class BezelScale {
+    private static final float TEXT_ROTATION_FUDGE_FACTOR = 1f;
+
+    public final String name;
+
+    /* clock dial diameter as a fraction of the entire dial's */
+    public final float innerDiameter;
+
+    private final ArrayList<float[]> tickRanges = new ArrayList<float[]>();
+    private final ArrayList<Float> labelValues = new ArrayList<Float>();
+    private final ArrayList<Float> labelBands = new ArrayList<Float>();
+    private final ArrayList<String> labelTexts = new ArrayList<String>();
+    private final ArrayList<Float> circleBands = new ArrayList<Float>();
+
+    private boolean built = false;
+    private float builtCenterXPx;
+    private float builtCenterYPx;
+    private float builtRadiusPx;
+
+    private float[] tickLines = new float[0];
+    private float[] circleRadiiPx = new float[0];
+    private float[] labelXPx = new float[0];
+    private float[] labelYPx = new float[0];
+    private float[] labelDegrees = new float[0];
+    private String[] labels = new String[0];
+
+    protected BezelScale(String name, float innerDiameter) {
+        this.name = name;
+        this.innerDiameter = innerDiameter;
+    }
+
+    /**
+     * Returns where a scale value sits, as a fraction of a revolution
+     * clockwise from 12 o'clock.
+     */
+    protected abstract float rotation(float value);
+
+    /**
+     * Ticks from {@code from} (inclusive) to {@code to} (exclusive).
+     * A value already ticked by an earlier range is not ticked again.
+     */
+    public BezelScale addTicks(float from, float to, float step, float bandFrom, float bandTo) {
+        tickRanges.add(new float[]{from, to, step, bandFrom, bandTo});
+        built = false;
+        return this;
+    }
+
+    public BezelScale addTick(float value, float bandFrom, float bandTo) {
+        return addTicks(value, value, 0f, bandFrom, bandTo);
+    }
+
+    public BezelScale addLabel(float value, String text, float band) {
+        labelValues.add(value);
+        labelTexts.add(text);
+        labelBands.add(band);
+        built = false;
+        return this;
+    }
+
+    public BezelScale addLabels(float band, int... values) {
+        for (int value : values) {
+            addLabel(value, Integer.toString(value), band);
+        }
+        return this;
+    }
+
+    public BezelScale addCircle(float band) {
+        circleBands.add(band);
+        built = false;
+        return this;
+    }
+
+    /**
+     * Rotation in degrees, in [0, 360).
+     */
+    public float degrees(float value) {
+        return Utility.mod(rotation(value), 1f) * 360f;
+    }
+
+    /**
+     * Computes tick endpoints, circle radii, and label placements for
+     * a bezel whose outer edge has the given radius.  Does nothing if
+     * the tables are already built for the same dimensions.
+     */
+    public void build(float centerXPx, float centerYPx, float radiusPx) {
+        if (built && centerXPx == builtCenterXPx && centerYPx == builtCenterYPx &&
+                radiusPx == builtRadiusPx) {
+            return;
+        }
+
+        float innerRadiusPx = radiusPx * innerDiameter;
+        float bandPx = radiusPx - innerRadiusPx;
+
+        ArrayList<Float> lines = new ArrayList<Float>();
+        HashSet<Float> ticked = new HashSet<Float>();
+        for (float[] range : tickRanges) {
+            float from = range[0];
+            float to = range[1];
+            float step = range[2];
+            float r1 = innerRadiusPx + bandPx * range[3];
+            float r2 = innerRadiusPx + bandPx * range[4];
+            int count = step == 0f ? 1 : (int) Math.ceil((to - from) / step);
+            for (int i = 0; i < count; i += 1) {
+                float value = from + step * i;
+                if (!ticked.add(value)) {
+                    continue;
+                }
+                float degrees = degrees(value);
+                float sin = Utility.sinDegrees(degrees);
+                float cos = Utility.cosDegrees(degrees);
+                lines.add(centerXPx + r1 * sin);
+                lines.add(centerYPx - r1 * cos);
+                lines.add(centerXPx + r2 * sin);
+                lines.add(centerYPx - r2 * cos);
+            }
+        }
+        tickLines = new float[lines.size()];
+        for (int i = 0; i < tickLines.length; i += 1) {
+            tickLines[i] = lines.get(i);
+        }
+
+        circleRadiiPx = new float[circleBands.size()];
+        for (int i = 0; i < circleRadiiPx.length; i += 1) {
+            circleRadiiPx[i] = innerRadiusPx + bandPx * circleBands.get(i);
+        }
+
+        int labelCount = labelValues.size();
+        labelXPx = new float[labelCount];
+        labelYPx = new float[labelCount];
+        labelDegrees = new float[labelCount];
+        labels = labelTexts.toArray(new String[labelCount]);
+        for (int i = 0; i < labelCount; i += 1) {
+            float degrees = degrees(labelValues.get(i));
+            float r = innerRadiusPx + bandPx * labelBands.get(i);
+            labelXPx[i] = centerXPx + r * Utility.sinDegrees(degrees);
+            labelYPx[i] = centerYPx - r * Utility.cosDegrees(degrees);
+            /* keep labels on the bottom half right side up */
+            if (degrees >= 90f + TEXT_ROTATION_FUDGE_FACTOR && degrees <= 270f - TEXT_ROTATION_FUDGE_FACTOR) {
+                degrees += 180f;
+            }
+            labelDegrees[i] = degrees;
+        }
+
+        builtCenterXPx = centerXPx;
+        builtCenterYPx = centerYPx;
+        builtRadiusPx = radiusPx;
+        built = true;
+    }
+
+    /** x1, y1, x2, y2 for each tick, for Canvas.drawLines. */
+    public float[] getTickLines() {
+        return tickLines;
+    }
+
+    public float[] getCircleRadiiPx() {
+        return circleRadiiPx;
+    }
+
+    public int getLabelCount() {
+        return labels.length;
+    }
+
+    public String getLabel(int i) {
+        return labels[i];
+    }
+
+    public float getLabelXPx(int i) {
+        return labelXPx[i];
+    }
+
+    public float getLabelYPx(int i) {
+        return labelYPx[i];
+    }
+
+    /** Rotation of the label's text about its anchor, in degrees. */
+    public float getLabelDegrees(int i) {
+        return labelDegrees[i];
+    }
+
+    // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+    /**
+     * Logarithmic scale: one decade per revolution.
+     */
+    public static BezelScale slideRule() {
+        BezelScale scale = new BezelScale("slide rule", 0.8f) {
+            @Override
+            protected float rotation(float value) {
+                return (float) Math.log10(value);
+            }
+        };
+        scale.addCircle(0f).addCircle(0.5f).addCircle(1f);
+        scale.addTicks(1000, 2500, 100, 0.25f, 0.75f);
+        scale.addTicks(2500, 5000, 250, 0.25f, 0.75f);
+        scale.addTicks(5000, 10000, 500, 0.25f, 0.75f);
+        scale.addTicks(1000, 2500, 20, 0.375f, 0.625f);
+        scale.addTicks(2500, 5000, 50, 0.375f, 0.625f);
+        scale.addTicks(5000, 10000, 100, 0.375f, 0.625f);
+        int[] points = {10, 11, 12, 15, 18, 20, 25, 30, 35, 40, 45, 50, 55, 60, 70, 80, 90};
+        scale.addLabels(0.25f, points);
+        scale.addLabels(0.75f, points);
+        return scale;
+    }
+
+    /**
+     * Units per hour from the seconds it takes to cover one unit.
+     */
+    public static BezelScale tachymeter() {
+        BezelScale scale = new BezelScale("tachymeter", 0.9f) {
+            @Override
+            protected float rotation(float value) {
+                return 60f / value;
+            }
+        };
+        scale.addCircle(0f).addCircle(1f);
+        scale.addTicks(60, 121, 1, 0f, 0.2f);
+        int[] ticks = {135, 150, 175, 200, 250, 300, 400, 500, 600, 750, 1000};
+        for (int tick : ticks) {
+            scale.addTick(tick, 0f, 0.2f);
+        }
+        scale.addLabels(0.5f,
+                60, 62, 64, 66, 68, 70, 72, 75, 80, 85, 90, 100, 110, 120,
+                135, 150, 175, 200, 240, 300, 400, 600, 1000);
+        return scale;
+    }
+
+    /**
+     * Distance in kilometers to a lightning strike or artillery, from
+     * the seconds between flash and sound (343 m/s).
+     */
+    public static BezelScale telemeter() {
+        BezelScale scale = new BezelScale("telemeter", 0.9f) {
+            @Override
+            protected float rotation(float value) {
+                return value / (0.343f * 60f);
+            }
+        };
+        scale.addCircle(0f).addCircle(1f);
+        scale.addTicks(1, 21, 1, 0f, 0.25f);
+        scale.addTicks(0.5f, 20.5f, 0.5f, 0f, 0.15f);
+        scale.addLabels(0.55f, 1, 2, 3, 4, 5, 6, 8, 10, 12, 14, 16, 18, 20);
+        return scale;
+    }
+
+    /**
+     * Beats per minute from the seconds it takes to count 30 beats.
+     */
+    public static BezelScale pulsometer() {
+        BezelScale scale = new BezelScale("pulsometer", 0.9f) {
+            @Override
+            protected float rotation(float value) {
+                return 30f / value;
+            }
+        };
+        scale.addCircle(0f).addCircle(1f);
+        scale.addTicks(40, 100, 10, 0f, 0.25f);
+        scale.addTicks(100, 201, 20, 0f, 0.25f);
+        scale.addTicks(36, 100, 2, 0f, 0.15f);
+        scale.addTicks(100, 200, 5, 0f, 0.15f);
+        scale.addLabels(0.55f, 40, 50, 60, 70, 80, 90, 100, 120, 140, 160, 180, 200);
+        return scale;
+    }
+
+    /**
+     * Hundredths of a minute.
+     */
+    public static BezelScale decimalMinutes() {
+        BezelScale scale = new BezelScale("decimal minutes", 0.9f) {
+            @Override
+            protected float rotation(float value) {
+                return value / 100f;
+            }
+        };
+        scale.addCircle(0f).addCircle(1f);
+        scale.addTicks(0, 100, 10, 0f, 0.3f);
+        scale.addTicks(0, 100, 5, 0f, 0.2f);
+        scale.addTicks(0, 100, 1, 0f, 0.1f);
+        scale.addLabel(0, "100", 0.6f);
+        scale.addLabels(0.6f, 10, 20, 30, 40, 50, 60, 70, 80, 90);
+        return scale;
+    }
+
+    /**
+     * Minutes, for timing against a rotated zero marker.
+     */
+    public static BezelScale elapsedTime() {
+        BezelScale scale = new BezelScale("elapsed time", 0.9f) {
+            @Override
+            protected float rotation(float value) {
+                return value / 60f;
+            }
+        };
+        scale.addCircle(0f).addCircle(1f);
+        scale.addTick(0, 0f, 1f);
+        scale.addTicks(0, 60, 5, 0f, 0.3f);
+        scale.addTicks(0, 60, 1, 0f, 0.15f);
+        scale.addLabels(0.6f, 10, 20, 30, 40, 50);
+        return scale;
+    }
+
+    public static BezelScale forType(Utility.BezelType bezelType) {
+        switch (bezelType) {
+            case BEZEL_SLIDE_RULE:
+                return slideRule();
+            case BEZEL_TACHYMETER:
+                return tachymeter();
+            case BEZEL_TELEMETER:
+                return telemeter();
+            case BEZEL_PULSOMETER:
+                return pulsometer();
+            case BEZEL_DECIMAL_MINUTES:
+                return decimalMinutes();
+            case BEZEL_ELAPSED_TIME:
+                return elapsedTime();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.webonastick.watchface.pilotwatch;
+
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.wearable.complications.ComplicationHelperActivity;
+import android.support.wearable.complications.ComplicationProviderInfo;
+import android.support.wearable.complications.ProviderInfoRetriever;
+import android.view.View;
+import android.widget.Button;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lets the user pick a provider for each complication slot.  Reached
+ * from the watch face's settings gear through the
+ * wearableConfigurationAction declared in the manifest.
+ */
+public class ComplicationConfigActivity extends Activity {
+    private static final int REQUEST_PICK_PROVIDER = 1;
+
+    private ComponentName mWatchFace;
+    private ExecutorService mExecutor;
+    private ProviderInfoRetriever mProviderInfoRetriever;
+
+    private Button mUpperLeftButton;
+    private Button mLowerLeftButton;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_complication_config);
+
+        mWatchFace = new ComponentName(this, PilotWatchFace.class);
+
+        mUpperLeftButton = findViewById(R.id.upper_left_complication);
+        mLowerLeftButton = findViewById(R.id.lower_left_complication);
+        bindButton(mUpperLeftButton, PilotWatchFace.COMPLICATION_ID_UPPER_LEFT);
+        bindButton(mLowerLeftButton, PilotWatchFace.COMPLICATION_ID_LOWER_LEFT);
+
+        mExecutor = Executors.newSingleThreadExecutor();
+        mProviderInfoRetriever = new ProviderInfoRetriever(this, mExecutor);
+        mProviderInfoRetriever.init();
+        retrieveProviderInfo();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mProviderInfoRetriever.release();
+        mExecutor.shutdown();
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_PICK_PROVIDER && resultCode == RESULT_OK) {
+            retrieveProviderInfo();
+        }
+    }
+
+    private void bindButton(Button button, final int complicationId) {
+        button.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                startActivityForResult(
+                        ComplicationHelperActivity.createProviderChooserHelperIntent(
+                                ComplicationConfigActivity.this, mWatchFace, complicationId,
+                                PilotWatchFace.COMPLICATION_SUPPORTED_TYPES),
+                        REQUEST_PICK_PROVIDER);
+            }
+        });
+    }
+
+    /**
+     * Shows the current provider of each slot on its button; the
+     * callbacks arrive on the main thread.
+     */
+    private void retrieveProviderInfo() {
+        mProviderInfoRetriever.retrieveProviderInfo(
+                new ProviderInfoRetriever.OnProviderInfoReceivedCallback() {
+                    @Override
+                    public void onProviderInfoReceived(int complicationId, ComplicationProviderInfo info) {
+                        if (complicationId == PilotWatchFace.COMPLICATION_ID_UPPER_LEFT) {
+                            setButtonLabel(mUpperLeftButton, R.string.config_upper_left_complication, info);
+                        } else if (complicationId == PilotWatchFace.COMPLICATION_ID_LOWER_LEFT) {
+                            setButtonLabel(mLowerLeftButton, R.string.config_lower_left_complication, info);
+                        }
+                    }
+                },
+                mWatchFace,
+                PilotWatchFace.COMPLICATION_ID_UPPER_LEFT,
+                PilotWatchFace.COMPLICATION_ID_LOWER_LEFT);
+    }
+
+    private void setButtonLabel(Button button, int slotNameId, ComplicationProviderInfo info) {
+        String slotName = getString(slotNameId);
+        if (info == null) {
+            button.setText(getString(R.string.config_complication_empty, slotName));
+        } else {
+            button.setText(getString(R.string.config_complication_provider, slotName, info.providerName));
+        }
+    }
+}
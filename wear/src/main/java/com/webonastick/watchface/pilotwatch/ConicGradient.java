@@ -0,0 +1,81 @@
+package com.webonastick.watchface.pilotwatch;
+
+/**
+ * A conic (angle-only) light falloff, as on a sunray or brushed-metal
+ * dial: two highlight lobes facing the light and two shadow lobes
+ * between them.  Rendered pixel by pixel into a disc, with an ordered
+ * dither on the alpha channel so the slow falloff doesn't band, and
+ * an anti-aliased rim.
+ *
+ * Plain Java; callers wrap the pixels in whatever bitmap type they
+ * draw with.  Meant to be rendered once per size and cached, never
+ * per frame.
+ */
+public class ConicGradient {
+    /* 4x4 Bayer matrix, thresholds in sixteenths */
+    private static final int[] BAYER_4X4 = {
+            0, 8, 2, 10,
+            12, 4, 14, 6,
+            3, 11, 1, 9,
+            15, 7, 13, 5
+    };
+
+    /* degrees clockwise from 12 o'clock; the light comes from the upper left */
+    public static final float DEFAULT_LIGHT_ANGLE = -45f;
+
+    /**
+     * Returns the side, in pixels, of the square {@link #render} fills
+     * for the given radius.
+     */
+    public static int getSizePx(float radiusPx) {
+        return (int) Math.ceil(radiusPx * 2f) + 2;
+    }
+
+    /**
+     * Renders the disc into non-premultiplied ARGB pixels, row major,
+     * getSizePx(radiusPx) on a side, centered.  White at up to
+     * highlight alpha toward the light and away from it, black at up
+     * to shadow alpha across it, transparent outside the disc.
+     */
+    public static int[] render(float radiusPx, float highlight, float shadow, float lightAngle) {
+        int sizePx = getSizePx(radiusPx);
+        int[] pixels = new int[sizePx * sizePx];
+        float centerPx = sizePx / 2f;
+        float highlightAlpha = 255f * Utility.clamp(highlight, 0f, 1f);
+        float shadowAlpha = 255f * Utility.clamp(shadow, 0f, 1f);
+        float outerRadiusPx = radiusPx + 0.5f;
+        float innerRadiusPx = Math.max(0f, radiusPx - 0.5f);
+        float outerRadiusSquared = outerRadiusPx * outerRadiusPx;
+        float innerRadiusSquared = innerRadiusPx * innerRadiusPx;
+
+        for (int y = 0; y < sizePx; y += 1) {
+            float dy = y + 0.5f - centerPx;
+            int row = y * sizePx;
+            int bayerRow = (y & 3) * 4;
+            for (int x = 0; x < sizePx; x += 1) {
+                float dx = x + 0.5f - centerPx;
+                float distanceSquared = dx * dx + dy * dy;
+                if (distanceSquared >= outerRadiusSquared) {
+                    continue;
+                }
+                float coverage = 1f;
+                if (distanceSquared > innerRadiusSquared) {
+                    coverage = outerRadiusPx - (float) Math.sqrt(distanceSquared);
+                }
+                /* same convention as the dials: x = sin, y = -cos */
+                float angle = Utility.atan2Degrees(dx, -dy);
+                float light = Utility.cosDegrees(2f * (angle - lightAngle));
+                float alpha = (light >= 0f ? highlightAlpha * light : -shadowAlpha * light) * coverage;
+                int a = (int) (alpha + (BAYER_4X4[bayerRow + (x & 3)] + 0.5f) / 16f);
+                if (a <= 0) {
+                    continue;
+                }
+                if (a > 255) {
+                    a = 255;
+                }
+                pixels[row + x] = (a << 24) | (light >= 0f ? 0xffffff : 0x000000);
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,549 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Dial and tick geometry, in plain Java so that the build can
+ * precompute it for common screen sizes (see {@link #main}) and the
+ * watch face can compute, and cache, whatever the build did not.
+ * Dials are configured from a {@link DialLayout}.
+ *
+ * Diameters and stroke widths are in the same units the watch face
+ * uses: fractions of the clock dial, or of the dial's own radius for
+ * tick sets and circles.
+ */
+public class DialGeometry {
+    public static final float MINIMUM_STROKE_WIDTH_PX = 1f;
+
+    /* On at least two round watches the outer border won't display unless you factor this. */
+    public static final int ROUND_CHOPPED_PX = 1;
+
+    public static final String ASSET_NAME = "dial_geometry.bin";
+    public static final String LAYOUT_RESOURCE_PATH = "src/main/res/raw/dial_layout.txt";
+
+    private static final int MAGIC = 0x50574447; /* "PWDG" */
+    private static final int FORMAT_VERSION = 2;
+
+    /* tick endpoints are stored in 1/16 px */
+    private static final float FIXED_POINT_SCALE = 16f;
+
+    public static final int[][] PRECOMPUTED_SIZES = {
+            {320, 320}, {360, 360}, {384, 384}, {390, 390}, {454, 454}
+    };
+
+    public static float getDialDiameterPx(int surfaceWidthPx, int surfaceHeightPx, boolean isRound) {
+        float dialDiameterPx = Math.min(surfaceWidthPx, surfaceHeightPx) - MINIMUM_STROKE_WIDTH_PX;
+        if (isRound) {
+            dialDiameterPx -= ROUND_CHOPPED_PX;
+        }
+        return dialDiameterPx;
+    }
+
+    public static class TickSet {
+        public int numberOfTicks = 4;
+        public float outerDiameter = 1.0f;
+        public float innerDiameter = 0.9f;
+        public float ambientOuterDiameter = -1;
+        public float ambientInnerDiameter = -1;
+        public float strokeWidthVmin = 0.01f;
+        public float ambientStrokeWidthVmin = -1;
+        public boolean nonAmbientOnly = false;
+        public ArrayList<Integer> excludeNumberOfTicks = new ArrayList<Integer>();
+
+        /* x1, y1, x2, y2 for each tick, for Canvas.drawLines */
+        public float[] lines;
+        public float[] ambientLines;
+
+        public void excludeTicks(TickSet ts) {
+            excludeNumberOfTicks.add(ts.numberOfTicks);
+        }
+
+        public float[] computeLines(Dial<?> dial, boolean ambient, float extendPx) {
+            if (ambient && nonAmbientOnly) {
+                return new float[0];
+            }
+            float outerDiameter = this.outerDiameter;
+            float innerDiameter = this.innerDiameter;
+            if (ambient) {
+                if (ambientInnerDiameter >= 0) {
+                    innerDiameter = ambientInnerDiameter;
+                }
+                if (ambientOuterDiameter >= 0) {
+                    outerDiameter = ambientOuterDiameter;
+                }
+            }
+            float r1 = outerDiameter * dial.contentRadiusPx;
+            float r2 = innerDiameter * dial.contentRadiusPx;
+
+            float[] result = new float[(numberOfTicks + 1) * 4];
+            int count = 0;
+            boolean fullCircle = dial.startAngle == 0f && dial.endAngle == 360f;
+            float[] tickAngles = fullCircle ? Utility.getTickAngleTable(numberOfTicks) : null;
+            tick:
+            for (int i = 0; i <= numberOfTicks; i += 1) {
+                for (int n : excludeNumberOfTicks) {
+                    if ((i * n) % numberOfTicks == 0) {
+                        continue tick;
+                    }
+                }
+                float rotation = 1.0f * i / numberOfTicks;
+                if (dial.isExcluded(rotation)) {
+                    continue tick;
+                }
+                float angle = dial.startAngle + (dial.endAngle - dial.startAngle) * rotation;
+                boolean extend = false;
+                if (dial.startAngle != dial.endAngle) {
+                    if (angle == dial.startAngle || angle == dial.endAngle) {
+                        extend = true;
+                    }
+                }
+                if (dial.excludeTicksFrom != dial.excludeTicksTo) {
+                    if (rotation == dial.excludeTicksFrom || rotation == dial.excludeTicksTo) {
+                        extend = true;
+                    }
+                }
+                float sin;
+                float cos;
+                if (fullCircle) {
+                    int j = (i % numberOfTicks) * 2;
+                    sin = tickAngles[j];
+                    cos = tickAngles[j + 1];
+                } else {
+                    sin = Utility.sinDegrees(angle);
+                    cos = Utility.cosDegrees(angle);
+                }
+                float outerPx = extend ? r1 + extendPx : r1;
+                float innerPx = extend ? r2 - extendPx : r2;
+                result[count++] = dial.centerXPx + outerPx * sin;
+                result[count++] = dial.centerYPx - outerPx * cos;
+                result[count++] = dial.centerXPx + innerPx * sin;
+                result[count++] = dial.centerYPx - innerPx * cos;
+            }
+            float[] lines = new float[count];
+            System.arraycopy(result, 0, lines, 0, count);
+            return lines;
+        }
+    }
+
+    public static abstract class Dial<T extends TickSet> {
+        public float diameterVmin = 0.5f;
+        public float centerXVmin = 0.0f;
+        public float centerYVmin = 0.0f;
+        public float startAngle = 0f;
+        public float endAngle = 360f;
+        public float excludeTicksFrom = 0f;
+        public float excludeTicksTo = 0f;
+
+        public float circle1Diameter = 0f;
+        public float circle2Diameter = 0f;
+        public float circleStrokeWidthVmin = 0f;
+
+        public float borderWidthVmin = 0f;
+
+        public ArrayList<T> tickSets = new ArrayList<T>();
+
+        protected float radiusPx;
+        protected float borderWidthPx;
+        protected float contentRadiusPx;
+        protected float centerXPx;
+        protected float centerYPx;
+
+        protected float leftBoundaryPx;
+        protected float rightBoundaryPx;
+        protected float topBoundaryPx;
+        protected float bottomBoundaryPx;
+
+        protected abstract T newTickSet();
+
+        public void addTickSet(T tickSet) {
+            tickSets.add(tickSet);
+        }
+
+        protected boolean isExcluded(float rotation) {
+            return (excludeTicksFrom != 0f || excludeTicksTo != 0f) &&
+                    rotation > excludeTicksFrom && rotation < excludeTicksTo;
+        }
+
+        public void layout(float surfaceCenterXPx, float surfaceCenterYPx, float clockDialDiameterPx) {
+            radiusPx = diameterVmin * clockDialDiameterPx / 2;
+            borderWidthPx = Math.max(clockDialDiameterPx * borderWidthVmin, 1f);
+            contentRadiusPx = radiusPx - borderWidthPx;
+            centerXPx = surfaceCenterXPx + centerXVmin * clockDialDiameterPx;
+            centerYPx = surfaceCenterYPx + centerYVmin * clockDialDiameterPx;
+        }
+
+        public void updateBoundaries(int surfaceWidthPx, int surfaceHeightPx) {
+            if (startAngle == 0f && endAngle == 360f) {
+                leftBoundaryPx = centerXPx - radiusPx;
+                rightBoundaryPx = centerXPx + radiusPx;
+                topBoundaryPx = centerYPx - radiusPx;
+                bottomBoundaryPx = centerYPx + radiusPx;
+            } else {
+                leftBoundaryPx = centerXPx;
+                rightBoundaryPx = centerXPx;
+                topBoundaryPx = centerYPx;
+                bottomBoundaryPx = centerYPx;
+                float minAngle = Math.min(startAngle, endAngle);
+                float maxAngle = Math.max(startAngle, endAngle);
+                float angle = minAngle;
+                while (true) {
+                    float pointXPx = centerXPx + radiusPx * Utility.sinDegrees(angle);
+                    float pointYPx = centerYPx - radiusPx * Utility.cosDegrees(angle);
+                    leftBoundaryPx = Math.min(leftBoundaryPx, pointXPx);
+                    rightBoundaryPx = Math.max(rightBoundaryPx, pointXPx);
+                    topBoundaryPx = Math.min(topBoundaryPx, pointYPx);
+                    bottomBoundaryPx = Math.max(bottomBoundaryPx, pointYPx);
+                    if (angle == maxAngle) {
+                        break;
+                    }
+                    angle += 90f;                                  // e.g., 36 => 126
+                    angle = (float) Math.floor(angle / 90f) * 90f; // e.g., 126 => 90
+                    angle = Math.min(angle, maxAngle);
+                }
+            }
+
+            /* don't put boundaries past the boundaries of the canvas */
+            leftBoundaryPx = Math.max(leftBoundaryPx, 0);
+            rightBoundaryPx = Math.min(rightBoundaryPx, surfaceWidthPx);
+            topBoundaryPx = Math.max(topBoundaryPx, 0);
+            bottomBoundaryPx = Math.min(bottomBoundaryPx, surfaceHeightPx);
+        }
+
+        public float getCircleStrokeWidth(float surfaceVminPx) {
+            if (circleStrokeWidthVmin != 0f) {
+                return Math.max(MINIMUM_STROKE_WIDTH_PX, circleStrokeWidthVmin * surfaceVminPx);
+            }
+            for (TickSet tickSet : tickSets) {
+                if (tickSet.strokeWidthVmin != 0f) {
+                    return Math.max(MINIMUM_STROKE_WIDTH_PX, tickSet.strokeWidthVmin * surfaceVminPx);
+                }
+            }
+            return 0f;
+        }
+
+        /**
+         * Computes every tick set's lines.  Call after {@link #layout}.
+         */
+        public void computeTickLines(float surfaceVminPx) {
+            float extendPx = getCircleStrokeWidth(surfaceVminPx) * 0.45f;
+            for (TickSet tickSet : tickSets) {
+                tickSet.lines = tickSet.computeLines(this, false, extendPx);
+                tickSet.ambientLines = tickSet.computeLines(this, true, extendPx);
+            }
+        }
+
+        private void appendSpec(StringBuilder builder) {
+            builder.append(diameterVmin).append(',').append(centerXVmin).append(',').append(centerYVmin)
+                    .append(',').append(startAngle).append(',').append(endAngle)
+                    .append(',').append(excludeTicksFrom).append(',').append(excludeTicksTo)
+                    .append(',').append(circleStrokeWidthVmin).append(',').append(borderWidthVmin);
+            for (TickSet tickSet : tickSets) {
+                builder.append('[').append(tickSet.numberOfTicks)
+                        .append(',').append(tickSet.outerDiameter).append(',').append(tickSet.innerDiameter)
+                        .append(',').append(tickSet.ambientOuterDiameter).append(',').append(tickSet.ambientInnerDiameter)
+                        .append(',').append(tickSet.strokeWidthVmin).append(',').append(tickSet.nonAmbientOnly)
+                        .append(',').append(tickSet.excludeNumberOfTicks).append(']');
+            }
+            builder.append(';');
+        }
+    }
+
+    /**
+     * A dial with nothing but geometry, for the build-time generator.
+     */
+    public static class PlainDial extends Dial<TickSet> {
+        @Override
+        protected TickSet newTickSet() {
+            return new TickSet();
+        }
+    }
+
+    /**
+     * Identifies the dial specs a table was computed from, so a table
+     * built from different specs is never used.
+     */
+    public static int getSpecHash(List<? extends Dial<?>> dials) {
+        StringBuilder builder = new StringBuilder();
+        for (Dial<?> dial : dials) {
+            dial.appendSpec(builder);
+        }
+        return builder.toString().hashCode();
+    }
+
+    // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+    /**
+     * Tick lines, keyed by dial spec hash, surface size, screen shape,
+     * and clock dial diameter.  Entries are kept in insertion order.
+     */
+    public static class Table {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+        public int size() {
+            return entries.size();
+        }
+
+        public Entry find(int specHash, int surfaceWidthPx, int surfaceHeightPx, boolean isRound, float clockDialDiameterPx) {
+            return entries.get(getKey(specHash, surfaceWidthPx, surfaceHeightPx, isRound, clockDialDiameterPx));
+        }
+
+        public void put(Entry entry) {
+            entries.put(getKey(entry.specHash, entry.surfaceWidthPx, entry.surfaceHeightPx, entry.isRound,
+                    entry.clockDialDiameterPx), entry);
+        }
+
+        public void putAll(Table table) {
+            entries.putAll(table.entries);
+        }
+
+        /**
+         * Drops the oldest entries until at most maxEntries are left.
+         */
+        public void trim(int maxEntries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        private static String getKey(int specHash, int surfaceWidthPx, int surfaceHeightPx, boolean isRound,
+                                     float clockDialDiameterPx) {
+            return specHash + ":" + surfaceWidthPx + "x" + surfaceHeightPx + (isRound ? "r" : "s") +
+                    Float.floatToIntBits(clockDialDiameterPx);
+        }
+    }
+
+    /**
+     * The geometry of one layout at one surface size.  Never changed
+     * once built; dials share its line arrays.
+     */
+    public static class Entry {
+        public int specHash;
+        public int surfaceWidthPx;
+        public int surfaceHeightPx;
+        public boolean isRound;
+        public float clockDialDiameterPx;
+
+        /* per dial: center x, center y, content radius */
+        public float[][] dialMetrics;
+
+        /* per dial, per tick set: interactive lines, then ambient lines */
+        public float[][][] tickLines;
+
+        /**
+         * Copies the lines into the dials' tick sets.  Returns false,
+         * leaving the dials alone, if the dials don't line up with what
+         * the table was computed for.
+         */
+        public boolean apply(List<? extends Dial<?>> dials) {
+            if (dials.size() != dialMetrics.length) {
+                return false;
+            }
+            for (int i = 0; i < dials.size(); i += 1) {
+                Dial<?> dial = dials.get(i);
+                if (Math.abs(dial.centerXPx - dialMetrics[i][0]) > 0.01f ||
+                        Math.abs(dial.centerYPx - dialMetrics[i][1]) > 0.01f ||
+                        Math.abs(dial.contentRadiusPx - dialMetrics[i][2]) > 0.01f ||
+                        dial.tickSets.size() * 2 != tickLines[i].length) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < dials.size(); i += 1) {
+                Dial<?> dial = dials.get(i);
+                for (int j = 0; j < dial.tickSets.size(); j += 1) {
+                    TickSet tickSet = dial.tickSets.get(j);
+                    tickSet.lines = tickLines[i][j * 2];
+                    tickSet.ambientLines = tickLines[i][j * 2 + 1];
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Takes the tick lines the dials just computed.  Call after
+         * every dial's {@link Dial#computeTickLines}.
+         */
+        public static Entry capture(int specHash, int surfaceWidthPx, int surfaceHeightPx, boolean isRound,
+                                    float clockDialDiameterPx, List<? extends Dial<?>> dials) {
+            Entry entry = new Entry();
+            entry.specHash = specHash;
+            entry.surfaceWidthPx = surfaceWidthPx;
+            entry.surfaceHeightPx = surfaceHeightPx;
+            entry.isRound = isRound;
+            entry.clockDialDiameterPx = clockDialDiameterPx;
+            entry.dialMetrics = new float[dials.size()][];
+            entry.tickLines = new float[dials.size()][][];
+            for (int i = 0; i < dials.size(); i += 1) {
+                Dial<?> dial = dials.get(i);
+                entry.dialMetrics[i] = new float[]{dial.centerXPx, dial.centerYPx, dial.contentRadiusPx};
+                entry.tickLines[i] = new float[dial.tickSets.size() * 2][];
+                for (int j = 0; j < dial.tickSets.size(); j += 1) {
+                    TickSet tickSet = dial.tickSets.get(j);
+                    entry.tickLines[i][j * 2] = tickSet.lines;
+                    entry.tickLines[i][j * 2 + 1] = tickSet.ambientLines;
+                }
+            }
+            return entry;
+        }
+    }
+
+    public static Table read(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("not a dial geometry table");
+        }
+        Table table = new Table();
+        int entryCount = in.readInt();
+        for (int e = 0; e < entryCount; e += 1) {
+            Entry entry = new Entry();
+            entry.specHash = in.readInt();
+            entry.surfaceWidthPx = in.readInt();
+            entry.surfaceHeightPx = in.readInt();
+            entry.isRound = in.readBoolean();
+            entry.clockDialDiameterPx = in.readFloat();
+            int dialCount = in.readInt();
+            entry.dialMetrics = new float[dialCount][3];
+            entry.tickLines = new float[dialCount][][];
+            for (int i = 0; i < dialCount; i += 1) {
+                entry.dialMetrics[i][0] = in.readFloat();
+                entry.dialMetrics[i][1] = in.readFloat();
+                entry.dialMetrics[i][2] = in.readFloat();
+                int lineSetCount = in.readInt();
+                entry.tickLines[i] = new float[lineSetCount][];
+                for (int j = 0; j < lineSetCount; j += 1) {
+                    boolean sameAsPrevious = in.readBoolean();
+                    if (sameAsPrevious) {
+                        entry.tickLines[i][j] = entry.tickLines[i][j - 1];
+                        continue;
+                    }
+                    float[] lines = new float[in.readInt()];
+                    for (int k = 0; k < lines.length; k += 1) {
+                        lines[k] = in.readShort() / FIXED_POINT_SCALE;
+                    }
+                    entry.tickLines[i][j] = lines;
+                }
+            }
+            table.put(entry);
+        }
+        return table;
+    }
+
+    public static void write(Table table, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(table.size());
+        for (Entry entry : table.entries.values()) {
+            writeEntry(out, entry);
+        }
+        out.flush();
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeInt(entry.specHash);
+        out.writeInt(entry.surfaceWidthPx);
+        out.writeInt(entry.surfaceHeightPx);
+        out.writeBoolean(entry.isRound);
+        out.writeFloat(entry.clockDialDiameterPx);
+        out.writeInt(entry.dialMetrics.length);
+        for (int i = 0; i < entry.dialMetrics.length; i += 1) {
+            out.writeFloat(entry.dialMetrics[i][0]);
+            out.writeFloat(entry.dialMetrics[i][1]);
+            out.writeFloat(entry.dialMetrics[i][2]);
+            out.writeInt(entry.tickLines[i].length);
+            for (int j = 0; j < entry.tickLines[i].length; j += 1) {
+                writeLines(out, entry.tickLines[i][j], j % 2 == 1 ? entry.tickLines[i][j - 1] : null);
+            }
+        }
+    }
+
+    private static Entry computeEntry(int specHash, int surfaceWidthPx, int surfaceHeightPx, boolean isRound,
+                                      float clockDialDiameterPx, List<PlainDial> dials) {
+        for (PlainDial dial : dials) {
+            dial.layout(surfaceWidthPx / 2f, surfaceHeightPx / 2f, clockDialDiameterPx);
+            dial.computeTickLines(Math.min(surfaceWidthPx, surfaceHeightPx));
+        }
+        return Entry.capture(specHash, surfaceWidthPx, surfaceHeightPx, isRound, clockDialDiameterPx, dials);
+    }
+
+    private static void writeLines(DataOutputStream out, float[] lines, float[] previous) throws IOException {
+        if (previous != null && Arrays.equals(lines, previous)) {
+            out.writeBoolean(true);
+            return;
+        }
+        out.writeBoolean(false);
+        out.writeInt(lines.length);
+        for (float value : lines) {
+            out.writeShort(Math.round(value * FIXED_POINT_SCALE));
+        }
+    }
+
+    /**
+     * Writes the table for every layout in the layout file, for
+     * {@link #PRECOMPUTED_SIZES}, round and square, for every clock
+     * dial diameter a bezel type can leave.  Run by the wear module's
+     * generateDialGeometry task with the output file and the layout
+     * file.
+     */
+    public static void main(String[] args) throws IOException {
+        File file = new File(args.length > 0 ? args[0] : ASSET_NAME);
+        File layoutFile = new File(args.length > 1 ? args[1] : LAYOUT_RESOURCE_PATH);
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("could not create " + directory);
+        }
+
+        Map<String, DialLayout> layouts;
+        Reader reader = new InputStreamReader(new FileInputStream(layoutFile), "UTF-8");
+        try {
+            layouts = DialLayout.parse(reader);
+        } finally {
+            reader.close();
+        }
+
+        TreeSet<Float> innerDiameters = new TreeSet<Float>();
+        for (Utility.BezelType bezelType : Utility.BezelType.values()) {
+            BezelScale bezelScale = BezelScale.forType(bezelType);
+            innerDiameters.add(bezelScale == null ? 1f : bezelScale.innerDiameter);
+        }
+
+        Table table = new Table();
+        for (DialLayout layout : layouts.values()) {
+            List<PlainDial> dials = layout.createPlainDials();
+            int specHash = getSpecHash(dials);
+            for (int[] size : PRECOMPUTED_SIZES) {
+                for (boolean isRound : new boolean[]{true, false}) {
+                    float dialDiameterPx = getDialDiameterPx(size[0], size[1], isRound);
+                    for (float innerDiameter : innerDiameters) {
+                        table.put(computeEntry(specHash, size[0], size[1], isRound, dialDiameterPx * innerDiameter, dials));
+                    }
+                }
+            }
+        }
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(table, out);
+        } finally {
+            out.close();
+        }
+        System.out.println("wrote " + file + " (" + layouts.size() + " layout(s), " + file.length() + " bytes)");
+    }
+}
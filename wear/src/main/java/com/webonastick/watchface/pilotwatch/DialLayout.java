@@ -0,0 +1,457 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dial layout read from the line format in res/raw/dial_layout.txt:
+ * dials with their tick sets and labels, and hands.  Plain Java, so
+ * the build-time generator in {@link DialGeometry} reads the very same
+ * file the watch face does.
+ *
+ * One statement per line; '#' starts a comment.  A file holds one or
+ * more layouts:
+ *
+ *     layout NAME
+ *     dial NAME [diameter= centerX= centerY= startAngle= endAngle=
+ *               excludeFrom= excludeTo= circle1= circle2= circleStroke=
+ *               border= nonAmbientOnly= filled= brightness=
+ *               background=none|ridged|conic typeface=]
+ *     ticks [count= outer= inner= ambientOuter= ambientInner= stroke=
+ *            ambientStroke= nonAmbientOnly= exclude=N,N,...]
+ *     text at= label=
+ *     hand NAME dial= [color= nonAmbientOnly= arrowHead= length=
+ *                      behind= width= shadow=]
+ *
+ * ticks and text belong to the dial above them.  Omitted keys keep the
+ * defaults of the classes they configure.
+ */
+public class DialLayout {
+    public static final String DEFAULT_LAYOUT_NAME = "pilot";
+
+    public static class TickSetSpec {
+        public int numberOfTicks = 4;
+        public float outerDiameter = 1.0f;
+        public float innerDiameter = 0.9f;
+        public float ambientOuterDiameter = -1;
+        public float ambientInnerDiameter = -1;
+        public float strokeWidthVmin = 0.01f;
+        public float ambientStrokeWidthVmin = -1;
+        public boolean nonAmbientOnly = false;
+        public final List<Integer> excludeNumberOfTicks = new ArrayList<Integer>();
+    }
+
+    public static class TextSpec {
+        public final float rotation;
+        public final String text;
+
+        public TextSpec(float rotation, String text) {
+            this.rotation = rotation;
+            this.text = text;
+        }
+    }
+
+    public static class DialSpec {
+        public final String name;
+        public float diameterVmin = 0.5f;
+        public float centerXVmin = 0.0f;
+        public float centerYVmin = 0.0f;
+        public float startAngle = 0f;
+        public float endAngle = 360f;
+        public float excludeTicksFrom = 0f;
+        public float excludeTicksTo = 0f;
+        public float circle1Diameter = 0f;
+        public float circle2Diameter = 0f;
+        public float circleStrokeWidthVmin = 0f;
+        public float borderWidthVmin = 0f;
+
+        /* not geometry; only the watch face reads these */
+        public boolean nonAmbientOnly = false;
+        public boolean filled = false;
+        public float backgroundBrightness = 0f;
+        public Utility.WatchDialBackgroundStyle backgroundStyle = Utility.WatchDialBackgroundStyle.NONE;
+        public String typeface = null;
+
+        public final List<TickSetSpec> tickSets = new ArrayList<TickSetSpec>();
+        public final List<TextSpec> texts = new ArrayList<TextSpec>();
+
+        public DialSpec(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Sets the dial's geometry and adds its tick sets.
+         */
+        public <T extends DialGeometry.TickSet> void configure(DialGeometry.Dial<T> dial) {
+            dial.diameterVmin = diameterVmin;
+            dial.centerXVmin = centerXVmin;
+            dial.centerYVmin = centerYVmin;
+            dial.startAngle = startAngle;
+            dial.endAngle = endAngle;
+            dial.excludeTicksFrom = excludeTicksFrom;
+            dial.excludeTicksTo = excludeTicksTo;
+            dial.circle1Diameter = circle1Diameter;
+            dial.circle2Diameter = circle2Diameter;
+            dial.circleStrokeWidthVmin = circleStrokeWidthVmin;
+            dial.borderWidthVmin = borderWidthVmin;
+            for (TickSetSpec spec : tickSets) {
+                T tickSet = dial.newTickSet();
+                tickSet.numberOfTicks = spec.numberOfTicks;
+                tickSet.outerDiameter = spec.outerDiameter;
+                tickSet.innerDiameter = spec.innerDiameter;
+                tickSet.ambientOuterDiameter = spec.ambientOuterDiameter;
+                tickSet.ambientInnerDiameter = spec.ambientInnerDiameter;
+                tickSet.strokeWidthVmin = spec.strokeWidthVmin;
+                tickSet.ambientStrokeWidthVmin = spec.ambientStrokeWidthVmin;
+                tickSet.nonAmbientOnly = spec.nonAmbientOnly;
+                tickSet.excludeNumberOfTicks.addAll(spec.excludeNumberOfTicks);
+                dial.addTickSet(tickSet);
+            }
+        }
+    }
+
+    public static class HandSpec {
+        public final String name;
+        public final String dialName;
+
+        /* "hour", "minute", or "second": which of the face's hand colors */
+        public String color = "second";
+        public boolean nonAmbientOnly = false;
+        public boolean hasArrowHead = false;
+        public float lengthPctRadius = 1f;
+        public float lengthBehindPctRadius = 0f;
+        public float widthVmin = 0.005f;
+        public float shadowRadiusPx = 0f;
+
+        public HandSpec(String name, String dialName) {
+            this.name = name;
+            this.dialName = dialName;
+        }
+    }
+
+    public final String name;
+    private final List<DialSpec> mDials = new ArrayList<DialSpec>();
+    private final List<HandSpec> mHands = new ArrayList<HandSpec>();
+    private final StringBuilder mSource = new StringBuilder();
+
+    private DialLayout(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Hash of the statements this layout was parsed from, comments
+     * and whitespace aside.  Covers what the geometry spec hash
+     * doesn't, such as fills, typefaces, and labels.
+     */
+    public int getSourceHash() {
+        return mSource.toString().hashCode();
+    }
+
+    public List<DialSpec> getDials() {
+        return Collections.unmodifiableList(mDials);
+    }
+
+    public List<HandSpec> getHands() {
+        return Collections.unmodifiableList(mHands);
+    }
+
+    public DialSpec getDial(String name) {
+        for (DialSpec dial : mDials) {
+            if (dial.name.equals(name)) {
+                return dial;
+            }
+        }
+        throw new IllegalArgumentException("layout " + this.name + " has no dial " + name);
+    }
+
+    public HandSpec getHand(String name) {
+        for (HandSpec hand : mHands) {
+            if (hand.name.equals(name)) {
+                return hand;
+            }
+        }
+        throw new IllegalArgumentException("layout " + this.name + " has no hand " + name);
+    }
+
+    /**
+     * Plain dials for every dial spec, in layout order; the order the
+     * watch face creates its own dials in.
+     */
+    public List<DialGeometry.PlainDial> createPlainDials() {
+        List<DialGeometry.PlainDial> dials = new ArrayList<DialGeometry.PlainDial>();
+        for (DialSpec spec : mDials) {
+            DialGeometry.PlainDial dial = new DialGeometry.PlainDial();
+            spec.configure(dial);
+            dials.add(dial);
+        }
+        return dials;
+    }
+
+    // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+    public static DialLayout read(InputStream in, String layoutName) throws IOException {
+        DialLayout layout = parse(new InputStreamReader(in, "UTF-8")).get(layoutName);
+        if (layout == null) {
+            throw new IOException("no layout " + layoutName);
+        }
+        return layout;
+    }
+
+    /**
+     * Every layout in the file, by name, in file order.
+     */
+    public static Map<String, DialLayout> parse(Reader reader) throws IOException {
+        Map<String, DialLayout> layouts = new LinkedHashMap<String, DialLayout>();
+        BufferedReader in = new BufferedReader(reader);
+        DialLayout layout = null;
+        DialSpec dial = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber += 1;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.length() == 0) {
+                continue;
+            }
+            String[] words = line.split("\\s+");
+            String keyword = words[0];
+            try {
+                if (keyword.equals("layout")) {
+                    String name = getName(words);
+                    if (layouts.containsKey(name)) {
+                        throw new IllegalArgumentException("duplicate layout " + name);
+                    }
+                    layout = new DialLayout(name);
+                    layouts.put(name, layout);
+                    dial = null;
+                    continue;
+                }
+                if (layout == null) {
+                    throw new IllegalArgumentException(keyword + " before any layout");
+                }
+                layout.mSource.append(line).append('\n');
+                if (keyword.equals("dial")) {
+                    dial = new DialSpec(getName(words));
+                    parseDial(dial, words);
+                    layout.mDials.add(dial);
+                } else if (keyword.equals("ticks")) {
+                    if (dial == null) {
+                        throw new IllegalArgumentException("ticks before any dial");
+                    }
+                    TickSetSpec tickSet = new TickSetSpec();
+                    parseTickSet(tickSet, words);
+                    dial.tickSets.add(tickSet);
+                } else if (keyword.equals("text")) {
+                    if (dial == null) {
+                        throw new IllegalArgumentException("text before any dial");
+                    }
+                    dial.texts.add(parseText(words));
+                } else if (keyword.equals("hand")) {
+                    layout.mHands.add(parseHand(layout, words));
+                } else {
+                    throw new IllegalArgumentException("unknown statement " + keyword);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("dial layout line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return layouts;
+    }
+
+    private static String getName(String[] words) {
+        if (words.length < 2 || words[1].indexOf('=') >= 0) {
+            throw new IllegalArgumentException(words[0] + " needs a name");
+        }
+        return words[1];
+    }
+
+    /**
+     * Splits key=value words, starting at the given word.
+     */
+    private static Map<String, String> getProperties(String[] words, int start) {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        for (int i = start; i < words.length; i += 1) {
+            int equals = words[i].indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("expected key=value, got " + words[i]);
+            }
+            properties.put(words[i].substring(0, equals), words[i].substring(equals + 1));
+        }
+        return properties;
+    }
+
+    private static float parseFloat(String key, String value) {
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + ": not a number: " + value);
+        }
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + ": not an integer: " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        if (value.equals("true")) {
+            return true;
+        }
+        if (value.equals("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException(key + ": not true or false: " + value);
+    }
+
+    private static Utility.WatchDialBackgroundStyle parseBackgroundStyle(String key, String value) {
+        if (value.equals("none")) {
+            return Utility.WatchDialBackgroundStyle.NONE;
+        }
+        if (value.equals("ridged")) {
+            return Utility.WatchDialBackgroundStyle.RADIAL_RIDGED;
+        }
+        if (value.equals("conic")) {
+            return Utility.WatchDialBackgroundStyle.CONIC_GRADIENT;
+        }
+        throw new IllegalArgumentException(key + ": not none, ridged, or conic: " + value);
+    }
+
+    private static void parseDial(DialSpec dial, String[] words) {
+        for (Map.Entry<String, String> property : getProperties(words, 2).entrySet()) {
+            String key = property.getKey();
+            String value = property.getValue();
+            if (key.equals("diameter")) {
+                dial.diameterVmin = parseFloat(key, value);
+            } else if (key.equals("centerX")) {
+                dial.centerXVmin = parseFloat(key, value);
+            } else if (key.equals("centerY")) {
+                dial.centerYVmin = parseFloat(key, value);
+            } else if (key.equals("startAngle")) {
+                dial.startAngle = parseFloat(key, value);
+            } else if (key.equals("endAngle")) {
+                dial.endAngle = parseFloat(key, value);
+            } else if (key.equals("excludeFrom")) {
+                dial.excludeTicksFrom = parseFloat(key, value);
+            } else if (key.equals("excludeTo")) {
+                dial.excludeTicksTo = parseFloat(key, value);
+            } else if (key.equals("circle1")) {
+                dial.circle1Diameter = parseFloat(key, value);
+            } else if (key.equals("circle2")) {
+                dial.circle2Diameter = parseFloat(key, value);
+            } else if (key.equals("circleStroke")) {
+                dial.circleStrokeWidthVmin = parseFloat(key, value);
+            } else if (key.equals("border")) {
+                dial.borderWidthVmin = parseFloat(key, value);
+            } else if (key.equals("nonAmbientOnly")) {
+                dial.nonAmbientOnly = parseBoolean(key, value);
+            } else if (key.equals("filled")) {
+                dial.filled = parseBoolean(key, value);
+            } else if (key.equals("brightness")) {
+                dial.backgroundBrightness = parseFloat(key, value);
+            } else if (key.equals("background")) {
+                dial.backgroundStyle = parseBackgroundStyle(key, value);
+            } else if (key.equals("typeface")) {
+                dial.typeface = value;
+            } else {
+                throw new IllegalArgumentException("unknown dial key " + key);
+            }
+        }
+    }
+
+    private static void parseTickSet(TickSetSpec tickSet, String[] words) {
+        for (Map.Entry<String, String> property : getProperties(words, 1).entrySet()) {
+            String key = property.getKey();
+            String value = property.getValue();
+            if (key.equals("count")) {
+                tickSet.numberOfTicks = parseInt(key, value);
+            } else if (key.equals("outer")) {
+                tickSet.outerDiameter = parseFloat(key, value);
+            } else if (key.equals("inner")) {
+                tickSet.innerDiameter = parseFloat(key, value);
+            } else if (key.equals("ambientOuter")) {
+                tickSet.ambientOuterDiameter = parseFloat(key, value);
+            } else if (key.equals("ambientInner")) {
+                tickSet.ambientInnerDiameter = parseFloat(key, value);
+            } else if (key.equals("stroke")) {
+                tickSet.strokeWidthVmin = parseFloat(key, value);
+            } else if (key.equals("ambientStroke")) {
+                tickSet.ambientStrokeWidthVmin = parseFloat(key, value);
+            } else if (key.equals("nonAmbientOnly")) {
+                tickSet.nonAmbientOnly = parseBoolean(key, value);
+            } else if (key.equals("exclude")) {
+                for (String count : value.split(",")) {
+                    tickSet.excludeNumberOfTicks.add(parseInt(key, count));
+                }
+            } else {
+                throw new IllegalArgumentException("unknown ticks key " + key);
+            }
+        }
+        if (tickSet.numberOfTicks <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+    }
+
+    private static TextSpec parseText(String[] words) {
+        Map<String, String> properties = getProperties(words, 1);
+        String at = properties.remove("at");
+        String label = properties.remove("label");
+        if (at == null || label == null) {
+            throw new IllegalArgumentException("text needs at= and label=");
+        }
+        if (!properties.isEmpty()) {
+            throw new IllegalArgumentException("unknown text key " + properties.keySet().iterator().next());
+        }
+        return new TextSpec(parseFloat("at", at), label);
+    }
+
+    private static HandSpec parseHand(DialLayout layout, String[] words) {
+        String name = getName(words);
+        Map<String, String> properties = getProperties(words, 2);
+        String dialName = properties.remove("dial");
+        if (dialName == null) {
+            throw new IllegalArgumentException("hand " + name + " needs dial=");
+        }
+        layout.getDial(dialName);
+        HandSpec hand = new HandSpec(name, dialName);
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String key = property.getKey();
+            String value = property.getValue();
+            if (key.equals("color")) {
+                if (!value.equals("hour") && !value.equals("minute") && !value.equals("second")) {
+                    throw new IllegalArgumentException("color must be hour, minute, or second");
+                }
+                hand.color = value;
+            } else if (key.equals("nonAmbientOnly")) {
+                hand.nonAmbientOnly = parseBoolean(key, value);
+            } else if (key.equals("arrowHead")) {
+                hand.hasArrowHead = parseBoolean(key, value);
+            } else if (key.equals("length")) {
+                hand.lengthPctRadius = parseFloat(key, value);
+            } else if (key.equals("behind")) {
+                hand.lengthBehindPctRadius = parseFloat(key, value);
+            } else if (key.equals("width")) {
+                hand.widthVmin = parseFloat(key, value);
+            } else if (key.equals("shadow")) {
+                hand.shadowRadiusPx = parseFloat(key, value);
+            } else {
+                throw new IllegalArgumentException("unknown hand key " + key);
+            }
+        }
+        return hand;
+    }
+}
@@ -0,0 +1,51 @@
+package com.webonastick.watchface.pilotwatch;
+
+/**
+ * What {@link FaceDrawing} draws on: the watch face wraps an Android
+ * canvas, the off-device renderer a Graphics2D.  Strokes and text use
+ * whatever was last set with {@link #setStroke} and {@link #setText};
+ * colors are ARGB.
+ */
+interface FaceCanvas {
+    void save();
+
+    void restore();
+
+    void translate(float dxPx, float dyPx);
+
+    void rotate(float degrees, float pivotXPx, float pivotYPx);
+
+    /**
+     * Whether the rectangle, in current coordinates, is certainly
+     * outside the clip.  May always answer false.
+     */
+    boolean quickReject(float leftPx, float topPx, float rightPx, float bottomPx);
+
+    /**
+     * Butt-capped antialiased strokes.
+     */
+    void setStroke(int color, float widthPx);
+
+    /**
+     * Fill, in the face's regular typeface.
+     */
+    void setText(int color, float sizePx);
+
+    void drawCircle(float centerXPx, float centerYPx, float radiusPx);
+
+    /**
+     * Lines as x1, y1, x2, y2 quadruples.
+     */
+    void drawLines(float[] lines);
+
+    /**
+     * Centered on x, with the cap height centered on y.
+     */
+    void drawVerticallyCenteredText(String text, float xPx, float yPx);
+
+    /**
+     * Fills the hand in the given slot, pointing to 12 o'clock, with
+     * its interactive or ambient paint.
+     */
+    void drawHand(int slot, boolean ambient);
+}
@@ -0,0 +1,200 @@
+package com.webonastick.watchface.pilotwatch;
+
+/**
+ * Drawing routines shared by the watch face and the off-device
+ * renderer, written against {@link FaceCanvas} so both draw ticks,
+ * the bezel, and the hands the same way.
+ */
+final class FaceDrawing {
+    private FaceDrawing() {
+    }
+
+    /**
+     * Receives a hand's outline.  The shroud is the disc around the
+     * pivot, added to the outline, minus its hole.
+     */
+    interface HandOutline {
+        void moveTo(float xPx, float yPx);
+
+        void lineTo(float xPx, float yPx);
+
+        void close();
+
+        void addShroud(float centerXPx, float centerYPx, float radiusPx, float holeRadiusPx);
+    }
+
+    static int getLineColor(int tickColor, boolean ambient, boolean isShadow) {
+        if (ambient) {
+            return FaceStyle.WHITE;
+        }
+        return isShadow ? FaceStyle.BLACK : tickColor;
+    }
+
+    static float getStrokeWidthPx(float strokeWidthVmin, float surfaceVminPx) {
+        return Math.max(DialGeometry.MINIMUM_STROKE_WIDTH_PX, strokeWidthVmin * surfaceVminPx);
+    }
+
+    /**
+     * Strokes a tick set, offset by the dial's shadow offset when
+     * drawing its shadow.
+     */
+    static void drawTickSet(FaceCanvas canvas, DialGeometry.TickSet tickSet, int tickColor, float surfaceVminPx,
+                            boolean ambient, boolean isShadow, float shadowDXPx, float shadowDYPx) {
+        if (ambient && tickSet.nonAmbientOnly) {
+            return;
+        }
+        float[] lines = ambient ? tickSet.ambientLines : tickSet.lines;
+        if (lines == null || lines.length == 0) {
+            return;
+        }
+        float strokeWidthVmin = tickSet.strokeWidthVmin;
+        if (ambient && tickSet.ambientStrokeWidthVmin >= 0) {
+            strokeWidthVmin = tickSet.ambientStrokeWidthVmin;
+        }
+        canvas.setStroke(getLineColor(tickColor, ambient, isShadow), getStrokeWidthPx(strokeWidthVmin, surfaceVminPx));
+        if (!isShadow) {
+            canvas.drawLines(lines);
+            return;
+        }
+        canvas.save();
+        canvas.translate(shadowDXPx, shadowDYPx);
+        canvas.drawLines(lines);
+        canvas.restore();
+    }
+
+    /**
+     * Draws the bezel's circles, ticks, and labels, unrotated.  The
+     * scale must already be built for the surface.
+     */
+    static void drawBezel(FaceCanvas canvas, BezelScale bezelScale, float centerXPx, float centerYPx,
+                          float textSizePx, int tickColor, boolean ambient) {
+        int color = ambient ? FaceStyle.WHITE : tickColor;
+        canvas.setStroke(color, DialGeometry.MINIMUM_STROKE_WIDTH_PX);
+        for (float radiusPx : bezelScale.getCircleRadiiPx()) {
+            canvas.drawCircle(centerXPx, centerYPx, radiusPx);
+        }
+        canvas.drawLines(bezelScale.getTickLines());
+
+        canvas.setText(color, textSizePx);
+        float labelExtentPx = textSizePx * 2;
+        for (int i = 0; i < bezelScale.getLabelCount(); i += 1) {
+            float labelXPx = bezelScale.getLabelXPx(i);
+            float labelYPx = bezelScale.getLabelYPx(i);
+            if (canvas.quickReject(labelXPx - labelExtentPx, labelYPx - labelExtentPx,
+                    labelXPx + labelExtentPx, labelYPx + labelExtentPx)) {
+                continue;
+            }
+            canvas.save();
+            canvas.rotate(bezelScale.getLabelDegrees(i), labelXPx, labelYPx);
+            canvas.drawVerticallyCenteredText(bezelScale.getLabel(i), labelXPx, labelYPx);
+            canvas.restore();
+        }
+    }
+
+    static float getShroudRadiusPx(float clockDialRadiusPx, float widthPx) {
+        return Math.max(FaceStyle.SHROUD_THINGY_RADIUS * clockDialRadiusPx, widthPx);
+    }
+
+    static float getShroudHoleRadiusPx(float clockDialRadiusPx) {
+        return FaceStyle.SHROUD_THINGY_HOLE_RADIUS * clockDialRadiusPx;
+    }
+
+    /**
+     * Traces a hand pointing to 12 o'clock from its pivot: a bar with
+     * a pointed tip, or with an arrowhead, over the shroud.
+     */
+    static void traceHand(HandOutline outline, float centerXPx, float centerYPx,
+                          float lengthPx, float lengthBehindPx, float widthPx,
+                          boolean hasArrowHead, float arrowHeadAngle, float arrowHeadSize,
+                          float shroudRadiusPx, float shroudHoleRadiusPx) {
+        float leftPx = centerXPx - widthPx / 2;
+        float rightPx = centerXPx + widthPx / 2;
+        float topPx = centerYPx - lengthPx;
+        float bottomPx = centerYPx + lengthBehindPx;
+
+        if (hasArrowHead) {
+            float arrowheadDX1 = widthPx * arrowHeadSize / 2;
+            float arrowheadY1 = topPx + widthPx * arrowHeadSize / 2 / Utility.tanDegrees(arrowHeadAngle / 2);
+            outline.moveTo(leftPx, bottomPx);
+            outline.lineTo(leftPx, arrowheadY1);
+            outline.lineTo(centerXPx - arrowheadDX1, arrowheadY1);
+            outline.lineTo(centerXPx, topPx);
+            outline.lineTo(centerXPx + arrowheadDX1, arrowheadY1);
+            outline.lineTo(rightPx, arrowheadY1);
+            outline.lineTo(rightPx, bottomPx);
+        } else {
+            float tipHeight = widthPx / 2 / Utility.tanDegrees(arrowHeadAngle / 2);
+            outline.moveTo(leftPx, bottomPx);
+            outline.lineTo(leftPx, topPx + tipHeight);
+            outline.lineTo(centerXPx, topPx);
+            outline.lineTo(rightPx, topPx + tipHeight);
+            outline.lineTo(rightPx, bottomPx);
+        }
+        outline.close();
+        outline.addShroud(centerXPx, centerYPx, shroudRadiusPx, shroudHoleRadiusPx);
+    }
+
+    /**
+     * Fills in each slot's rotation for the frame, as a fraction of
+     * its dial's sweep; NaN hides the hand.  The subdial seconds hand
+     * goes under the hour and minute hands and the main dial seconds
+     * hand over them, whichever of the two shows the chronograph.
+     */
+    static void getHandRotations(FrameState state, boolean putChronographSecondsOnSubDial, float[] rotations) {
+        boolean showChronograph = !state.ambient;
+        boolean showSecondHand = !state.ambient;
+
+        final float seconds = (float) state.second + (float) state.getTickMillisecond() / 1000f; /* [0f, 60f) */
+        final float minutes = (float) state.minute + seconds / 60f;                            /* [0f, 60f) */
+        final float hours = (float) state.hour + minutes / 60f;                                /* [0f, 12f) */
+
+        rotations[FaceStyle.HAND_BATTERY] = state.batteryFraction;
+        rotations[FaceStyle.HAND_HOUR] = hours / 12f;
+        rotations[FaceStyle.HAND_MINUTE] = minutes / 60f;
+
+        float secondRotation = showSecondHand ? seconds / 60f : Float.NaN;
+        float chronographSecondRotation = Float.NaN;
+        if (showChronograph) {
+            long chronographMs = state.chronographMs;
+            rotations[FaceStyle.HAND_CHRONOGRAPH_SECOND_FRACTION] = (chronographMs % 1000) / 1000f;
+
+            // whether chronograph seconds are on the subdial or the main dial,
+            // we change them once a second.
+            chronographMs = (chronographMs / 1000) * 1000;
+
+            chronographSecondRotation = (chronographMs % 60000) / 60000f;
+            rotations[FaceStyle.HAND_CHRONOGRAPH_MINUTE] = (chronographMs % 3600000) / 3600000f;
+            rotations[FaceStyle.HAND_CHRONOGRAPH_HOUR] = (chronographMs % 43200000) / 43200000f;
+        } else {
+            rotations[FaceStyle.HAND_CHRONOGRAPH_SECOND_FRACTION] = Float.NaN;
+            rotations[FaceStyle.HAND_CHRONOGRAPH_MINUTE] = Float.NaN;
+            rotations[FaceStyle.HAND_CHRONOGRAPH_HOUR] = Float.NaN;
+        }
+
+        if (putChronographSecondsOnSubDial) {
+            rotations[FaceStyle.HAND_SUBDIAL_SECOND] = chronographSecondRotation;
+            rotations[FaceStyle.HAND_SECOND] = secondRotation;
+        } else {
+            rotations[FaceStyle.HAND_SUBDIAL_SECOND] = secondRotation;
+            rotations[FaceStyle.HAND_SECOND] = chronographSecondRotation;
+        }
+    }
+
+    /**
+     * Draws every hand slot in z-order, each rotated about its dial's
+     * center; the arrays are indexed by slot.
+     */
+    static void drawHands(FaceCanvas canvas, float[] rotations, float[] centerXPx, float[] centerYPx,
+                          float[] startAngle, float[] sweepAngle, boolean[] nonAmbientOnly, boolean ambient) {
+        for (int i = 0; i < FaceStyle.HAND_COUNT; i += 1) {
+            float rotation = rotations[i];
+            if (rotation != rotation || (ambient && nonAmbientOnly[i])) {
+                continue;
+            }
+            canvas.save();
+            canvas.rotate(startAngle[i] + sweepAngle[i] * rotation, centerXPx[i], centerYPx[i]);
+            canvas.drawHand(i, ambient);
+            canvas.restore();
+        }
+    }
+}
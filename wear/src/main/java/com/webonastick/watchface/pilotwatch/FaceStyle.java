@@ -0,0 +1,76 @@
+package com.webonastick.watchface.pilotwatch;
+
+/**
+ * The face's colors, proportions, and hand slots.  Plain Java, so the
+ * off-device renderer draws with the same numbers as the watch.
+ */
+final class FaceStyle {
+    static final int BACKGROUND_COLOR = 0xff002244;
+    static final int HOUR_HAND_COLOR = 0xffffffff;
+    static final int MINUTE_HAND_COLOR = 0xffffffff;
+    static final int SECOND_HAND_COLOR = 0xffffff00;
+    static final int TICK_COLOR = 0xffffffff;
+
+    /* ARGB, as android.graphics.Color has them */
+    static final int WHITE = 0xffffffff;
+    static final int BLACK = 0xff000000;
+
+    /* cap height of the face's typefaces, as a fraction of the text size */
+    static final float TEXT_CAP_HEIGHT = 0.7f;
+
+    /* text sizes are fractions of the clock dial's diameter */
+    static final float DEFAULT_TEXT_SIZE_VMIN = 0.05f;
+    static final float BEZEL_TEXT_SIZE_VMIN = 0.05f;
+    static final float DAY_DATE_TEXT_SIZE_VMIN = 0.07f;
+
+    /* right edge of the date window, as a fraction of the clock dial's radius */
+    static final float DAY_DATE_OUTER_VMIN = 0.88f;
+
+    static final float CONIC_HIGHLIGHT = 0.25f;
+    static final float CONIC_SHADOW = 0.3f;
+
+    /* dial shadow offset, in pixels */
+    static final float DIAL_SHADOW_DX_PX = 0f;
+    static final float DIAL_SHADOW_DY_PX = 1f;
+
+    static final float ARROW_HEAD_ANGLE = 45f;
+    static final float ARROW_HEAD_SIZE = 3f;
+
+    /* fractions of the clock dial's radius */
+    static final float SHROUD_THINGY_RADIUS = 0.03f;
+    static final float SHROUD_THINGY_HOLE_RADIUS = 0.01f;
+
+    static final boolean PUT_CHRONOGRAPH_SECONDS_ON_SUB_DIAL = true;
+
+    /* hand slots, in z-order */
+    static final int HAND_BATTERY = 0;
+    static final int HAND_CHRONOGRAPH_HOUR = 1;
+    static final int HAND_CHRONOGRAPH_MINUTE = 2;
+    static final int HAND_CHRONOGRAPH_SECOND_FRACTION = 3;
+    static final int HAND_SUBDIAL_SECOND = 4;
+    static final int HAND_HOUR = 5;
+    static final int HAND_MINUTE = 6;
+    static final int HAND_SECOND = 7;
+    static final int HAND_COUNT = 8;
+
+    /* each slot's hand name in the dial layout file */
+    static final String[] HAND_NAMES = {
+            "battery", "chronographHour", "chronographMinute", "chronographSecondFraction",
+            "subdialSecond", "hour", "minute", "second"
+    };
+
+    private FaceStyle() {
+    }
+
+    /**
+     * The base color of a hand, by the layout file's color name.
+     */
+    static int getHandColor(String colorName) {
+        if (colorName.equals("hour")) {
+            return HOUR_HAND_COLOR;
+        } else if (colorName.equals("minute")) {
+            return MINUTE_HAND_COLOR;
+        }
+        return SECOND_HAND_COLOR;
+    }
+}
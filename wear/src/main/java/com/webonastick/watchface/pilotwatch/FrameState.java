@@ -0,0 +1,95 @@
+package com.webonastick.watchface.pilotwatch;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Everything one frame draws from, computed once on the main thread
+ * and handed, unchanged, to whichever thread renders the frame.
+ */
+final class FrameState {
+    final long nowMs;
+
+    /* wall time, from the calendar at capture */
+    final int hour;
+    final int minute;
+    final int second;
+    final int millisecond;
+    final int dayOfWeek;
+    final int dayOfMonth;
+    final String dayText;
+
+    /* stopwatch time, already at the resolution it is shown at */
+    final long chronographMs;
+
+    /* 0 to 1, or slightly outside that range when the level is unknown or odd */
+    final float batteryFraction;
+
+    final boolean ambient;
+
+    /* day/date zoom, eased: 0 is off, 1 fully zoomed, anything between animates */
+    final float zoomProgress;
+
+    /* the wall time second hand moves in steps of this many ms */
+    final int secondHandTickMs;
+    final float bezelRotationDegrees;
+
+    /* bumped by the engine whenever something drawn but not captured here changes */
+    final int contentVersion;
+
+    /*
+     * Hash of everything above at the resolution it is drawn at.  Two
+     * states with the same signature draw the same frame.
+     */
+    final long signature;
+
+    FrameState(long nowMs, Calendar calendar, long chronographMs, float batteryFraction,
+               boolean ambient, float zoomProgress, int secondHandTickMs, float bezelRotationDegrees,
+               int contentVersion) {
+        this.nowMs = nowMs;
+        this.hour = calendar.get(Calendar.HOUR);
+        this.minute = calendar.get(Calendar.MINUTE);
+        this.second = calendar.get(Calendar.SECOND);
+        this.millisecond = calendar.get(Calendar.MILLISECOND);
+        this.dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+        this.dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
+        this.dayText = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT, Locale.getDefault()).toUpperCase();
+        this.chronographMs = chronographMs;
+        this.batteryFraction = batteryFraction;
+        this.ambient = ambient;
+        this.zoomProgress = zoomProgress;
+        this.secondHandTickMs = secondHandTickMs;
+        this.bezelRotationDegrees = bezelRotationDegrees;
+        this.contentVersion = contentVersion;
+        this.signature = computeSignature();
+    }
+
+    /**
+     * The wall time millisecond, rounded down to a second hand step.
+     */
+    int getTickMillisecond() {
+        return (millisecond / secondHandTickMs) * secondHandTickMs;
+    }
+
+    boolean isZoomAnimating() {
+        return zoomProgress > 0f && zoomProgress < 1f;
+    }
+
+    private long computeSignature() {
+        long hash = contentVersion;
+        hash = hash * 31 + hour;
+        hash = hash * 61 + minute;
+        hash = hash * 61 + second;
+        hash = hash * 1009 + getTickMillisecond();
+        hash = hash * 31 + dayOfWeek;
+        hash = hash * 37 + dayOfMonth;
+        hash = hash * 1000003 + chronographMs;
+        /* battery hand in half-percent steps */
+        hash = hash * 257 + Math.round(batteryFraction * 200f);
+        hash = hash * 2 + (ambient ? 1 : 0);
+        hash = hash * 1000003 + Float.floatToIntBits(zoomProgress);
+        hash = hash * 31 + secondHandTickMs;
+        hash = hash * 1000003 + Float.floatToIntBits(bezelRotationDegrees);
+        return hash;
+    }
+}
@@ -1,6 +1,9 @@
 package com.webonastick.watchface.pilotwatch;
 
+import android.app.ActivityManager;
+import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -8,9 +11,15 @@ import android.content.pm.PackageInfo;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Shader;
 import android.graphics.SweepGradient;
 import android.graphics.Typeface;
@@ -18,28 +27,52 @@ import android.os.BatteryManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Message;
 import android.os.PowerManager;
-import androidx.core.content.ContextCompat;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.SystemProviders;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
+import android.view.Display;
 import android.view.SurfaceHolder;
+import android.view.WindowManager;
+import android.util.Log;
 import android.util.Pair;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import com.webonastick.watchface.AmbientRefresher;
-import com.webonastick.watchface.MultiTapEventHandler;
-import com.webonastick.watchface.MultiTapHandler;
+import com.webonastick.watchface.GestureEventHandler;
+import com.webonastick.watchface.GestureRecognizer;
+import com.webonastick.watchface.LabelAtlas;
+import com.webonastick.watchface.LayerDiskCache;
+import com.webonastick.watchface.LayerMemoryManager;
+import com.webonastick.watchface.RenderQualityGovernor;
 import com.webonastick.watchface.ScreenTimeExtender;
+import com.webonastick.watchface.SharedLayerCache;
+import com.webonastick.watchface.TiledRenderer;
 
 public class PilotWatchFace extends CanvasWatchFaceService {
     private static final String TAG = "PilotWatchFace";
@@ -56,17 +89,78 @@ public class PilotWatchFace extends CanvasWatchFaceService {
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Handler message id for resolving a pending multi-tap once its
+     * threshold has passed.
+     */
+    private static final int MSG_GESTURE_TIMEOUT = 1;
+
+    /**
+     * Handler message id for swapping in background layers built by
+     * the layer thread.
+     */
+    private static final int MSG_LAYERS_READY = 2;
+
+    /**
+     * Handler message id for reporting a frame drawn on the render
+     * thread; arg1 is its draw time in microseconds, obj its
+     * FrameState.
+     */
+    private static final int MSG_FRAME_RENDERED = 3;
+
+    /**
+     * Handler message id for swapping in the zoomed day/date layer;
+     * arg1 is the layer generation it was built for.
+     */
+    private static final int MSG_ZOOM_LAYER_READY = 4;
+
+    /**
+     * Handler message id for dropping the zoomed day/date layer once
+     * it has gone unused for a while.
+     */
+    private static final int MSG_EVICT_ZOOM_LAYER = 5;
+
+    /**
+     * Handler message id for reporting a frame the render thread
+     * could not draw; obj is its FrameState.
+     */
+    private static final int MSG_FRAME_DROPPED = 6;
+
     private static final float TEXT_ROTATION_FUDGE_FACTOR = 1f;
-    private static final float TEXT_CAP_HEIGHT = 0.7f;
 
-    /* On at least two round watches the outer border won't display unless you factor this. */
-    private static final int ROUND_CHOPPED_PX = 1;
+    /**
+     * Complication ids, shared with the configuration activity.
+     */
+    static final int COMPLICATION_ID_LOWER_LEFT = 0;
+    static final int COMPLICATION_ID_UPPER_LEFT = 1;
+
+    /**
+     * Data types the small complication slots can draw.
+     */
+    static final int[] COMPLICATION_SUPPORTED_TYPES = {
+            ComplicationData.TYPE_SHORT_TEXT,
+            ComplicationData.TYPE_RANGED_VALUE,
+            ComplicationData.TYPE_ICON,
+            ComplicationData.TYPE_SMALL_IMAGE
+    };
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        LayerMemoryManager.getInstance().onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        LayerMemoryManager.getInstance().onLowMemory();
+    }
+
     private static class EngineHandler extends Handler {
         private final WeakReference<PilotWatchFace.Engine> mWeakReference;
 
@@ -82,12 +176,30 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                     case MSG_UPDATE_TIME:
                         engine.handleUpdateTimeMessage();
                         break;
+                    case MSG_GESTURE_TIMEOUT:
+                        engine.handleGestureTimeoutMessage();
+                        break;
+                    case MSG_LAYERS_READY:
+                        engine.handleLayersReadyMessage((PilotWatchFace.Engine.BackgroundLayers) msg.obj);
+                        break;
+                    case MSG_FRAME_RENDERED:
+                        engine.handleFrameRenderedMessage((FrameState) msg.obj, msg.arg1);
+                        break;
+                    case MSG_FRAME_DROPPED:
+                        engine.handleFrameDroppedMessage((FrameState) msg.obj);
+                        break;
+                    case MSG_ZOOM_LAYER_READY:
+                        engine.handleZoomLayerReadyMessage(msg.arg1, (Bitmap) msg.obj);
+                        break;
+                    case MSG_EVICT_ZOOM_LAYER:
+                        engine.handleEvictZoomLayerMessage();
+                        break;
                 }
             }
         }
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine implements MultiTapEventHandler {
+    private class Engine extends CanvasWatchFaceService.Engine implements GestureEventHandler {
 
         Engine() {
             super();
@@ -100,8 +212,12 @@ public class PilotWatchFace extends CanvasWatchFaceService {
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                TimeZone timeZone = TimeZone.getDefault();
+                if (timeZone.getID().equals(mCalendar.getTimeZone().getID())) {
+                    return;
+                }
+                mCalendar.setTimeZone(timeZone);
+                requestFrame();
             }
         };
 
@@ -115,14 +231,46 @@ public class PilotWatchFace extends CanvasWatchFaceService {
         private float mPixelDensity;
 
         private int mBackgroundColor;
-        private int mHourHandColor;
-        private int mMinuteHandColor;
-        private int mSecondHandColor;
         private int mTickColor;
 
+        /* palette before theming; see applyThemeColors */
+        private int mBaseBackgroundColor;
+        private int mBaseTickColor;
+
+        /*
+         * Themes and mute dimming are color filters applied when the
+         * cached layers and the hands are composited, so switching
+         * either costs no layer rebuild.  With mBakeColorTheme, the
+         * theme is instead rendered into the layers' palette, and the
+         * last few themes' layers are kept for instant switching.
+         */
+        private static final float MUTE_BRIGHTNESS = 0.5f;
+        private static final int BAKED_THEME_CACHE_SIZE = 3;
+        private Utility.ColorTheme mColorTheme = Utility.ColorTheme.THEME_CLASSIC;
+        private boolean mBakeColorTheme = false;
+        private ColorMatrixColorFilter mInteractiveColorFilter = null;
+        private ColorMatrixColorFilter mAmbientColorFilter = null;
+        private ColorMatrixColorFilter mHandColorFilter = null;
+        private final Paint mLayerPaint = new Paint();
+        private final LinkedHashMap<Utility.ColorTheme, BackgroundLayers> mBakedThemeLayers =
+                new LinkedHashMap<Utility.ColorTheme, BackgroundLayers>(BAKED_THEME_CACHE_SIZE + 1, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Utility.ColorTheme, BackgroundLayers> eldest) {
+                        return size() > BAKED_THEME_CACHE_SIZE;
+                    }
+                };
+
         private Utility.BezelType mBezelType = Utility.BezelType.BEZEL_NONE;
-        private float mSlideRuleDiameter = 0.8f;
-        private float mTachymeterDiameter = 0.9f;
+        private BezelScale mBezelScale = null;
+
+        private static final float BEZEL_ROTATION_STEP_DEGREES = 6f;
+
+        private Bitmap mBezelBitmap = null;
+        private Bitmap mAmbientBezelBitmap = null;
+        private float mBezelRotationDegrees = 0f;
+        private float mPendingBezelRotationDegrees = 0f;
+        private final Matrix mBezelMatrix = new Matrix();
+        private final Paint mBezelLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
 
         // watch canvas/surface
         private float mSurfaceCenterXPx;
@@ -146,15 +294,134 @@ public class PilotWatchFace extends CanvasWatchFaceService {
         private Bitmap mAmbientBackgroundBitmap = null;
         private Bitmap mAmbientBackgroundBitmap2 = null;
 
+        /* the day each of the "2" layers above shows, or NO_DAY */
+        private static final int NO_DAY = -1;
+        private int mBackgroundBitmap2Day = NO_DAY;
+        private int mBackgroundBitmapZoomDayDate2Day = NO_DAY;
+        private int mAmbientBackgroundBitmap2Day = NO_DAY;
+
+        /* builds the bitmaps above, off the main thread */
+        private HandlerThread mLayerThread;
+        private Handler mLayerHandler;
+        private volatile int mLayerGeneration = 0;
+        private boolean mRenderLayersInBackground = true;
+
+        /* rendered layers survive process restarts here */
+        private static final int LAYER_DISK_CACHE_MAX_ENTRIES = 20;
+        private LayerDiskCache mLayerDiskCache;
+        private boolean mUseLayerDiskCache = true;
+
+        /*
+         * Layers, the dial layout, tick geometry, and day/date sprites
+         * are shared with the process's other engines (e.g. the picker
+         * preview) under the same keys as on disk, so a second engine
+         * at the same size and settings renders nothing.
+         */
+        private static final String SHARED_DIAL_LAYOUT_KEY = "dialLayout";
+        private static final String SHARED_DIAL_GEOMETRY_KEY = "dialGeometry";
+        private static final String SHARED_COMPILED_DIAL_GEOMETRY_KEY = "compiledDialGeometry";
+        private static final String SHARED_DAY_DATE_ATLAS_KEY = "dayDateAtlas";
+        private final SharedLayerCache mSharedLayerCache = SharedLayerCache.getInstance();
+        private boolean mUseSharedLayerCache = true; /* layers; the rest is always shared */
+        private String mLayersCacheKey = null;
+
+        /*
+         * Every cached bitmap, sprite atlas, and texture is registered
+         * with the memory manager; see registerLayerMemory.  The static
+         * layers only go while the face is hidden, and are rebuilt the
+         * next time a frame needs them.
+         */
+        private static final int LAYER_MEMORY_BUDGET_DIVISOR = 4; /* of the memory class */
+        private static final float ATLAS_SPRITE_COST_MS = 0.1f;
+        private final LayerMemoryManager mLayerMemoryManager = LayerMemoryManager.getInstance();
+        private BackgroundLayers mBackgroundLayers = null;
+        private boolean mLayersEvicted = false;
+
+        /* off by default; see benchmarkBackgroundBitmaps */
+        private static final int MAX_RENDER_TILE_COUNT = 4;
+        private boolean mUseTiledRendering = false;
+        private int mRenderTileCount = Math.max(1, Math.min(MAX_RENDER_TILE_COUNT,
+                Runtime.getRuntime().availableProcessors()));
+        private TiledRenderer mTiledRenderer = null;
+
+        private long mSurfaceChangedTimeNs = -1;
+        private boolean mFirstFrameLogged = false;
+
         private long mUpdateRateMs = INTERACTIVE_UPDATE_RATE_MS;
 
-        private boolean mPutChronographSecondsOnSubDial = true;
+        /*
+         * Interactive frames are drawn on their own thread from a
+         * FrameState snapshot.  mRenderLock is held while a frame is
+         * drawn, and by the main thread only around changes to what
+         * frames draw with (layout, layers, hand paints, complication
+         * data), never around tap handling.
+         */
+        private boolean mUseRenderThread = true;
+        private HandlerThread mRenderThread;
+        private Handler mRenderHandler;
+        private final Object mRenderLock = new Object();
+        private boolean mSurfaceAvailable = false;
+        private static final long SURFACE_DESTROY_WAIT_MS = 500;
+
+        /*
+         * Frame memoization; see requestFrame.  The last signature is
+         * that of the frame known to be on screen, the pending one
+         * that of the frame queued on or being drawn by the render
+         * thread.  Both are main thread only.
+         */
+        private static final long NO_FRAME_SIGNATURE = Long.MIN_VALUE;
+        private long mLastFrameSignature = NO_FRAME_SIGNATURE;
+        private long mPendingFrameSignature = NO_FRAME_SIGNATURE;
+        private int mFrameContentVersion = 0;
+        private volatile int mRenderedFrameCount = 0;
+        private int mSkippedFrameCount = 0;
+
+        /* from the battery broadcast; no IPC per frame */
+        private float mBatteryPercentage = -1f;
+        private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                int batteryLevel = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                int batteryScale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                if (batteryLevel < 0 || batteryScale <= 0) {
+                    return;
+                }
+                mBatteryPercentage = batteryLevel * 100f / batteryScale;
+                if (mRenderQualityGovernor.setBatteryPercentage(mBatteryPercentage)) {
+                    applyRenderQuality();
+                }
+                requestFrame();
+            }
+        };
+
+        /*
+         * Render quality tiers, each shedding one more thing: hand
+         * shadow layers, then the 5 Hz second hand tick (the second
+         * hand moves once a second), then the chronograph fraction
+         * hand's 20 Hz refresh (down to 5 Hz).
+         */
+        private static final int QUALITY_FULL = 0;
+        private static final int QUALITY_NO_HAND_SHADOWS = 1;
+        private static final int QUALITY_ONE_HZ_SECOND_HAND = 2;
+        private static final int QUALITY_SLOW_FRACTION_HAND = 3;
+        private final String[] mQualityNames = {
+                "full", "no hand shadows", "1 Hz second hand", "slow fraction hand"
+        };
+        private static final float QUALITY_FRAME_BUDGET_MS = 12f;
+        private RenderQualityGovernor mRenderQualityGovernor;
+        private int mRenderQuality = QUALITY_FULL;
+
+        private boolean mPutChronographSecondsOnSubDial = FaceStyle.PUT_CHRONOGRAPH_SECONDS_ON_SUB_DIAL;
 
         private boolean mDemoTimeMode = false;
         private boolean mEmulatorMode = false;
 
-        private static final float MINIMUM_STROKE_WIDTH_PX = 1f;
-        private static final float DEFAULT_TEXT_SIZE_VMIN = 0.05f;
+        private static final float MINIMUM_STROKE_WIDTH_PX = DialGeometry.MINIMUM_STROKE_WIDTH_PX;
+
+        /* from res/raw/dial_layout.txt; dials in layout order */
+        private DialLayout mDialLayout;
+        private List<WatchDial> mDials = new ArrayList<WatchDial>();
+        private int mDialSpecHash;
 
         private WatchDial mMainDial;
         private WatchDial mTopSubDial;
@@ -172,20 +439,57 @@ public class PilotWatchFace extends CanvasWatchFaceService {
         private WatchHand mChronographHourHand;
         private WatchHand mBatteryHand;
 
+        private String mTypefaceFamily = "sans-serif";
+        private String mCondensedTypefaceFamily = "sans-serif-condensed";
         private Typeface mTypeface = Typeface.SANS_SERIF;
         private Typeface mCondensedTypeface;
 
+        /*
+         * The day/date zoom moves between 0 (off) and 1 (zoomed) over
+         * ZOOM_ANIMATION_DURATION_MS, toward mZoomDayDate, one frame
+         * per display refresh.  Frames in between scale the normal
+         * layer up and the zoomed one, which covers only the region
+         * visible when zoomed, at the zoomed resolution, down.  The
+         * zoomed layer is built on first use and dropped after
+         * ZOOM_LAYER_IDLE_MS unzoomed.
+         */
+        private static final long ZOOM_ANIMATION_DURATION_MS = 300;
+        private static final long MAX_ZOOM_ANIMATION_FRAME_MS = 67;
+        private static final long ZOOM_LAYER_IDLE_MS = 60 * 1000;
         private boolean mZoomDayDate = false;
+        private boolean mZoomAnimating = false;
+        private float mZoomStartPosition = 0f;
+        private long mZoomStartTimeMs = 0;
+        private boolean mZoomLayerRequested = false;
+        private long mZoomAnimationFrameMs = 16;
+        private int mZoomAnimationFrameCount = 0;
+        private long mZoomAnimationFrameTimeSumNs = 0;
+        private long mZoomAnimationMaxFrameTimeNs = 0;
+
+        /* render thread: this frame's zoom, and the zoomed layer's placement */
+        private final Matrix mZoomAnimationMatrix = new Matrix();
+        private final Matrix mDayDateUnzoomMatrix = new Matrix();
+        private final Paint mZoomLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        /*
+         * What the zoomed layer covers of the fully zoomed screen: the
+         * day/date windows and the zoom's margin around them, at the
+         * zoomed scale.  The rest of the zoomed screen is the normal
+         * layer scaled up.
+         */
+        private final Rect mZoomLayerBounds = new Rect();
+        private float mDayDateZoomScale = 1f;
+        private float mDayDateZoomFixedXPx;
+        private float mDayDateZoomFixedYPx;
 
         private float mWatchFaceNameTextSizeVmin = 0.04f;
         private float mWatchFaceNameLeftOffsetVmin = 0.26f;
         private float mWatchFaceNameTopOffsetVmin = 0.26f;
 
-        private float mSlideRuleTextSizeVmin = 0.05f;
-        private float mTachymeterTextSizeVmin = 0.05f;
+        private float mBezelTextSizeVmin = FaceStyle.BEZEL_TEXT_SIZE_VMIN;
 
-        private float mDayDateTextSizeVmin = 0.07f;
-        private float mDayDateOuterVmin = 0.88f;
+        private float mDayDateTextSizeVmin = FaceStyle.DAY_DATE_TEXT_SIZE_VMIN;
+        private float mDayDateOuterVmin = FaceStyle.DAY_DATE_OUTER_VMIN;
 
         private float mDayDateTextSizePx;
         private float mDayWindowCenterXPx;
@@ -194,10 +498,30 @@ public class PilotWatchFace extends CanvasWatchFaceService {
         private float mDayDateBottomPx;
         private float mDayDateLeftPx;
         private float mDayDateRightPx;
+        private float mDayWindowRightPx;
+        private float mDateWindowLeftPx;
 
         private Paint mDayTextPaint;
         private Paint mDateTextPaint;
 
+        /*
+         * Day/date text, pre-rendered per text size: the 31 dates and
+         * the 7 day names, at the normal and at the zoomed scale.  A day
+         * change restores the two windows from the base layer and blits
+         * two sprites.  Indexed by DAY_DATE_NORMAL or DAY_DATE_ZOOMED.
+         * The atlas is shared by all engines and never cleared; under
+         * memory pressure an engine drops its reference instead, see
+         * mDayDateAtlasEvictor.
+         */
+        private static final int DAY_DATE_NORMAL = 0;
+        private static final int DAY_DATE_ZOOMED = 1;
+        private volatile LabelAtlas mDayDateAtlas;
+        private final Paint[] mDayDateTextPaints = new Paint[2];
+        private final Paint[] mCondensedDayDateTextPaints = new Paint[2];
+        private final Matrix mDayDateZoomMatrix = new Matrix();
+        private final Matrix mDayDatePlacement = new Matrix();
+        private final Paint mWindowRestorePaint = new Paint();
+
         private boolean mStopwatchRunning = false;
         private boolean mStopwatchPaused = false;
         private long mStopwatchStartTimeMs = 0;
@@ -218,99 +542,193 @@ public class PilotWatchFace extends CanvasWatchFaceService {
         private float mRidgeShadow = 0.8f;
         private float mBorderHighlight = 0.2f;
         private float mBorderShadow = 0.8f;
+        private float mConicHighlight = FaceStyle.CONIC_HIGHLIGHT;
+        private float mConicShadow = FaceStyle.CONIC_SHADOW;
 
+        /* replaced, never changed, so the layer thread can read it */
         private HashMap<String, Integer> mDayFontStretchMap = new HashMap<String, Integer>();
 
         private static final float PADDING_DP = 4;
 
-        private int lastDayOfMonth = -1;
-        private int lastDayOfWeek = -1;
-
         private ScreenTimeExtender mScreenTimeExtender;
         private AmbientRefresher   mAmbientRefresher;
 
-        private class WatchDial {
+        /**
+         * Pre-rasterized dial and bezel labels.  Kept separately for
+         * ambient and interactive mode.
+         */
+        private boolean mUseLabelAtlas = true;
+        private final LabelAtlas mLabelAtlas = new LabelAtlas(FaceStyle.TEXT_CAP_HEIGHT);
+        private final LabelAtlas mAmbientLabelAtlas = new LabelAtlas(FaceStyle.TEXT_CAP_HEIGHT);
+
+        private LabelAtlas getLabelAtlas(boolean ambient) {
+            return ambient ? mAmbientLabelAtlas : mLabelAtlas;
+        }
+
+        /**
+         * Radial ridge and conic gradient textures, shared across dials
+         * and background variants (the zoomed one just scales them),
+         * keyed by style, radius, highlight, and shadow.  Evicted on
+         * surface change.
+         */
+        private final HashMap<String, Bitmap> mDialTextureCache = new HashMap<String, Bitmap>();
+        private float mDialTextureCostMs = 0f;
+
+        private synchronized Bitmap getRidgeTexture(float radiusPx, float highlight, float shadow) {
+            String key = String.format(Locale.US, "ridge:%.2f:%.3f:%.3f", radiusPx, highlight, shadow);
+            Bitmap texture = mDialTextureCache.get(key);
+            if (texture == null) {
+                long startNs = SystemClock.elapsedRealtimeNanos();
+                texture = createRidgeTexture(radiusPx, highlight, shadow);
+                mDialTextureCache.put(key, texture);
+                mDialTextureCostMs += (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6f;
+            }
+            return texture;
+        }
+
+        private synchronized Bitmap getConicTexture(float radiusPx, float highlight, float shadow) {
+            String key = String.format(Locale.US, "conic:%.2f:%.3f:%.3f", radiusPx, highlight, shadow);
+            Bitmap texture = mDialTextureCache.get(key);
+            if (texture == null) {
+                long startNs = SystemClock.elapsedRealtimeNanos();
+                int sizePx = ConicGradient.getSizePx(radiusPx);
+                int[] pixels = ConicGradient.render(radiusPx, highlight, shadow, ConicGradient.DEFAULT_LIGHT_ANGLE);
+                texture = Bitmap.createBitmap(pixels, sizePx, sizePx, Bitmap.Config.ARGB_8888);
+                mDialTextureCache.put(key, texture);
+                float costMs = (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6f;
+                mDialTextureCostMs += costMs;
+                Log.d(TAG, String.format(Locale.US, "conic texture %dpx rendered in %.2f ms", sizePx, costMs));
+            }
+            return texture;
+        }
+
+        private synchronized void clearDialTextureCache() {
+            for (Bitmap texture : mDialTextureCache.values()) {
+                texture.recycle();
+            }
+            mDialTextureCache.clear();
+            mDialTextureCostMs = 0f;
+        }
+
+        /* for eviction off the layer thread, which may still be drawing with them: no recycling */
+        private synchronized void dropDialTextureCache() {
+            mDialTextureCache.clear();
+            mDialTextureCostMs = 0f;
+        }
+
+        private synchronized long getDialTextureByteCount() {
+            long byteCount = 0;
+            for (Bitmap texture : mDialTextureCache.values()) {
+                byteCount += texture.getAllocationByteCount();
+            }
+            return byteCount;
+        }
+
+        /**
+         * Strokes a concentric ring every 3 dp, alternating inset and
+         * outset sweep gradients.
+         */
+        private Bitmap createRidgeTexture(float radiusPx, float highlight, float shadow) {
+            int sizePx = (int) Math.ceil(radiusPx * 2f) + 2;
+            Bitmap texture = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(texture);
+            float centerPx = sizePx / 2f;
+
+            int highlightAlpha = Math.round(255 * Utility.clamp(highlight, 0f, 1f));
+            int shadowAlpha = Math.round(255 * Utility.clamp(shadow, 0f, 1f));
+            int highlightColor = ((0xff & highlightAlpha) << 24) | 0xffffff;
+            int shadowColor = ((0xff & shadowAlpha) << 24) | 0x000000;
+            int[] outsetColors = new int[]{Color.TRANSPARENT, shadowColor, Color.TRANSPARENT, highlightColor, Color.TRANSPARENT};
+            int[] insetColors = new int[]{Color.TRANSPARENT, highlightColor, Color.TRANSPARENT, shadowColor, Color.TRANSPARENT};
+            Shader outsetShader = new SweepGradient(centerPx, centerPx, outsetColors, null);
+            Shader insetShader = new SweepGradient(centerPx, centerPx, insetColors, null);
+
+            float ridgePx = dpToPx(1f);
+            float radiusIncr = ridgePx * 3f;
+
+            boolean isInset = true;
+            Paint paint = new Paint();
+            paint.setAntiAlias(true);
+            paint.setStrokeWidth(ridgePx);
+            paint.setStyle(Paint.Style.STROKE);
+
+            for (float ridgeRadiusPx = ridgePx / 2f;
+                 ridgeRadiusPx <= radiusPx;
+                 ridgeRadiusPx += radiusIncr) {
+                paint.setShader(isInset ? insetShader : outsetShader);
+                canvas.drawCircle(centerPx, centerPx, ridgeRadiusPx, paint);
+                isInset = !isInset;
+            }
+            return texture;
+        }
+
+        private class WatchDial extends DialGeometry.Dial<WatchDialTickSet> {
             public WeakReference<Engine> engineWeakReference;
 
-            public float diameterVmin = 0.5f;
-            public float centerXVmin = 0.0f;
-            public float centerYVmin = 0.0f;
             public boolean nonAmbientOnly = false;
-            public float startAngle = 0f;
-            public float endAngle = 360f;
-            public float excludeTicksFrom = 0f;
-            public float excludeTicksTo = 0f;
-
-            public float circle1Diameter = 0f;
-            public float circle2Diameter = 0f;
-            public float circleStrokeWidthVmin = 0f;
             public boolean circlesNonAmbientOnly = false;
 
             /* { 0.25f, "3" }, { 0.5f, "6" }, { 0.5f, "9" }, ... */
             public ArrayList<Pair<Float, String>> textPairs = new ArrayList<Pair<Float, String>>();
 
-            public float textSizeVmin = DEFAULT_TEXT_SIZE_VMIN;
+            public float textSizeVmin = FaceStyle.DEFAULT_TEXT_SIZE_VMIN;
 
             public int backgroundColor = Color.TRANSPARENT;
             public float backgroundBrightness = 0f;
 
             public Utility.WatchDialTextDirection textDirection = Utility.WatchDialTextDirection.TEXT_DIRECTION_HORIZONTAL;
 
-            private float radiusPx;
-            private float contentRadiusPx;
-            private float centerXPx;
-            private float centerYPx;
-
-            private float leftBoundaryPx;
-            private float rightBoundaryPx;
-            private float topBoundaryPx;
-            private float bottomBoundaryPx;
-
             private int shadowColor = Color.BLACK;
-            private float shadowDXPx = 0;
-            private float shadowDYPx = 1;
+            private float shadowDXPx = FaceStyle.DIAL_SHADOW_DX_PX;
+            private float shadowDYPx = FaceStyle.DIAL_SHADOW_DY_PX;
 
             public Utility.WatchDialBorderStyle borderStyle = Utility.WatchDialBorderStyle.NONE;
             public Utility.WatchDialBackgroundStyle backgroundStyle = Utility.WatchDialBackgroundStyle.NONE;
 
-            public float borderWidthVmin = 0f;
-            private float borderWidthPx = 0f;
             public int borderColor = Color.TRANSPARENT;
 
             Shader borderOutsetShader;
             Shader borderInsetShader;
-            Shader ridgeOutsetShader;
-            Shader ridgeInsetShader;
+
+            /* what the border shaders were built for */
+            private String borderShaderKey = null;
 
             public Typeface typeface = null;
 
-            public ArrayList<WatchDialTickSet> tickSets = new ArrayList<WatchDialTickSet>();
+            /* background is the face's background color, which themes change */
+            public boolean filled = false;
 
             public void addText(float rotation, String text) {
                 textPairs.add(new Pair<>(rotation, text));
             }
 
-            private boolean isExcluded(float rotation) {
-                return (excludeTicksFrom != 0f || excludeTicksTo != 0f) &&
-                        rotation > excludeTicksFrom && rotation < excludeTicksTo;
-            }
-
             public WatchDial(Engine engine) {
                 engineWeakReference = new WeakReference<Engine>(engine);
             }
 
-            public void addTickSet(WatchDialTickSet tickSet) {
-                tickSets.add(tickSet);
+            @Override
+            protected WatchDialTickSet newTickSet() {
+                return new WatchDialTickSet(this);
             }
 
+            /**
+             * Lays the dial out for the current surface.  Tick lines
+             * come from the precomputed table when the engine has an
+             * entry for this surface, see {@link Engine#updateDials}.
+             */
             public void update() {
                 Engine engine = engineWeakReference.get();
-                radiusPx = diameterVmin * engine.mClockDialRadiusPx;
-                borderWidthPx = vminToPx(borderWidthVmin, true);
-                contentRadiusPx = radiusPx - borderWidthPx;
-                centerXPx = engine.mSurfaceCenterXPx + centerXVmin * engine.mClockDialDiameterPx;
-                centerYPx = engine.mSurfaceCenterYPx + centerYVmin * engine.mClockDialDiameterPx;
+                layout(engine.mSurfaceCenterXPx, engine.mSurfaceCenterYPx, engine.mClockDialDiameterPx);
+
+                updateBorderShaders();
+                updateBoundaries(engine.mSurfaceWidthPx, engine.mSurfaceHeightPx);
+            }
 
+            /**
+             * Builds the INSET/OUTSET border gradients, unless the ones
+             * already built are for the same center and colors.
+             */
+            private void updateBorderShaders() {
                 float highlightOpacity;
                 float shadowOpacity;
                 int highlightAlpha;
@@ -321,6 +739,11 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 int[] insetColors;
 
                 if (borderStyle == Utility.WatchDialBorderStyle.INSET || borderStyle == Utility.WatchDialBorderStyle.OUTSET) {
+                    String key = centerXPx + ":" + centerYPx + ":" + mBorderHighlight + ":" + mBorderShadow;
+                    if (key.equals(borderShaderKey)) {
+                        return;
+                    }
+                    borderShaderKey = key;
                     highlightOpacity = Utility.clamp(mBorderHighlight, 0f, 1f);
                     shadowOpacity = Utility.clamp(mBorderShadow, 0f, 1f);
                     highlightAlpha = Math.round(255 * highlightOpacity);
@@ -334,63 +757,8 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 } else {
                     borderOutsetShader = null;
                     borderInsetShader = null;
+                    borderShaderKey = null;
                 }
-
-                if (backgroundStyle == Utility.WatchDialBackgroundStyle.RADIAL_RIDGED) {
-                    highlightOpacity = Utility.clamp(mRidgeHighlight, 0f, 1f);
-                    shadowOpacity = Utility.clamp(mRidgeShadow, 0f, 1f);
-                    highlightAlpha = Math.round(255 * highlightOpacity);
-                    shadowAlpha = Math.round(255 * shadowOpacity);
-                    highlightColor = ((0xff & highlightAlpha) << 24) | 0xffffff;
-                    shadowColor = ((0xff & shadowAlpha) << 24) | 0x000000;
-                    outsetColors = new int[]{Color.TRANSPARENT, shadowColor, Color.TRANSPARENT, highlightColor, Color.TRANSPARENT};
-                    insetColors = new int[]{Color.TRANSPARENT, highlightColor, Color.TRANSPARENT, shadowColor, Color.TRANSPARENT};
-                    ridgeOutsetShader = new SweepGradient(centerXPx, centerYPx, outsetColors, null);
-                    ridgeInsetShader = new SweepGradient(centerXPx, centerYPx, insetColors, null);
-                } else {
-                    ridgeOutsetShader = null;
-                    ridgeInsetShader = null;
-                }
-
-                updateBoundaries();
-            }
-
-            private void updateBoundaries() {
-                Engine engine = engineWeakReference.get();
-                if (startAngle == 0f && endAngle == 360f) {
-                    leftBoundaryPx = centerXPx - radiusPx;
-                    rightBoundaryPx = centerXPx + radiusPx;
-                    topBoundaryPx = centerYPx - radiusPx;
-                    bottomBoundaryPx = centerYPx + radiusPx;
-                } else {
-                    leftBoundaryPx = centerXPx;
-                    rightBoundaryPx = centerXPx;
-                    topBoundaryPx = centerYPx;
-                    bottomBoundaryPx = centerYPx;
-                    float minAngle = Math.min(startAngle, endAngle);
-                    float maxAngle = Math.max(startAngle, endAngle);
-                    float angle = minAngle;
-                    while (true) {
-                        float pointXPx = centerXPx + radiusPx * (float) Math.sin(angle * Math.PI / 180.0);
-                        float pointYPx = centerYPx - radiusPx * (float) Math.cos(angle * Math.PI / 180.0);
-                        leftBoundaryPx = Math.min(leftBoundaryPx, pointXPx);
-                        rightBoundaryPx = Math.max(rightBoundaryPx, pointXPx);
-                        topBoundaryPx = Math.min(topBoundaryPx, pointYPx);
-                        bottomBoundaryPx = Math.max(bottomBoundaryPx, pointYPx);
-                        if (angle == maxAngle) {
-                            break;
-                        }
-                        angle += 90f;                                  // e.g., 36 => 126
-                        angle = (float) Math.floor(angle / 90f) * 90f; // e.g., 126 => 90
-                        angle = Math.min(angle, maxAngle);
-                    }
-                }
-
-                /* don't put boundaries past the boundaries of the canvas */
-                leftBoundaryPx = Math.max(leftBoundaryPx, 0);
-                rightBoundaryPx = Math.min(rightBoundaryPx, engine.mSurfaceWidthPx);
-                topBoundaryPx = Math.max(topBoundaryPx, 0);
-                bottomBoundaryPx = Math.min(bottomBoundaryPx, engine.mSurfaceHeightPx);
             }
 
             public void draw(Canvas canvas, boolean ambient) {
@@ -399,6 +767,13 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 if (ambient && nonAmbientOnly) {
                     return;
                 }
+                /* skip the whole dial in a layer tile it doesn't touch */
+                float marginPx = Math.max(Math.abs(shadowDXPx), Math.abs(shadowDYPx)) + 1;
+                if (canvas.quickReject(centerXPx - radiusPx - marginPx, centerYPx - radiusPx - marginPx,
+                        centerXPx + radiusPx + marginPx, centerYPx + radiusPx + marginPx,
+                        Canvas.EdgeType.AA)) {
+                    return;
+                }
 
                 drawBackgroundColor(canvas, ambient);
                 if (!ambient && shadowColor != 0 && (shadowDXPx != 0 || shadowDYPx != 0)) {
@@ -426,14 +801,14 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 canvas.drawCircle(centerXPx, centerYPx, radiusPx, paint);
 
                 if (backgroundBrightness < 0f) {
-                    backgroundBrightness = -1 * Utility.clamp(backgroundBrightness, -1f, 0f);
-                    int alpha = Math.round(255 * backgroundBrightness);
+                    float darkness = -1 * Utility.clamp(backgroundBrightness, -1f, 0f);
+                    int alpha = Math.round(255 * darkness);
                     int color = (0xff & alpha) << 24 | 0x000000;
                     paint.setColor(color);
                     canvas.drawCircle(centerXPx, centerYPx, radiusPx, paint);
                 } else if (backgroundBrightness > 0f) {
-                    backgroundBrightness = Utility.clamp(backgroundBrightness, 0f, 1f);
-                    int alpha = Math.round(255 * backgroundBrightness);
+                    float brightness = Utility.clamp(backgroundBrightness, 0f, 1f);
+                    int alpha = Math.round(255 * brightness);
                     int color = (0xff & alpha) << 24 | 0xffffff;
                     paint.setColor(color);
                     canvas.drawCircle(centerXPx, centerYPx, radiusPx, paint);
@@ -450,37 +825,86 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                     case RADIAL_RIDGED:
                         drawRadialRidgedBackground(canvas, ambient);
                         break;
+                    case CONIC_GRADIENT:
+                        drawConicGradientBackground(canvas, ambient);
+                        break;
                 }
             }
 
-            public void drawRadialRidgedBackground(Canvas canvas, boolean ambient) {
+            /**
+             * The radius textured backgrounds fill: the content radius,
+             * or the inner circle if there is one.
+             */
+            private float getTextureRadiusPx() {
+                float textureRadiusPx = contentRadiusPx;
+                if (circle1Diameter != 0f) {
+                    textureRadiusPx = Math.min(textureRadiusPx, circle1Diameter * contentRadiusPx);
+                }
+                if (circle2Diameter != 0f) {
+                    textureRadiusPx = Math.min(textureRadiusPx, circle2Diameter * contentRadiusPx);
+                }
+                return textureRadiusPx;
+            }
+
+            /**
+             * Draws a cached texture centered on the dial, clipped to
+             * the dial's sectors unless it is a full circle.
+             */
+            private void drawTexture(Canvas canvas, Bitmap texture, float textureRadiusPx) {
+                float leftPx = centerXPx - texture.getWidth() / 2f;
+                float topPx = centerYPx - texture.getHeight() / 2f;
+
+                Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+                if (startAngle == 0f && endAngle == 360f && excludeTicksFrom == 0f && excludeTicksTo == 0f) {
+                    canvas.drawBitmap(texture, leftPx, topPx, paint);
+                    return;
+                }
+                canvas.save();
+                canvas.clipPath(getSectorPath(textureRadiusPx));
+                canvas.drawBitmap(texture, leftPx, topPx, paint);
+                canvas.restore();
+            }
+
+            public void drawConicGradientBackground(Canvas canvas, boolean ambient) {
                 if (ambient) {
                     return;
                 }
+                float textureRadiusPx = getTextureRadiusPx();
+                drawTexture(canvas, getConicTexture(textureRadiusPx, mConicHighlight, mConicShadow), textureRadiusPx);
+            }
 
-                float ridgePx = dpToPx(1f);
-                float radiusPx;
-                float radiusIncr = ridgePx * 3f;
+            public void drawRadialRidgedBackground(Canvas canvas, boolean ambient) {
+                if (ambient) {
+                    return;
+                }
 
-                boolean isInset = true;
-                Paint paint = new Paint();
-                paint.setAntiAlias(true);
-                paint.setStrokeWidth(ridgePx);
-                paint.setStyle(Paint.Style.STROKE);
+                float ridgeRadiusPx = getTextureRadiusPx();
+                drawTexture(canvas, getRidgeTexture(ridgeRadiusPx, mRidgeHighlight, mRidgeShadow), ridgeRadiusPx);
+            }
 
-                for (radiusPx = ridgePx / 2f;
-                     radiusPx <= contentRadiusPx;
-                     radiusPx += radiusIncr) {
-                    if (circle1Diameter != 0f && radiusPx > circle1Diameter * contentRadiusPx) {
-                        break;
-                    }
-                    if (circle2Diameter != 0f && radiusPx > circle2Diameter * contentRadiusPx) {
-                        break;
-                    }
-                    paint.setShader(isInset ? ridgeInsetShader : ridgeOutsetShader);
-                    drawArc(canvas, radiusPx, paint, false, true);
-                    isInset = !isInset;
+            /**
+             * Returns the pie slice(s) covered by {@link #drawArc}.
+             */
+            private Path getSectorPath(float radiusPx) {
+                float startAngle = Math.min(this.startAngle, this.endAngle);
+                float sweepAngle = Math.abs(this.endAngle - this.startAngle);
+                RectF oval = new RectF(centerXPx - radiusPx, centerYPx - radiusPx,
+                        centerXPx + radiusPx, centerYPx + radiusPx);
+                Path path = new Path();
+                if (excludeTicksFrom == 0f && excludeTicksTo == 0f) {
+                    path.moveTo(centerXPx, centerYPx);
+                    path.arcTo(oval, startAngle - 90f, sweepAngle);
+                    path.close();
+                } else {
+                    path.moveTo(centerXPx, centerYPx);
+                    path.arcTo(oval, startAngle - 90f, sweepAngle * excludeTicksFrom);
+                    path.close();
+                    path.moveTo(centerXPx, centerYPx);
+                    path.arcTo(oval, startAngle - 90f + sweepAngle * excludeTicksTo,
+                            sweepAngle - sweepAngle * excludeTicksTo);
+                    path.close();
                 }
+                return path;
             }
 
             public void drawTicks(Canvas canvas, boolean ambient) {
@@ -532,16 +956,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             }
 
             public float getCircleStrokeWidth() {
-                Engine engine = engineWeakReference.get();
-                if (circleStrokeWidthVmin != 0f) {
-                    return Math.max(MINIMUM_STROKE_WIDTH_PX, circleStrokeWidthVmin * engine.mSurfaceVminPx);
-                }
-                for (WatchDialTickSet tickSet : tickSets) {
-                    if (tickSet.strokeWidthVmin != 0f) {
-                        return Math.max(MINIMUM_STROKE_WIDTH_PX, tickSet.strokeWidthVmin * engine.mSurfaceVminPx);
-                    }
-                }
-                return 0f;
+                return getCircleStrokeWidth(engineWeakReference.get().mSurfaceVminPx);
             }
 
             public void drawCircles(Canvas canvas, boolean ambient) {
@@ -565,15 +980,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
                 Paint paint = new Paint();
                 paint.setAntiAlias(true);
-                if (ambient) {
-                    paint.setColor(Color.WHITE);
-                } else {
-                    if (isShadow) {
-                        paint.setColor(Color.BLACK);
-                    } else {
-                        paint.setColor(engine.mTickColor);
-                    }
-                }
+                paint.setColor(FaceDrawing.getLineColor(engine.mTickColor, ambient, isShadow));
                 paint.setStyle(Paint.Style.STROKE);
                 paint.setStrokeCap(Paint.Cap.BUTT);
                 paint.setStrokeWidth(Math.max(MINIMUM_STROKE_WIDTH_PX, strokeWidthPx));
@@ -622,6 +1029,8 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 textPaint.setAntiAlias(true);
                 textPaint.setStyle(Paint.Style.FILL);
 
+                Matrix matrix = new Matrix();
+
                 for (Pair<Float, String> textPair : textPairs) {
                     float rotation = textPair.first;
                     float angle = getCanvasRotationAngle(rotation);
@@ -630,7 +1039,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                     float textYPx = centerYPx - contentRadiusPx * 0.6f; /* initialize for TEXT_DIRECTION_HORIZONTAL */
                     switch (textDirection) {
                         case TEXT_DIRECTION_TANGENTIAL:
-                            textYPx = centerYPx - contentRadiusPx * ticksInner + textSizePx * TEXT_CAP_HEIGHT / 2f + paddingPx;
+                            textYPx = centerYPx - contentRadiusPx * ticksInner + textSizePx * FaceStyle.TEXT_CAP_HEIGHT / 2f + paddingPx;
                             break;
                         case TEXT_DIRECTION_RADIAL:
                             textYPx = centerYPx - contentRadiusPx * ticksInner + paddingPx;
@@ -662,15 +1071,20 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
                     textPaint.setTextAlign(textAlign);
 
-                    Rect bounds = new Rect();
-                    textPaint.getTextBounds(text, 0, text.length(), bounds);
-
-                    canvas.save();
-                    canvas.rotate(angle, centerXPx, centerYPx);
-                    canvas.rotate(-angle, centerXPx, textYPx); /* initialize for TEXT_DIRECTION_HORIZONTAL */
-                    canvas.rotate(textAngle, centerXPx, textYPx);
-                    drawVerticallyCenteredText(canvas, text, centerXPx, textYPx, textPaint);
-                    canvas.restore();
+                    if (mUseLabelAtlas) {
+                        matrix.setRotate(textAngle);
+                        matrix.postTranslate(centerXPx, textYPx);
+                        matrix.postRotate(-angle, centerXPx, textYPx);
+                        matrix.postRotate(angle, centerXPx, centerYPx);
+                        getLabelAtlas(ambient).drawVerticallyCenteredText(canvas, text, matrix, textPaint);
+                    } else {
+                        canvas.save();
+                        canvas.rotate(angle, centerXPx, centerYPx);
+                        canvas.rotate(-angle, centerXPx, textYPx); /* initialize for TEXT_DIRECTION_HORIZONTAL */
+                        canvas.rotate(textAngle, centerXPx, textYPx);
+                        drawVerticallyCenteredText(canvas, text, centerXPx, textYPx, textPaint);
+                        canvas.restore();
+                    }
                 }
             }
 
@@ -730,7 +1144,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                     return true;
                 }
                 if (!(startAngle == 0f && endAngle == 360f)) { /* defaults */
-                    float angle = (float) Math.atan2(dx, -dy) * 180f / (float) Math.PI;
+                    float angle = Utility.atan2Degrees(dx, -dy);
                     if (!containsAngle(angle)) {
                         return false;
                     }
@@ -805,27 +1219,13 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             }
         }
 
-        private class WatchDialTickSet {
+        private class WatchDialTickSet extends DialGeometry.TickSet {
             public WeakReference<WatchDial> watchDialWeakReference;
 
             public WatchDialTickSet(WatchDial watchDial) {
                 watchDialWeakReference = new WeakReference<WatchDial>(watchDial);
             }
 
-            public int numberOfTicks = 4;
-            public float outerDiameter = 1.0f;
-            public float innerDiameter = 0.9f;
-            public float ambientOuterDiameter = -1;
-            public float ambientInnerDiameter = -1;
-            public float strokeWidthVmin = 0.01f;
-            public float ambientStrokeWidthVmin = -1;
-            public boolean nonAmbientOnly = false;
-            public ArrayList<Integer> excludeNumberOfTicks = new ArrayList<Integer>();
-
-            public void excludeTicks(WatchDialTickSet ts) {
-                excludeNumberOfTicks.add(ts.numberOfTicks);
-            }
-
             public void draw(Canvas canvas, boolean ambient) {
                 draw(canvas, ambient, false);
             }
@@ -834,94 +1234,50 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 WatchDial watchDial = watchDialWeakReference.get();
                 Engine engine = watchDial.engineWeakReference.get();
 
-                if (ambient && nonAmbientOnly) {
-                    return;
-                }
-
-                float outerDiameter = this.outerDiameter;
-                float innerDiameter = this.innerDiameter;
-                float strokeWidthVmin = this.strokeWidthVmin;
-                if (ambient) {
-                    if (ambientInnerDiameter >= 0) {
-                        innerDiameter = ambientInnerDiameter;
-                    }
-                    if (ambientOuterDiameter >= 0) {
-                        outerDiameter = ambientOuterDiameter;
-                    }
-                    if (ambientStrokeWidthVmin >= 0) {
-                        strokeWidthVmin = ambientStrokeWidthVmin;
-                    }
-                }
-
-                float centerXPx = watchDial.centerXPx + (isShadow ? watchDial.shadowDXPx : 0);
-                float centerYPx = watchDial.centerYPx + (isShadow ? watchDial.shadowDYPx : 0);
+                AndroidFaceCanvas faceCanvas = new AndroidFaceCanvas(null);
+                faceCanvas.setCanvas(canvas);
+                FaceDrawing.drawTickSet(faceCanvas, this, engine.mTickColor, engine.mSurfaceVminPx,
+                        ambient, isShadow, watchDial.shadowDXPx, watchDial.shadowDYPx);
+            }
+        }
 
-                Paint paint = new Paint();
-                paint.setAntiAlias(true);
-                if (ambient) {
-                    paint.setColor(Color.WHITE);
-                } else {
-                    if (isShadow) {
-                        paint.setColor(Color.BLACK);
-                    } else {
-                        paint.setColor(engine.mTickColor);
-                    }
-                }
-                paint.setStyle(Paint.Style.STROKE);
-                paint.setStrokeCap(Paint.Cap.BUTT);
+        private void zoomCanvas(Canvas canvas, float x1, float x2, float y1, float y2) {
+            zoomCanvas(canvas, x1, x2, y1, y2, getZoomMarginPx());
+        }
 
-                float extendPx = watchDial.getCircleStrokeWidth() * 0.45f;
-                paint.setStrokeWidth(Math.max(MINIMUM_STROKE_WIDTH_PX, strokeWidthVmin * engine.mSurfaceVminPx));
+        private float getZoomMarginPx() {
+            return Math.min(mSurfaceWidthPx, mSurfaceHeightPx) * 0.02f;
+        }
 
-                float y1 = centerYPx - outerDiameter * watchDial.contentRadiusPx;
-                float y2 = centerYPx - innerDiameter * watchDial.contentRadiusPx;
+        private void zoomCanvas(Canvas canvas, float x1, float x2, float y1, float y2, float fudge) {
+            Matrix matrix = new Matrix();
+            setZoomMatrix(matrix, x1, x2, y1, y2, fudge);
+            canvas.concat(matrix);
+        }
 
-                tick:
-                for (int i = 0; i <= numberOfTicks; i += 1) {
-                    for (int n : excludeNumberOfTicks) {
-                        if ((i * n) % numberOfTicks == 0) {
-                            continue tick;
-                        }
-                    }
-                    float rotation = 1.0f * i / numberOfTicks;
-                    if (watchDial.isExcluded(rotation)) {
-                        continue tick;
-                    }
-                    float angle = watchDial.startAngle +
-                            (watchDial.endAngle - watchDial.startAngle) * rotation;
-                    canvas.save();
-                    canvas.rotate(angle, centerXPx, centerYPx);
-                    boolean extend = false;
-                    if (watchDial.startAngle != watchDial.endAngle) {
-                        if (angle == watchDial.startAngle || angle == watchDial.endAngle) {
-                            extend = true;
-                        }
-                    }
-                    if (watchDial.excludeTicksFrom != watchDial.excludeTicksTo) {
-                        if (rotation == watchDial.excludeTicksFrom || rotation == watchDial.excludeTicksTo) {
-                            extend = true;
-                        }
-                    }
-                    if (extend) {
-                        canvas.drawLine(centerXPx, y1 - extendPx, centerXPx, y2 + extendPx, paint);
-                    } else {
-                        canvas.drawLine(centerXPx, y1, centerXPx, y2, paint);
-                    }
-                    canvas.restore();
-                }
-            }
+        private void setZoomMatrix(Matrix matrix, float x1, float x2, float y1, float y2) {
+            setZoomMatrix(matrix, x1, x2, y1, y2, getZoomMarginPx());
         }
 
-        private void zoomCanvas(Canvas canvas, float x1, float x2, float y1, float y2) {
-            float fudge = Math.min(canvas.getWidth(), canvas.getHeight()) * 0.02f;
-            zoomCanvas(canvas, x1, x2, y1, y2, fudge);
+        /**
+         * Sets the matrix for a zoom progress between 0 and 1: a scale
+         * about the zoom's fixed point, geometric in the progress so
+         * the apparent speed stays even.
+         */
+        private void setZoomAnimationMatrix(Matrix matrix, float progress) {
+            if (progress >= 1f) {
+                matrix.set(mDayDateZoomMatrix);
+                return;
+            }
+            float scale = (float) Math.pow(mDayDateZoomScale, progress);
+            matrix.setScale(scale, scale, mDayDateZoomFixedXPx, mDayDateZoomFixedYPx);
         }
 
-        private void zoomCanvas(Canvas canvas, float x1, float x2, float y1, float y2, float fudge) {
+        private void setZoomMatrix(Matrix matrix, float x1, float x2, float y1, float y2, float fudge) {
             x1 = Math.max(x1 - fudge, 0);
-            x2 = Math.min(x2 + fudge, canvas.getWidth());
+            x2 = Math.min(x2 + fudge, mSurfaceWidthPx);
             y1 = Math.max(y1 - fudge, 0);
-            y2 = Math.min(y2 + fudge, canvas.getHeight());
+            y2 = Math.min(y2 + fudge, mSurfaceHeightPx);
             float centerX = (x1 + x2) / 2f;
             float centerY = (y1 + y2) / 2f;
             float dx = centerX - mSurfaceCenterXPx;
@@ -929,25 +1285,25 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             float scaleX = mSurfaceWidthPx / (x2 - x1);
             float scaleY = mSurfaceHeightPx / (y2 - y1);
             float scale = Math.min(scaleX, scaleY);
-            canvas.scale(scale, scale, mSurfaceCenterXPx, mSurfaceCenterYPx);
-            canvas.translate(-dx, -dy);
+            matrix.setScale(scale, scale, mSurfaceCenterXPx, mSurfaceCenterYPx);
+            matrix.preTranslate(-dx, -dy);
         }
 
         private class WatchHand {
             public WeakReference<WatchDial> watchDialWeakReference;
 
-            public Paint paint;
             public Path path;
             public int color;
+
+            private Paint interactivePaint;
+            private Paint ambientPaint;
             public boolean nonAmbientOnly = false;
             public boolean hasArrowHead = false;
-            public float arrowHeadAngle = 45f;
-            public float arrowHeadSize = 3f;
+            public float arrowHeadAngle = FaceStyle.ARROW_HEAD_ANGLE;
+            public float arrowHeadSize = FaceStyle.ARROW_HEAD_SIZE;
             public float lengthPctRadius = 1f;
             public float lengthBehindPctRadius = 0f;
             public float widthVmin = 0.005f;
-            public float shroudThingyRadius = 0.03f;
-            public float shroudThingyHoleRadius = 0.01f;
 
             private float lengthPx;
             private float lengthBehindPx;
@@ -970,104 +1326,354 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 lengthBehindPx = lengthBehindPctRadius * dial.contentRadiusPx;
                 widthPx = widthVmin * engine.mClockDialDiameterPx;
 
-                shroudThingyHoleRadiusPx = shroudThingyHoleRadius * engine.mClockDialRadiusPx;
-                shroudThingyRadiusPx = shroudThingyRadius * engine.mClockDialRadiusPx;
-                if (shroudThingyRadiusPx < widthPx) {
-                    shroudThingyRadiusPx = widthPx;
-                }
+                shroudThingyHoleRadiusPx = FaceDrawing.getShroudHoleRadiusPx(engine.mClockDialRadiusPx);
+                shroudThingyRadiusPx = FaceDrawing.getShroudRadiusPx(engine.mClockDialRadiusPx, widthPx);
             }
 
+            /**
+             * Builds both the interactive and the ambient paint; the
+             * hand render table picks one per frame.
+             */
             public void updatePaint() {
                 WatchDial dial = watchDialWeakReference.get();
                 Engine engine = dial.engineWeakReference.get();
-                paint = new Paint();
-                paint.setStyle(Paint.Style.FILL);
-                if (engine.mAmbient) {
-                    paint.setColor(Color.WHITE);
-                    paint.clearShadowLayer();
-                } else {
-                    paint.setColor(color);
-                    if (shadowColor != 0 && shadowRadiusPx != 0f) {
-                        paint.setShadowLayer(shadowRadiusPx, 0, 0, shadowColor);
-                    } else {
-                        paint.clearShadowLayer();
-                    }
-                }
-                if (engine.mLowBitAmbient) {
-                    paint.setAntiAlias(false);
+
+                interactivePaint = new Paint();
+                interactivePaint.setStyle(Paint.Style.FILL);
+                interactivePaint.setColor(color);
+                if (shadowColor != 0 && shadowRadiusPx != 0f && engine.mRenderQuality < QUALITY_NO_HAND_SHADOWS) {
+                    interactivePaint.setShadowLayer(shadowRadiusPx, 0, 0, shadowColor);
                 } else {
-                    paint.setAntiAlias(true);
+                    interactivePaint.clearShadowLayer();
                 }
+                interactivePaint.setAntiAlias(!engine.mLowBitAmbient);
+                interactivePaint.setColorFilter(engine.mHandColorFilter);
+
+                ambientPaint = new Paint();
+                ambientPaint.setStyle(Paint.Style.FILL);
+                ambientPaint.setColor(Color.WHITE);
+                ambientPaint.clearShadowLayer();
+                ambientPaint.setAntiAlias(!engine.mLowBitAmbient);
+                ambientPaint.setColorFilter(engine.mAmbientColorFilter);
             }
 
             public void updatePath() {
                 WatchDial dial = watchDialWeakReference.get();
 
-                path = new Path();
-
-                float leftPx = dial.centerXPx - widthPx / 2;
-                float rightPx = dial.centerXPx + widthPx / 2;
-                float topPx = dial.centerYPx - lengthPx;
-                float bottomPx = dial.centerYPx + lengthBehindPx;
-
-                if (hasArrowHead) {
-                    float arrowheadDX1 = widthPx * arrowHeadSize / 2;
-                    float arrowheadY1 = topPx + widthPx * arrowHeadSize / 2 / (float) Math.tan(((float) Math.PI) / 180f * arrowHeadAngle / 2);
-                    path.moveTo(leftPx, bottomPx);
-                    path.lineTo(leftPx, arrowheadY1);
-                    path.lineTo(dial.centerXPx - arrowheadDX1, arrowheadY1);
-                    path.lineTo(dial.centerXPx, topPx);
-                    path.lineTo(dial.centerXPx + arrowheadDX1, arrowheadY1);
-                    path.lineTo(rightPx, arrowheadY1);
-                    path.lineTo(rightPx, bottomPx);
-                    path.close();
-                } else {
-                    float tipHeight = widthPx / 2 / (float) Math.tan(((float) Math.PI) / 180f * arrowHeadAngle / 2);
-                    path.moveTo(leftPx, bottomPx);
-                    path.lineTo(leftPx, topPx + tipHeight);
-                    path.lineTo(dial.centerXPx, topPx);
-                    path.lineTo(rightPx, topPx + tipHeight);
-                    path.lineTo(rightPx, bottomPx);
-                    path.close();
-                }
+                final Path handPath = new Path();
+                FaceDrawing.traceHand(new FaceDrawing.HandOutline() {
+                    @Override
+                    public void moveTo(float xPx, float yPx) {
+                        handPath.moveTo(xPx, yPx);
+                    }
+
+                    @Override
+                    public void lineTo(float xPx, float yPx) {
+                        handPath.lineTo(xPx, yPx);
+                    }
 
-                Path circlePath = new Path();
-                circlePath.addCircle(dial.centerXPx, dial.centerYPx, shroudThingyRadiusPx, Path.Direction.CW);
-                path.op(circlePath, Path.Op.UNION);
+                    @Override
+                    public void close() {
+                        handPath.close();
+                    }
+
+                    @Override
+                    public void addShroud(float centerXPx, float centerYPx, float radiusPx, float holeRadiusPx) {
+                        Path circlePath = new Path();
+                        circlePath.addCircle(centerXPx, centerYPx, radiusPx, Path.Direction.CW);
+                        handPath.op(circlePath, Path.Op.UNION);
 
-                circlePath = new Path();
-                circlePath.addCircle(dial.centerXPx, dial.centerYPx, shroudThingyHoleRadiusPx, Path.Direction.CW);
-                path.op(circlePath, Path.Op.DIFFERENCE);
+                        circlePath = new Path();
+                        circlePath.addCircle(centerXPx, centerYPx, holeRadiusPx, Path.Direction.CW);
+                        handPath.op(circlePath, Path.Op.DIFFERENCE);
+                    }
+                }, dial.centerXPx, dial.centerYPx, lengthPx, lengthBehindPx, widthPx,
+                        hasArrowHead, arrowHeadAngle, arrowHeadSize,
+                        shroudThingyRadiusPx, shroudThingyHoleRadiusPx);
+                path = handPath;
             }
 
+            /**
+             * Rebuilds geometry and paints.  Only needed when the
+             * surface size changes.
+             */
             public void update() {
                 updateDimensions();
                 updatePaint();
                 updatePath();
             }
+        }
 
-            public void draw(Canvas canvas, float rotation) {
-                WatchDial dial = watchDialWeakReference.get();
-                Engine engine = dial.engineWeakReference.get();
+        /**
+         * What drawing each hand needs, in flat arrays indexed by the
+         * FaceStyle hand slots, so a frame draws every hand in one loop
+         * without going through the hand, its dial, and the engine.
+         * Refreshed from the WatchHands when their geometry or paints
+         * change; a frame only fills in the rotations.
+         */
+        private class HandRenderTable {
+            private final float[] centerXPx = new float[FaceStyle.HAND_COUNT];
+            private final float[] centerYPx = new float[FaceStyle.HAND_COUNT];
+            private final float[] startAngle = new float[FaceStyle.HAND_COUNT];
+            private final float[] sweepAngle = new float[FaceStyle.HAND_COUNT];
+            private final boolean[] nonAmbientOnly = new boolean[FaceStyle.HAND_COUNT];
+            private final Path[] paths = new Path[FaceStyle.HAND_COUNT];
+            private final Paint[] interactivePaints = new Paint[FaceStyle.HAND_COUNT];
+            private final Paint[] ambientPaints = new Paint[FaceStyle.HAND_COUNT];
+            private final AndroidFaceCanvas faceCanvas = new AndroidFaceCanvas(null);
+
+            /* fractions of the dial's sweep, set per frame; NaN hides the hand */
+            public final float[] rotations = new float[FaceStyle.HAND_COUNT];
+
+            public HandRenderTable() {
+                faceCanvas.setHands(paths, interactivePaints, ambientPaints);
+            }
 
-                float angle = dial.startAngle + (dial.endAngle - dial.startAngle) * rotation;
+            public void set(int slot, WatchHand hand) {
+                WatchDial dial = hand.watchDialWeakReference.get();
+                centerXPx[slot] = dial.centerXPx;
+                centerYPx[slot] = dial.centerYPx;
+                startAngle[slot] = dial.startAngle;
+                sweepAngle[slot] = dial.endAngle - dial.startAngle;
+                nonAmbientOnly[slot] = dial.nonAmbientOnly || hand.nonAmbientOnly;
+                paths[slot] = hand.path;
+                interactivePaints[slot] = hand.interactivePaint;
+                ambientPaints[slot] = hand.ambientPaint;
+            }
 
-                if (engine.mAmbient && (dial.nonAmbientOnly || nonAmbientOnly)) {
-                    return;
-                }
+            public void draw(Canvas canvas, boolean ambient) {
+                faceCanvas.setCanvas(canvas);
+                FaceDrawing.drawHands(faceCanvas, rotations, centerXPx, centerYPx, startAngle, sweepAngle,
+                        nonAmbientOnly, ambient);
+                faceCanvas.setCanvas(null);
+            }
+        }
 
-                canvas.save();
-                canvas.rotate(angle, dial.centerXPx, dial.centerYPx);
-                canvas.drawPath(path, paint);
-                canvas.restore();
+        private final HandRenderTable mHandRenderTable = new HandRenderTable();
+
+        private void updateHandRenderTable() {
+            synchronized (mRenderLock) {
+                mHandRenderTable.set(FaceStyle.HAND_BATTERY, mBatteryHand);
+                mHandRenderTable.set(FaceStyle.HAND_CHRONOGRAPH_HOUR, mChronographHourHand);
+                mHandRenderTable.set(FaceStyle.HAND_CHRONOGRAPH_MINUTE, mChronographMinuteHand);
+                mHandRenderTable.set(FaceStyle.HAND_CHRONOGRAPH_SECOND_FRACTION, mChronographSecondFractionHand);
+                mHandRenderTable.set(FaceStyle.HAND_SUBDIAL_SECOND, mSubdialSecondHand);
+                mHandRenderTable.set(FaceStyle.HAND_HOUR, mHourHand);
+                mHandRenderTable.set(FaceStyle.HAND_MINUTE, mMinuteHand);
+                mHandRenderTable.set(FaceStyle.HAND_SECOND, mSecondHand);
             }
         }
 
-        @Override
-        public void onCreate(SurfaceHolder holder) {
-            super.onCreate(holder);
+        /**
+         * One complication.  The latest data is kept here, and drawn
+         * into a small layer of its own that is only re-rendered when
+         * the data, the ambient mode, or the minute changes; the
+         * background bitmaps are never touched.
+         */
+        private class ComplicationSlot {
+            public final int id;
+            public float centerXVmin;
+            public float centerYVmin;
+            public float diameterVmin;
+            public int defaultProvider;
+            public int defaultType;
+
+            private ComplicationData data;
+            private ComplicationDrawable drawable;
+            private Bitmap layer;
+            private final Rect bounds = new Rect();
+            private boolean dirty = true;
+            private boolean renderedAmbient;
+            private long renderedMinute = -1;
+
+            private int updateCount = 0;
+            private long firstUpdateTimeMs = -1;
+            private long lastUpdateTimeMs = -1;
+            private int renderCount = 0;
+            private long renderTimeNs = 0;
+
+            public ComplicationSlot(int id) {
+                this.id = id;
+            }
+
+            public void update() {
+                if (drawable == null) {
+                    drawable = new ComplicationDrawable(getApplicationContext());
+                    drawable.setTextTypefaceActive(mCondensedTypeface);
+                    if (data != null) {
+                        drawable.setComplicationData(data);
+                    }
+                }
+                drawable.setLowBitAmbient(mLowBitAmbient);
+                drawable.setBurnInProtection(mBurnInProtection);
+
+                int radiusPx = Math.round(diameterVmin * mClockDialRadiusPx);
+                int centerXPx = Math.round(mSurfaceCenterXPx + centerXVmin * mClockDialDiameterPx);
+                int centerYPx = Math.round(mSurfaceCenterYPx + centerYVmin * mClockDialDiameterPx);
+                bounds.set(centerXPx - radiusPx, centerYPx - radiusPx, centerXPx + radiusPx, centerYPx + radiusPx);
+                drawable.setBounds(0, 0, bounds.width(), bounds.height());
+                if (layer != null) {
+                    layer.recycle();
+                }
+                layer = bounds.isEmpty() ? null : Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+                dirty = true;
+            }
+
+            public void setData(ComplicationData newData) {
+                long nowMs = SystemClock.elapsedRealtime();
+                if (firstUpdateTimeMs < 0) {
+                    firstUpdateTimeMs = nowMs;
+                }
+                lastUpdateTimeMs = nowMs;
+                updateCount += 1;
+
+                data = newData;
+                if (drawable != null) {
+                    drawable.setComplicationData(data);
+                }
+                dirty = true;
+            }
+
+            public boolean isActive(long nowMs) {
+                return data != null && data.isActive(nowMs) &&
+                        data.getType() != ComplicationData.TYPE_EMPTY &&
+                        data.getType() != ComplicationData.TYPE_NO_DATA;
+            }
+
+            public boolean contains(int x, int y) {
+                return layer != null && isActive(System.currentTimeMillis()) && bounds.contains(x, y);
+            }
+
+            public void draw(Canvas canvas, boolean ambient, long nowMs) {
+                if (layer == null || !isActive(nowMs)) {
+                    return;
+                }
+                long minute = nowMs / 60000;
+                if (dirty || renderedAmbient != ambient || renderedMinute != minute) {
+                    long startNs = System.nanoTime();
+                    layer.eraseColor(Color.TRANSPARENT);
+                    drawable.setInAmbientMode(ambient);
+                    drawable.draw(new Canvas(layer), nowMs);
+                    renderTimeNs += System.nanoTime() - startNs;
+                    renderCount += 1;
+                    renderedAmbient = ambient;
+                    renderedMinute = minute;
+                    dirty = false;
+                }
+                mLayerPaint.setColorFilter(getLayerColorFilter(ambient));
+                canvas.drawBitmap(layer, bounds.left, bounds.top, mLayerPaint);
+            }
+
+            public void onTap() {
+                if (data == null) {
+                    return;
+                }
+                PendingIntent tapAction = data.getTapAction();
+                if (tapAction == null) {
+                    return;
+                }
+                try {
+                    tapAction.send();
+                } catch (PendingIntent.CanceledException e) {
+                    Log.w(TAG, "complication " + id + " tap action canceled");
+                }
+            }
+
+            public void logStatistics() {
+                if (updateCount == 0 && renderCount == 0) {
+                    return;
+                }
+                float updatesPerMinute = 0f;
+                if (updateCount > 1 && lastUpdateTimeMs > firstUpdateTimeMs) {
+                    updatesPerMinute = (updateCount - 1) * 60000f / (lastUpdateTimeMs - firstUpdateTimeMs);
+                }
+                float averageRenderMs = renderCount == 0 ? 0f : renderTimeNs / 1e6f / renderCount;
+                Log.d(TAG, String.format(Locale.US,
+                        "complication %d: %d updates (%.2f/min), %d renders (%.3f ms avg)",
+                        id, updateCount, updatesPerMinute, renderCount, averageRenderMs));
+            }
+        }
+
+        private ComplicationSlot[] mComplicationSlots;
+
+        /**
+         * Complications go in the two free areas left of the
+         * subdials, between the left subdial and the top and bottom
+         * ones.
+         */
+        private void initComplications() {
+            ComplicationSlot lowerLeft = new ComplicationSlot(COMPLICATION_ID_LOWER_LEFT);
+            lowerLeft.centerXVmin = -0.22f;
+            lowerLeft.centerYVmin = 0.22f;
+            lowerLeft.diameterVmin = 0.09f;
+            lowerLeft.defaultProvider = SystemProviders.STEP_COUNT;
+            lowerLeft.defaultType = ComplicationData.TYPE_SHORT_TEXT;
+
+            ComplicationSlot upperLeft = new ComplicationSlot(COMPLICATION_ID_UPPER_LEFT);
+            upperLeft.centerXVmin = -0.22f;
+            upperLeft.centerYVmin = -0.22f;
+            upperLeft.diameterVmin = 0.09f;
+            upperLeft.defaultProvider = SystemProviders.WORLD_CLOCK;
+            upperLeft.defaultType = ComplicationData.TYPE_SHORT_TEXT;
+
+            mComplicationSlots = new ComplicationSlot[]{lowerLeft, upperLeft};
+
+            int[] ids = new int[mComplicationSlots.length];
+            for (int i = 0; i < mComplicationSlots.length; i += 1) {
+                ComplicationSlot slot = mComplicationSlots[i];
+                ids[i] = slot.id;
+                setDefaultSystemComplicationProvider(slot.id, slot.defaultProvider, slot.defaultType);
+            }
+            setActiveComplications(ids);
+        }
+
+        private ComplicationSlot getComplicationSlot(int id) {
+            for (ComplicationSlot slot : mComplicationSlots) {
+                if (slot.id == id) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        private void updateComplications() {
+            synchronized (mRenderLock) {
+                for (ComplicationSlot slot : mComplicationSlots) {
+                    slot.update();
+                }
+            }
+        }
+
+        private void drawComplications(Canvas canvas, FrameState state) {
+            for (ComplicationSlot slot : mComplicationSlots) {
+                slot.draw(canvas, state.ambient, state.nowMs);
+            }
+        }
+
+        private void logComplicationStatistics() {
+            for (ComplicationSlot slot : mComplicationSlots) {
+                slot.logStatistics();
+            }
+        }
+
+        @Override
+        public void onComplicationDataUpdate(int complicationId, ComplicationData complicationData) {
+            super.onComplicationDataUpdate(complicationId, complicationData);
+            ComplicationSlot slot = getComplicationSlot(complicationId);
+            if (slot != null) {
+                synchronized (mRenderLock) {
+                    slot.setData(complicationData);
+                }
+                markFrameContentChanged();
+                requestFrame();
+            }
+        }
+
+        @Override
+        public void onCreate(SurfaceHolder holder) {
+            super.onCreate(holder);
 
-            cancelMultiTap();
+            cancelGestures();
 
             if (Build.MODEL.startsWith("sdk_") || Build.FINGERPRINT.contains("/sdk_")) {
                 mEmulatorMode = true;
@@ -1079,15 +1685,38 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
             mCalendar = Calendar.getInstance();
 
+            startLayerThread();
+            startRenderThread();
+            mLayerDiskCache = new LayerDiskCache(new File(getCacheDir(), "layers"), LAYER_DISK_CACHE_MAX_ENTRIES);
+            ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+            mLayerMemoryManager.setBudgetBytes(
+                    activityManager.getMemoryClass() * 1024L * 1024L / LAYER_MEMORY_BUDGET_DIVISOR);
+
             mPixelDensity = getResources().getDisplayMetrics().density;
 
-            mCondensedTypeface = Typeface.create("sans-serif-condensed", Typeface.NORMAL);
+            mTypeface = Typeface.create(mTypefaceFamily, Typeface.NORMAL);
+            mCondensedTypeface = Typeface.create(mCondensedTypefaceFamily, Typeface.NORMAL);
+            mWindowRestorePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+
+            Display display = ((WindowManager) getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay();
+            if (display.getRefreshRate() > 0f) {
+                mZoomAnimationFrameMs = Math.max(1, Math.round(1000f / display.getRefreshRate()));
+            }
+
+            initGestures();
+            initComplications();
+            setBezelType(mBezelType);
+
+            mRenderQualityGovernor = new RenderQualityGovernor(mQualityNames, QUALITY_FRAME_BUDGET_MS,
+                    30f, 15f, 5f);
 
             setUpdateRate();
 
             initColors();
             initDials();
             initHands();
+            loadDialGeometryTable();
+            initDayDateAtlas();
 
             updateDials();
             updateHands();
@@ -1105,14 +1734,19 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDestroy() {
-            cancelMultiTap();
+            cancelGestures();
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateTimeHandler.removeMessages(MSG_EVICT_ZOOM_LAYER);
+            stopRenderThread();
+            stopLayerThread();
+            mSharedLayerCache.release(this);
+            mLayerMemoryManager.unregisterAll(this);
             super.onDestroy();
         }
 
         @Override
         public void onVisibilityChanged(boolean visible) {
-            cancelMultiTap();
+            cancelGestures();
             super.onVisibilityChanged(visible);
 
             if (visible) {
@@ -1120,9 +1754,18 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
                 // Update time zone in case it changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                rebuildEvictedLayers();
+                requestFrame();
             } else {
                 unregisterReceiver();
+                mRenderHandler.removeCallbacksAndMessages(null);
+                mLastFrameSignature = NO_FRAME_SIGNATURE;
+                mPendingFrameSignature = NO_FRAME_SIGNATURE;
+                logComplicationStatistics();
+                logFrameStatistics();
+                mRenderQualityGovernor.logStatistics();
+                mSharedLayerCache.logStatistics();
+                mLayerMemoryManager.logUsage();
             }
 
             /* Check and trigger whether or not timer should be running (only in active mode). */
@@ -1133,38 +1776,44 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
-            cancelMultiTap();
+            cancelGestures();
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
             mPixelDensity = getResources().getDisplayMetrics().density;
+            updateHandPaints();
+            if (mSurfaceWidthPx != 0) {
+                updateComplications();
+            }
         }
 
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            requestFrame();
         }
 
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
-            cancelMultiTap();
+            cancelGestures();
             super.onAmbientModeChanged(inAmbientMode);
             mAmbient = inAmbientMode;
+            /* an interactive frame still queued must not land after the ambient one */
+            mRenderHandler.removeCallbacksAndMessages(null);
+            mPendingFrameSignature = NO_FRAME_SIGNATURE;
             if (mShowVersionNumber) {
                 mShowVersionNumber = false;
-                mBackgroundBitmap2 = null;
+                synchronized (mRenderLock) {
+                    mBackgroundBitmap2 = null;
+                }
             }
 
+            mRenderQualityGovernor.clearWindow();
             if (mAmbient) {
-                mZoomDayDate = false;
-                updateDials();
-                updateHands();
+                setZoomDayDate(false, false);
                 mAmbientRefresher.start();
             } else {
                 mAmbientRefresher.stop();
-                updateDials();
-                updateHands();
                 updateTimer();
                 mScreenTimeExtender.clearIdle();
             }
@@ -1172,74 +1821,125 @@ public class PilotWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onInterruptionFilterChanged(int interruptionFilter) {
-            cancelMultiTap();
+            cancelGestures();
             super.onInterruptionFilterChanged(interruptionFilter);
             boolean inMuteMode = (interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE);
 
             /* Dim display in mute mode. */
             if (mMuteMode != inMuteMode) {
-                mMuteMode = inMuteMode;
-                invalidate();
+                setMuteMode(inMuteMode);
+                requestFrame();
+            }
+        }
+
+        /**
+         * The surface must not be locked once this returns, so drop
+         * queued frames and wait out the one being drawn, if any,
+         * before letting it go.
+         */
+        @Override
+        public void onSurfaceDestroyed(SurfaceHolder holder) {
+            mSurfaceAvailable = false;
+            mRenderHandler.removeCallbacksAndMessages(null);
+            mLastFrameSignature = NO_FRAME_SIGNATURE;
+            mPendingFrameSignature = NO_FRAME_SIGNATURE;
+            waitForRenderThread();
+            super.onSurfaceDestroyed(holder);
+        }
+
+        /**
+         * Returns once the render thread has finished whatever it was
+         * doing, or after SURFACE_DESTROY_WAIT_MS, whichever is first.
+         */
+        private void waitForRenderThread() {
+            final CountDownLatch done = new CountDownLatch(1);
+            if (!mRenderHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            })) {
+                return;
+            }
+            try {
+                if (!done.await(SURFACE_DESTROY_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "render thread still drawing after " + SURFACE_DESTROY_WAIT_MS + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
 
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-            cancelMultiTap();
+            cancelGestures();
             super.onSurfaceChanged(holder, format, width, height);
+            mSurfaceAvailable = true;
 
             mPixelDensity = getResources().getDisplayMetrics().density;
 
-            mZoomDayDate = false;
+            setZoomDayDate(false, false);
             mShowVersionNumber = false;
 
+            mSurfaceChangedTimeNs = SystemClock.elapsedRealtimeNanos();
+            mFirstFrameLogged = false;
+            if (width != mSurfaceWidthPx || height != mSurfaceHeightPx) {
+                discardBackgroundLayers();
+                clearLayerCaches();
+            }
+
             mSurfaceCenterXPx = width / 2f;
             mSurfaceCenterYPx = height / 2f;
             mSurfaceWidthPx = width;
             mSurfaceHeightPx = height;
             mSurfaceVminPx = Math.min(width, height);
 
-            mDialDiameterPx = mSurfaceVminPx - MINIMUM_STROKE_WIDTH_PX;
-            if (getApplicationContext().getResources().getConfiguration().isScreenRound()) {
-                mDialDiameterPx -= ROUND_CHOPPED_PX;
+            updateLayout();
+
+            if (!mAmbient) {
+                mScreenTimeExtender.clearIdle();
             }
+        }
+
+        /**
+         * Recomputes everything derived from the surface dimensions and
+         * the bezel type, and requests new background layers.
+         */
+        private void updateLayout() {
+            markFrameContentChanged();
+            synchronized (mRenderLock) {
+                mDialDiameterPx = DialGeometry.getDialDiameterPx(mSurfaceWidthPx, mSurfaceHeightPx, isScreenRound());
 
-            mDialRadiusPx = mDialDiameterPx / 2;
+                mDialRadiusPx = mDialDiameterPx / 2;
 
-            switch (mBezelType) {
-                case BEZEL_SLIDE_RULE:
-                    mClockDialDiameterPx = mDialDiameterPx * mSlideRuleDiameter;
-                    break;
-                case BEZEL_TACHYMETER:
-                    mClockDialDiameterPx = mDialDiameterPx * mTachymeterDiameter;
-                    break;
-                default:
+                if (mBezelScale != null) {
+                    mClockDialDiameterPx = mDialDiameterPx * mBezelScale.innerDiameter;
+                } else {
                     mClockDialDiameterPx = mDialDiameterPx;
-            }
-            mClockDialRadiusPx = mClockDialDiameterPx / 2;
+                }
+                mClockDialRadiusPx = mClockDialDiameterPx / 2;
 
-            mDayTextPaint = new Paint();
-            mDayTextPaint.setAntiAlias(true);
-            mDayTextPaint.setTextSize(getClockDialTextSizePx(mDayDateTextSizeVmin));
-            mDayTextPaint.setColor(Color.BLACK);
-            mDayTextPaint.setTextAlign(Paint.Align.CENTER);
+                mDayTextPaint = new Paint();
+                mDayTextPaint.setAntiAlias(true);
+                mDayTextPaint.setTextSize(getClockDialTextSizePx(mDayDateTextSizeVmin));
+                mDayTextPaint.setColor(Color.BLACK);
+                mDayTextPaint.setTextAlign(Paint.Align.CENTER);
 
-            mDateTextPaint = new Paint();
-            mDateTextPaint.setAntiAlias(true);
-            mDateTextPaint.setTextSize(getClockDialTextSizePx(mDayDateTextSizeVmin));
-            mDateTextPaint.setColor(Color.BLACK);
-            mDateTextPaint.setTypeface(mTypeface);
-            mDateTextPaint.setTextAlign(Paint.Align.CENTER);
+                mDateTextPaint = new Paint();
+                mDateTextPaint.setAntiAlias(true);
+                mDateTextPaint.setTextSize(getClockDialTextSizePx(mDayDateTextSizeVmin));
+                mDateTextPaint.setColor(Color.BLACK);
+                mDateTextPaint.setTypeface(mTypeface);
+                mDateTextPaint.setTextAlign(Paint.Align.CENTER);
 
-            updateDials();
-            updateHands();
+                updateDayDateWindows();
 
-            initBackgroundBitmap();
-            initBackgroundBitmapZoomDayDate();
-            initAmbientBackgroundBitmap();
+                updateDials();
+                updateHands();
+                updateComplications();
 
-            if (!mAmbient) {
-                mScreenTimeExtender.clearIdle();
+                mBakedThemeLayers.clear();
+                requestBackgroundLayers();
             }
         }
 
@@ -1252,49 +1952,30 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             switch (tapType) {
                 case TAP_TYPE_TOUCH:
                     // The user has started touching the screen.
+                    mGestureRecognizer.onTouch(getTapRegion(x, y), eventTime);
                     break;
                 case TAP_TYPE_TOUCH_CANCEL:
                     // The user has started a different gesture or otherwise cancelled the tap.
+                    mGestureRecognizer.onTouchCancel(eventTime);
                     break;
                 case TAP_TYPE_TAP:
                     if (mZoomDayDate) {
-                        cancelMultiTap();
-                        mZoomDayDate = false;
+                        cancelGestures();
+                        setZoomDayDate(false, true);
+                        updateTimer();
                     } else {
-                        if (mTopSubDial.contains(x, y)) {
-                            cancelMultiTap();
-                            stopwatchButton1();
-                            updateTimer();
-                        } else if (mLeftSubDial.contains(x, y)) {
-                            cancelMultiTap();
-                            stopwatchButton2();
-                            updateTimer();
-                        } else if (mBottomSubDial.contains(x, y)) {
-                            multiTapEvent(MULTI_TAP_TYPE_BOTTOM_SUB_DIAL);
-                        } else if (mBatterySubDial.contains(x, y)) {
-                            cancelMultiTap();
-                            mZoomDayDate = true;
-                            updateTimer();
-                        } else if (mLeftSubDial.isBelow(y) && mTopSubDial.isToTheRightOf(x)) {
-                            cancelMultiTap();
-                            mShowVersionNumber = !mShowVersionNumber;
-                            mBackgroundBitmap2 = null;
-                            invalidate();
-                        } else if (isInTapArea(x, y, mSurfaceCenterXPx, mSurfaceCenterYPx)) {
-                            multiTapEvent(MULTI_TAP_TYPE_CENTER_OF_DIAL);
-                        } else {
-                            cancelMultiTap();
-                        }
+                        /* onGesture requests the frame, if any */
+                        mGestureRecognizer.onTap(getTapRegion(x, y), eventTime);
+                        scheduleGestureTimeout();
                     }
                     break;
             }
-            invalidate();
             if (!mAmbient) {
                 mScreenTimeExtender.clearIdle();
             }
         }
 
-        // BEGIN MULTI-TAP
+        // BEGIN GESTURES
 
         private final int TAP_RADIUS_DP = 24;
 
@@ -1304,87 +1985,354 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             return dx * dx + dy * dy <= (TAP_RADIUS_DP * TAP_RADIUS_DP * mPixelDensity * mPixelDensity);
         }
 
-        private final int MULTI_TAP_TYPE_CENTER_OF_DIAL = 1;
-        private final int MULTI_TAP_TYPE_BOTTOM_SUB_DIAL = 2;
+        private GestureRecognizer mGestureRecognizer;
+
+        private void initGestures() {
+            mGestureRecognizer = new GestureRecognizer(this, TapRegion.COUNT);
+            TapRegion.bindGestures(mGestureRecognizer, mEmulatorMode);
+        }
+
+        private int getTapRegion(int x, int y) {
+            if (isOnBezel(x, y)) {
+                return x < mSurfaceCenterXPx ? TapRegion.BEZEL_LEFT : TapRegion.BEZEL_RIGHT;
+            } else if (getComplicationSlot(COMPLICATION_ID_LOWER_LEFT).contains(x, y)) {
+                return TapRegion.COMPLICATION_LOWER_LEFT;
+            } else if (getComplicationSlot(COMPLICATION_ID_UPPER_LEFT).contains(x, y)) {
+                return TapRegion.COMPLICATION_UPPER_LEFT;
+            } else if (mTopSubDial.contains(x, y)) {
+                return TapRegion.TOP_SUB_DIAL;
+            } else if (mLeftSubDial.contains(x, y)) {
+                return TapRegion.LEFT_SUB_DIAL;
+            } else if (mBottomSubDial.contains(x, y)) {
+                return TapRegion.BOTTOM_SUB_DIAL;
+            } else if (mBatterySubDial.contains(x, y)) {
+                return TapRegion.BATTERY_SUB_DIAL;
+            } else if (mLeftSubDial.isBelow(y) && mTopSubDial.isToTheRightOf(x)) {
+                return TapRegion.WATCH_FACE_NAME;
+            } else if (isInTapArea(x, y, mSurfaceCenterXPx, mSurfaceCenterYPx)) {
+                return TapRegion.CENTER_OF_DIAL;
+            }
+            return GestureRecognizer.NO_REGION;
+        }
 
-        public void onMultiTapCommand(int type, int numberOfTaps) {
-            switch (type) {
-                case MULTI_TAP_TYPE_BOTTOM_SUB_DIAL:
-                    switch (numberOfTaps) {
-                        case 1:
+        @Override
+        public void onGesture(int region, int gesture) {
+            /* gestures may change what FrameState does not capture */
+            markFrameContentChanged();
+            switch (region) {
+                case TapRegion.TOP_SUB_DIAL:
+                    stopwatchButton1();
+                    updateTimer();
+                    break;
+                case TapRegion.LEFT_SUB_DIAL:
+                    stopwatchButton2();
+                    updateTimer();
+                    break;
+                case TapRegion.BATTERY_SUB_DIAL:
+                    setZoomDayDate(true, true);
+                    updateTimer();
+                    break;
+                case TapRegion.WATCH_FACE_NAME:
+                    mShowVersionNumber = !mShowVersionNumber;
+                    synchronized (mRenderLock) {
+                        mBackgroundBitmap2 = null;
+                    }
+                    break;
+                case TapRegion.BOTTOM_SUB_DIAL:
+                    switch (gesture) {
+                        case GestureRecognizer.GESTURE_SINGLE_TAP:
                             if (mEmulatorMode) {
                                 mPutChronographSecondsOnSubDial = !mPutChronographSecondsOnSubDial;
                                 setUpdateRate();
                             }
                             break;
-                        case 2:
+                        case GestureRecognizer.GESTURE_DOUBLE_TAP:
                             if (mEmulatorMode) {
                                 mDemoTimeMode = !mDemoTimeMode;
                                 updateTimer();
                             }
                             break;
+                        case GestureRecognizer.GESTURE_TRIPLE_TAP:
+                            if (mEmulatorMode) {
+                                Utility.BezelType[] bezelTypes = Utility.BezelType.values();
+                                setBezelType(bezelTypes[(mBezelType.ordinal() + 1) % bezelTypes.length]);
+                            }
+                            break;
+                        case GestureRecognizer.GESTURE_PRESS_AND_HOLD:
+                            if (mEmulatorMode) {
+                                benchmarkBackgroundBitmaps();
+                            }
+                            break;
+                    }
+                    break;
+                case TapRegion.BEZEL_LEFT:
+                case TapRegion.BEZEL_RIGHT:
+                    if (gesture == GestureRecognizer.GESTURE_PRESS_AND_HOLD) {
+                        resetBezel();
+                    } else {
+                        /* tap on the right half turns it clockwise, left half counterclockwise */
+                        rotateBezel(region == TapRegion.BEZEL_RIGHT ? BEZEL_ROTATION_STEP_DEGREES : -BEZEL_ROTATION_STEP_DEGREES);
                     }
                     break;
-                case MULTI_TAP_TYPE_CENTER_OF_DIAL:
-                    switch (numberOfTaps) {
-                        // FIXME: what to do here?
+                case TapRegion.COMPLICATION_LOWER_LEFT:
+                    getComplicationSlot(COMPLICATION_ID_LOWER_LEFT).onTap();
+                    break;
+                case TapRegion.COMPLICATION_UPPER_LEFT:
+                    getComplicationSlot(COMPLICATION_ID_UPPER_LEFT).onTap();
+                    break;
+                case TapRegion.CENTER_OF_DIAL:
+                    switch (gesture) {
+                        case GestureRecognizer.GESTURE_DOUBLE_TAP:
+                            setColorTheme(mColorTheme.next());
+                            break;
                     }
                     break;
             }
+            requestFrame();
         }
 
-        private MultiTapHandler mMultiTapHandler = null;
-
-        private void multiTapEvent(int type) {
-            if (mMultiTapHandler == null) {
-                mMultiTapHandler = new MultiTapHandler(this);
+        private void scheduleGestureTimeout() {
+            mUpdateTimeHandler.removeMessages(MSG_GESTURE_TIMEOUT);
+            long deadline = mGestureRecognizer.getDeadline();
+            if (deadline != GestureRecognizer.NO_DEADLINE) {
+                mUpdateTimeHandler.sendEmptyMessageAtTime(MSG_GESTURE_TIMEOUT, deadline);
             }
-            mMultiTapHandler.onTapEvent(type);
         }
 
-        private void cancelMultiTap() {
-            if (mMultiTapHandler != null) {
-                mMultiTapHandler.cancel();
+        private void handleGestureTimeoutMessage() {
+            mGestureRecognizer.onTimeout(SystemClock.uptimeMillis());
+            scheduleGestureTimeout();
+        }
+
+        private void cancelGestures() {
+            mUpdateTimeHandler.removeMessages(MSG_GESTURE_TIMEOUT);
+            if (mGestureRecognizer != null) {
+                mGestureRecognizer.cancel();
             }
         }
 
-        // END MULTI-TAP
+        // END GESTURES
 
+        /**
+         * Ambient frames, and interactive ones whenever the render
+         * thread is not in use, are still drawn here.
+         */
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            long now = System.currentTimeMillis();
+            rebuildEvictedLayers();
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            FrameState state = captureFrameState(System.currentTimeMillis());
+            synchronized (mRenderLock) {
+                drawFrame(canvas, state);
+            }
+            mLastFrameSignature = state.signature;
+            logTimeToFirstFrame();
+            if (!state.ambient) {
+                mScreenTimeExtender.checkIdle();
+                recordFrameTime(SystemClock.elapsedRealtimeNanos() - startNs, state.isZoomAnimating());
+            }
+        }
 
+        /**
+         * Computes everything the frame needs in one place, on the main
+         * thread, so drawing reads no mutable engine state for it.
+         */
+        private FrameState captureFrameState(long now) {
             if (mDemoTimeMode) {
                 mCalendar.set(2019, 5 /* JUN */, 30, 10, 10, 32);
             } else {
                 mCalendar.setTimeInMillis(now);
             }
 
-            int dayOfMonth = mCalendar.get(Calendar.DAY_OF_MONTH);
-            int dayOfWeek = mCalendar.get(Calendar.DAY_OF_WEEK);
+            long chronographMs = 0;
+            if (!mAmbient) {
+                chronographMs = getStopwatchTimeMs();
+                chronographMs = (chronographMs / 10) * 10; // resolution 1/100 sec
+                if (mDemoTimeMode) {
+                    chronographMs = 650 + 1000 * (32 + 60 * (10 + (60 * 10)));
+                }
+            }
+
+            /* apperance of levels off the odometer range in case they happen */
+            float batteryPercentage = mBatteryPercentage;
+            if (batteryPercentage < 0f) {
+                batteryPercentage = -10f;
+            } else if (batteryPercentage > 100f) {
+                batteryPercentage = 110f;
+            }
 
-            if ((lastDayOfMonth == -1) || (lastDayOfMonth != dayOfMonth) || (lastDayOfWeek == -1) || (lastDayOfWeek != dayOfWeek)) {
-                mBackgroundBitmap2 = null;
-                mBackgroundBitmapZoomDayDate2 = null;
-                mAmbientBackgroundBitmap2 = null;
+            if (mPendingBezelRotationDegrees != 0f) {
+                mBezelRotationDegrees = Utility.mod(mBezelRotationDegrees + mPendingBezelRotationDegrees, 360f);
+                mPendingBezelRotationDegrees = 0f;
             }
 
-            drawBackground(canvas);
-            if (mZoomDayDate) {
+            /* when stopwatch is running, watch face refreshes more often.
+               However, we still want to only "tick" the time second hand
+               5 times a second, or once at reduced render quality. */
+            int secondHandTickMs = mRenderQuality >= QUALITY_ONE_HZ_SECOND_HAND ? 1000 : 200;
+
+            return new FrameState(now, mCalendar, chronographMs, batteryPercentage / 100f,
+                    mAmbient, getZoomProgress(), secondHandTickMs, mBezelRotationDegrees,
+                    mFrameContentVersion);
+        }
+
+        /**
+         * Draws one frame from its snapshot.  Called with mRenderLock
+         * held, on the render thread or in onDraw.
+         */
+        private void drawFrame(Canvas canvas, FrameState state) {
+            boolean zoomed = state.zoomProgress > 0f;
+            if (zoomed) {
+                setZoomAnimationMatrix(mZoomAnimationMatrix, state.zoomProgress);
+            }
+            drawBackground(canvas, state);
+            if (zoomed) {
                 canvas.save();
-                zoomCanvas(canvas, mDayDateLeftPx, mDayDateRightPx, mDayDateTopPx, mDayDateBottomPx);
+                canvas.concat(mZoomAnimationMatrix);
             }
-            drawBattery(canvas);
-            drawTimeAndStopwatch(canvas);
-            if (mZoomDayDate) {
+            drawBezelLayer(canvas, state);
+            drawComplications(canvas, state);
+            drawHands(canvas, state);
+            if (zoomed) {
                 canvas.restore();
             }
-            if (!mAmbient) {
-                mScreenTimeExtender.checkIdle();
+
+            mRenderedFrameCount += 1;
+        }
+
+        /**
+         * Makes the next frame draw even if the captured state looks
+         * the same, for changes FrameState does not capture.
+         */
+        private void markFrameContentChanged() {
+            mFrameContentVersion += 1;
+        }
+
+        private void logFrameStatistics() {
+            Log.d(TAG, String.format(Locale.US, "frames: %d rendered, %d skipped as unchanged",
+                    mRenderedFrameCount, mSkippedFrameCount));
+        }
+
+        /**
+         * Draws an interactive frame on the render thread, so that a
+         * frame never holds up tap handling on the main looper.  Falls
+         * back to invalidate() in ambient mode or with no surface.
+         * Does nothing if the frame would look like the last one.
+         */
+        private void requestFrame() {
+            rebuildEvictedLayers();
+            final FrameState state = captureFrameState(System.currentTimeMillis());
+            if (state.signature == mLastFrameSignature && mPendingFrameSignature == NO_FRAME_SIGNATURE) {
+                /* the frame on screen is still right */
+                mSkippedFrameCount += 1;
+                return;
+            }
+            if (state.signature == mPendingFrameSignature) {
+                /* the render thread is already on it */
+                mSkippedFrameCount += 1;
+                return;
+            }
+            if (!mUseRenderThread || mAmbient || !isVisible() || !mSurfaceAvailable || mSurfaceWidthPx == 0) {
+                invalidate();
+                return;
+            }
+            mPendingFrameSignature = state.signature;
+            mScreenTimeExtender.checkIdle();
+            /* only the newest frame is worth drawing */
+            mRenderHandler.removeCallbacksAndMessages(null);
+            mRenderHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    renderFrame(state);
+                }
+            });
+        }
+
+        private void renderFrame(FrameState state) {
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            SurfaceHolder holder = getSurfaceHolder();
+            Canvas canvas = holder.lockCanvas();
+            if (canvas == null) {
+                mUpdateTimeHandler.obtainMessage(MSG_FRAME_DROPPED, state).sendToTarget();
+                return;
+            }
+            try {
+                synchronized (mRenderLock) {
+                    drawFrame(canvas, state);
+                }
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+            long frameTimeUs = (SystemClock.elapsedRealtimeNanos() - startNs) / 1000;
+            mUpdateTimeHandler.obtainMessage(MSG_FRAME_RENDERED,
+                    (int) Math.min(frameTimeUs, Integer.MAX_VALUE), 0, state).sendToTarget();
+        }
+
+        /**
+         * The frame is on screen now, so later requests that would
+         * draw the same thing can be skipped; unless a newer frame was
+         * requested, or the surface went away, in the meantime.
+         */
+        private void handleFrameRenderedMessage(FrameState state, int frameTimeUs) {
+            if (state.signature == mPendingFrameSignature) {
+                mLastFrameSignature = state.signature;
+                mPendingFrameSignature = NO_FRAME_SIGNATURE;
+            }
+            logTimeToFirstFrame();
+            recordFrameTime(frameTimeUs * 1000L, state.isZoomAnimating());
+        }
+
+        /**
+         * Nothing reached the screen, so the next request draws again.
+         */
+        private void handleFrameDroppedMessage(FrameState state) {
+            if (state.signature == mPendingFrameSignature) {
+                mPendingFrameSignature = NO_FRAME_SIGNATURE;
+            }
+        }
+
+        /**
+         * Zoom animation frames are tallied apart, so they neither
+         * skew the governor's window nor escape their own budget.
+         */
+        private void recordFrameTime(long frameTimeNs, boolean zoomAnimationFrame) {
+            if (zoomAnimationFrame) {
+                mZoomAnimationFrameCount += 1;
+                mZoomAnimationFrameTimeSumNs += frameTimeNs;
+                mZoomAnimationMaxFrameTimeNs = Math.max(mZoomAnimationMaxFrameTimeNs, frameTimeNs);
+                return;
             }
+            if (mRenderQualityGovernor.recordFrame(frameTimeNs)) {
+                applyRenderQuality();
+            }
+        }
+
+        private void startRenderThread() {
+            mRenderThread = new HandlerThread("PilotWatchFaceRender", Process.THREAD_PRIORITY_DISPLAY);
+            mRenderThread.start();
+            mRenderHandler = new Handler(mRenderThread.getLooper());
+        }
+
+        private void stopRenderThread() {
+            mRenderHandler.removeCallbacksAndMessages(null);
+            mUpdateTimeHandler.removeMessages(MSG_FRAME_RENDERED);
+            mUpdateTimeHandler.removeMessages(MSG_FRAME_DROPPED);
+            mRenderThread.quitSafely();
+        }
 
-            lastDayOfMonth = dayOfMonth;
-            lastDayOfWeek = dayOfWeek;
+        /**
+         * Applies the governor's current tier.  Hand paints are only
+         * rebuilt when the shadow setting actually flips.
+         */
+        private void applyRenderQuality() {
+            int quality = mRenderQualityGovernor.getTier();
+            boolean handShadows = quality < QUALITY_NO_HAND_SHADOWS;
+            boolean updatePaints = handShadows != (mRenderQuality < QUALITY_NO_HAND_SHADOWS);
+            mRenderQuality = quality;
+            if (updatePaints) {
+                updateHandPaints();
+            }
+            setUpdateRate();
         }
 
         private void registerReceiver() {
@@ -1394,6 +2342,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             PilotWatchFace.this.registerReceiver(mTimeZoneReceiver, filter);
+            PilotWatchFace.this.registerReceiver(mBatteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
         }
 
         private void unregisterReceiver() {
@@ -1402,6 +2351,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             }
             mRegisteredTimeZoneReceiver = false;
             PilotWatchFace.this.unregisterReceiver(mTimeZoneReceiver);
+            PilotWatchFace.this.unregisterReceiver(mBatteryReceiver);
         }
 
         /**
@@ -1414,632 +2364,1474 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             }
         }
 
-        /**
-         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
-         * should only run in active mode.
-         */
-        private boolean shouldTimerBeRunning() {
-            return isVisible() && !mAmbient;
+        /**
+         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
+         * should only run in active mode.
+         */
+        private boolean shouldTimerBeRunning() {
+            return isVisible() && !mAmbient;
+        }
+
+        /**
+         * Handle updating the time periodically in interactive mode.
+         */
+        private void handleUpdateTimeMessage() {
+            updateZoomAnimation();
+            requestFrame();
+            if (shouldTimerBeRunning()) {
+                long timeMs = System.currentTimeMillis();
+                long delayMs = mUpdateRateMs - (timeMs % mUpdateRateMs);
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+            }
+        }
+
+        /**
+         * Points the day/date zoom on or off, animating from wherever
+         * it is now, or jumps straight there.  Callers update the timer.
+         */
+        private void setZoomDayDate(boolean zoomDayDate, boolean animate) {
+            long nowMs = SystemClock.uptimeMillis();
+            mZoomStartPosition = animate ? getZoomPosition(nowMs) : (zoomDayDate ? 1f : 0f);
+            mZoomStartTimeMs = nowMs;
+            mZoomDayDate = zoomDayDate;
+            mUpdateTimeHandler.removeMessages(MSG_EVICT_ZOOM_LAYER);
+            if (zoomDayDate) {
+                requestZoomLayer();
+            }
+            if (!animate) {
+                finishZoomAnimation();
+            } else if (!mZoomAnimating) {
+                mZoomAnimating = true;
+                mZoomAnimationFrameCount = 0;
+                mZoomAnimationFrameTimeSumNs = 0;
+                mZoomAnimationMaxFrameTimeNs = 0;
+                setUpdateRate();
+            }
+        }
+
+        /**
+         * Linear position of the zoom, from 0 to 1.
+         */
+        private float getZoomPosition(long nowMs) {
+            float delta = (nowMs - mZoomStartTimeMs) / (float) ZOOM_ANIMATION_DURATION_MS;
+            if (mZoomDayDate) {
+                return Math.min(1f, mZoomStartPosition + delta);
+            }
+            return Math.max(0f, mZoomStartPosition - delta);
+        }
+
+        /**
+         * The zoom position, eased in and out.
+         */
+        private float getZoomProgress() {
+            float position = getZoomPosition(SystemClock.uptimeMillis());
+            return position * position * (3f - 2f * position);
+        }
+
+        private void updateZoomAnimation() {
+            if (mZoomAnimating && getZoomPosition(SystemClock.uptimeMillis()) == (mZoomDayDate ? 1f : 0f)) {
+                finishZoomAnimation();
+            }
+        }
+
+        private void finishZoomAnimation() {
+            if (mZoomAnimating) {
+                mZoomAnimating = false;
+                checkZoomAnimationBudget();
+                setUpdateRate();
+            }
+            if (!mZoomDayDate) {
+                scheduleZoomLayerEviction();
+            }
+        }
+
+        /**
+         * Logs the animation's frame times against its frame interval.
+         * If they ran over on average, later animations get half the
+         * frame rate, down to one frame per MAX_ZOOM_ANIMATION_FRAME_MS.
+         */
+        private void checkZoomAnimationBudget() {
+            if (mZoomAnimationFrameCount == 0) {
+                return;
+            }
+            double averageMs = mZoomAnimationFrameTimeSumNs / 1e6 / mZoomAnimationFrameCount;
+            Log.d(TAG, String.format(Locale.US, "zoom animation: %d frames, %.2f ms average, %.2f ms max, %d ms budget",
+                    mZoomAnimationFrameCount, averageMs, mZoomAnimationMaxFrameTimeNs / 1e6, mZoomAnimationFrameMs));
+            if (averageMs > mZoomAnimationFrameMs && mZoomAnimationFrameMs < MAX_ZOOM_ANIMATION_FRAME_MS) {
+                mZoomAnimationFrameMs = Math.min(MAX_ZOOM_ANIMATION_FRAME_MS, mZoomAnimationFrameMs * 2);
+                Log.d(TAG, String.format(Locale.US, "zoom animation frame interval now %d ms", mZoomAnimationFrameMs));
+            }
+        }
+
+        // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+        private void initColors() {
+            mBackgroundColor = FaceStyle.BACKGROUND_COLOR;
+            mTickColor = FaceStyle.TICK_COLOR;
+            mBaseBackgroundColor = mBackgroundColor;
+            mBaseTickColor = mTickColor;
+            updateColorFilters();
+        }
+
+        /**
+         * Sets the layer palette: the base colors, or the themed ones
+         * if the theme is baked into the layers.
+         */
+        private void applyThemeColors() {
+            Utility.ColorTheme theme = mBakeColorTheme ? mColorTheme : Utility.ColorTheme.THEME_CLASSIC;
+            mBackgroundColor = theme.apply(mBaseBackgroundColor);
+            mTickColor = theme.apply(mBaseTickColor);
+            for (WatchDial dial : mDials) {
+                if (dial.filled) {
+                    dial.backgroundColor = mBackgroundColor;
+                }
+            }
+        }
+
+        /**
+         * Composes the theme (unless baked) and mute dimming into the
+         * color filters used at composite time.  Ambient gets dimming
+         * only.  Hands are always drawn live, so theirs always includes
+         * the theme.
+         */
+        private void updateColorFilters() {
+            markFrameContentChanged();
+            ColorMatrix dim = new ColorMatrix();
+            dim.setScale(MUTE_BRIGHTNESS, MUTE_BRIGHTNESS, MUTE_BRIGHTNESS, 1f);
+
+            ColorMatrix theme = mColorTheme.matrix == null ? new ColorMatrix() : new ColorMatrix(mColorTheme.matrix);
+            ColorMatrix hands = new ColorMatrix(theme);
+            ColorMatrix layers = mBakeColorTheme ? new ColorMatrix() : new ColorMatrix(theme);
+            if (mMuteMode) {
+                hands.postConcat(dim);
+                layers.postConcat(dim);
+            }
+            boolean themed = mColorTheme.matrix != null;
+            mHandColorFilter = themed || mMuteMode ? new ColorMatrixColorFilter(hands) : null;
+            mInteractiveColorFilter = (themed && !mBakeColorTheme) || mMuteMode ? new ColorMatrixColorFilter(layers) : null;
+            mAmbientColorFilter = mMuteMode ? new ColorMatrixColorFilter(dim) : null;
+        }
+
+        private ColorMatrixColorFilter getLayerColorFilter(boolean ambient) {
+            return ambient ? mAmbientColorFilter : mInteractiveColorFilter;
+        }
+
+        private void setColorTheme(Utility.ColorTheme colorTheme) {
+            mColorTheme = colorTheme;
+            updateColorFilters();
+            updateHandPaints();
+            if (!mBakeColorTheme) {
+                return;
+            }
+            /* before the palette changes, so a build in flight is not stored */
+            mLayerGeneration += 1;
+            applyThemeColors();
+            BackgroundLayers layers = mBakedThemeLayers.get(colorTheme);
+            if (layers != null) {
+                setBackgroundLayers(layers);
+            } else if (mSurfaceWidthPx != 0) {
+                requestBackgroundLayers();
+            }
+        }
+
+        private void setMuteMode(boolean muteMode) {
+            mMuteMode = muteMode;
+            updateColorFilters();
+            updateHandPaints();
+        }
+
+        private void loadDialLayout() {
+            mDialLayout = mSharedLayerCache.get(this, SHARED_DIAL_LAYOUT_KEY, DialLayout.class);
+            if (mDialLayout != null) {
+                return;
+            }
+            InputStream in = getResources().openRawResource(R.raw.dial_layout);
+            try {
+                mDialLayout = mSharedLayerCache.put(this, SHARED_DIAL_LAYOUT_KEY,
+                        DialLayout.read(in, DialLayout.DEFAULT_LAYOUT_NAME), DialLayout.class);
+            } catch (IOException e) {
+                throw new IllegalStateException("bad dial layout", e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    /* nothing to do */
+                }
+            }
+        }
+
+        private WatchDial createDial(DialLayout.DialSpec spec) {
+            WatchDial dial = new WatchDial(this);
+            spec.configure(dial);
+            dial.nonAmbientOnly = spec.nonAmbientOnly;
+            dial.filled = spec.filled;
+            if (spec.filled) {
+                dial.backgroundColor = mBackgroundColor;
+            }
+            dial.backgroundBrightness = spec.backgroundBrightness;
+            dial.backgroundStyle = spec.backgroundStyle;
+            if ("condensed".equals(spec.typeface)) {
+                dial.typeface = mCondensedTypeface;
+            }
+            for (DialLayout.TextSpec text : spec.texts) {
+                dial.addText(text.rotation, text.text);
+            }
+            return dial;
+        }
+
+        private void initDials() {
+            loadDialLayout();
+            mDials = new ArrayList<WatchDial>();
+            for (DialLayout.DialSpec spec : mDialLayout.getDials()) {
+                mDials.add(createDial(spec));
+            }
+            mMainDial = getDial("main");
+            mTopSubDial = getDial("top");
+            mLeftSubDial = getDial("left");
+            mBottomSubDial = getDial("bottom");
+            mBatterySubDial = getDial("battery");
+            mDialSpecHash = DialGeometry.getSpecHash(mDials);
+        }
+
+        private WatchDial getDial(String name) {
+            return mDials.get(mDialLayout.getDials().indexOf(mDialLayout.getDial(name)));
+        }
+
+        private WatchHand createHand(String name) {
+            DialLayout.HandSpec spec = mDialLayout.getHand(name);
+            WatchHand hand = new WatchHand(getDial(spec.dialName));
+            hand.color = FaceStyle.getHandColor(spec.color);
+            hand.nonAmbientOnly = spec.nonAmbientOnly;
+            hand.hasArrowHead = spec.hasArrowHead;
+            hand.lengthPctRadius = spec.lengthPctRadius;
+            hand.lengthBehindPctRadius = spec.lengthBehindPctRadius;
+            hand.widthVmin = spec.widthVmin;
+            hand.shadowRadiusPx = spec.shadowRadiusPx;
+            return hand;
+        }
+
+        private void initHands() {
+            mChronographSecondFractionHand = createHand("chronographSecondFraction");
+            mSubdialSecondHand = createHand("subdialSecond");
+            mChronographMinuteHand = createHand("chronographMinute");
+            mChronographHourHand = createHand("chronographHour");
+            mSecondHand = createHand("second");
+            mMinuteHand = createHand("minute");
+            mHourHand = createHand("hour");
+            mBatteryHand = createHand("battery");
+        }
+
+        /* layout order, the same order the generator sees them in */
+        private List<WatchDial> getDials() {
+            return mDials;
+        }
+
+        private void updateDials() {
+            List<WatchDial> dials = getDials();
+            for (WatchDial dial : dials) {
+                dial.update();
+            }
+            updateTickLines(dials);
+        }
+
+        private boolean isScreenRound() {
+            return getApplicationContext().getResources().getConfiguration().isScreenRound();
+        }
+
+        /*
+         * geometry for every layout and size seen, from the build or
+         * compiled here.  The tables as read are shared by all engines
+         * and never change; each engine looks up and adds to its own
+         * copies, so what one compiles never changes a table another
+         * is reading.  Main thread only.
+         */
+        private DialGeometry.Table mDialGeometryTable;
+
+        /* just the entries compiled here, which survive process restarts */
+        private static final int DIAL_GEOMETRY_CACHE_MAX_ENTRIES = 8;
+        private DialGeometry.Table mCompiledDialGeometry;
+
+        private File getDialGeometryCacheFile() {
+            return new File(getCacheDir(), DialGeometry.ASSET_NAME);
+        }
+
+        private byte[] readFully(InputStream in) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(in.available(), 1024));
+            byte[] buffer = new byte[16384];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Reads the tick geometry precomputed at build time, then the
+         * geometry compiled on this device before, each in one read,
+         * unless another engine already has.
+         */
+        private void loadDialGeometryTable() {
+            DialGeometry.Table builtIn = mSharedLayerCache.get(this, SHARED_DIAL_GEOMETRY_KEY, DialGeometry.Table.class);
+            DialGeometry.Table compiled = mSharedLayerCache.get(this, SHARED_COMPILED_DIAL_GEOMETRY_KEY,
+                    DialGeometry.Table.class);
+            if (builtIn == null || compiled == null) {
+                builtIn = mSharedLayerCache.put(this, SHARED_DIAL_GEOMETRY_KEY,
+                        readBuiltInDialGeometry(), DialGeometry.Table.class);
+                compiled = mSharedLayerCache.put(this, SHARED_COMPILED_DIAL_GEOMETRY_KEY,
+                        readCompiledDialGeometry(), DialGeometry.Table.class);
+            }
+            mDialGeometryTable = new DialGeometry.Table();
+            mDialGeometryTable.putAll(builtIn);
+            mDialGeometryTable.putAll(compiled);
+            mCompiledDialGeometry = new DialGeometry.Table();
+            mCompiledDialGeometry.putAll(compiled);
+        }
+
+        private DialGeometry.Table readBuiltInDialGeometry() {
+            InputStream in = null;
+            try {
+                in = getAssets().open(DialGeometry.ASSET_NAME);
+                return DialGeometry.read(readFully(in));
+            } catch (IOException e) {
+                Log.w(TAG, "no dial geometry table: " + e.getMessage());
+                return new DialGeometry.Table();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        /* nothing to do */
+                    }
+                }
+            }
+        }
+
+        private DialGeometry.Table readCompiledDialGeometry() {
+            File file = getDialGeometryCacheFile();
+            if (!file.exists()) {
+                return new DialGeometry.Table();
+            }
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                return DialGeometry.read(readFully(in));
+            } catch (IOException e) {
+                Log.w(TAG, "discarding dial geometry cache: " + e.getMessage());
+                file.delete();
+                return new DialGeometry.Table();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        /* nothing to do */
+                    }
+                }
+            }
+        }
+
+        private void initDayDateAtlas() {
+            LabelAtlas atlas = mSharedLayerCache.get(this, SHARED_DAY_DATE_ATLAS_KEY, LabelAtlas.class);
+            if (atlas == null) {
+                atlas = mSharedLayerCache.put(this, SHARED_DAY_DATE_ATLAS_KEY,
+                        new LabelAtlas(FaceStyle.TEXT_CAP_HEIGHT), LabelAtlas.class);
+            }
+            synchronized (mRenderLock) {
+                mDayDateAtlas = atlas;
+            }
+        }
+
+        /**
+         * Writes the compiled entries out on the layer thread, from a
+         * copy taken now, so setup never waits on storage.  The file
+         * is replaced in one rename, so a reader (or another engine
+         * writing at the same time) never sees half of it.
+         */
+        private void storeCompiledDialGeometry() {
+            final DialGeometry.Table compiled = new DialGeometry.Table();
+            compiled.putAll(mCompiledDialGeometry);
+            final File file = getDialGeometryCacheFile();
+            mLayerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    writeDialGeometry(compiled, file);
+                }
+            });
+        }
+
+        private void writeDialGeometry(DialGeometry.Table table, File file) {
+            File tempFile = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(tempFile);
+                DialGeometry.write(table, out);
+                out.close();
+                out = null;
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("could not rename " + tempFile);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "could not store dial geometry: " + e.getMessage());
+                tempFile.delete();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        /* nothing to do */
+                    }
+                }
+            }
+        }
+
+        /**
+         * Looks up this layout's geometry for the current surface; on
+         * a miss, computes it once and keeps it in memory and on disk.
+         */
+        private void updateTickLines(List<WatchDial> dials) {
+            boolean isRound = isScreenRound();
+            DialGeometry.Entry entry = mDialGeometryTable.find(
+                    mDialSpecHash, mSurfaceWidthPx, mSurfaceHeightPx, isRound, mClockDialDiameterPx);
+            if (entry != null && entry.apply(dials)) {
+                return;
+            }
+            for (WatchDial dial : dials) {
+                dial.computeTickLines(mSurfaceVminPx);
+            }
+            entry = DialGeometry.Entry.capture(
+                    mDialSpecHash, mSurfaceWidthPx, mSurfaceHeightPx, isRound, mClockDialDiameterPx, dials);
+            mDialGeometryTable.put(entry);
+            mCompiledDialGeometry.put(entry);
+            mCompiledDialGeometry.trim(DIAL_GEOMETRY_CACHE_MAX_ENTRIES);
+            storeCompiledDialGeometry();
+        }
+
+        private void updateHands() {
+            mHourHand.update();
+            mMinuteHand.update();
+            mSecondHand.update();
+            mBatteryHand.update();
+            mChronographHourHand.update();
+            mChronographMinuteHand.update();
+            mSubdialSecondHand.update();
+            mChronographSecondFractionHand.update();
+            updateHandRenderTable();
+        }
+
+        private void updateHandPaints() {
+            markFrameContentChanged();
+            synchronized (mRenderLock) {
+                mHourHand.updatePaint();
+                mMinuteHand.updatePaint();
+                mSecondHand.updatePaint();
+                mBatteryHand.updatePaint();
+                mChronographHourHand.updatePaint();
+                mChronographMinuteHand.updatePaint();
+                mSubdialSecondHand.updatePaint();
+                mChronographSecondFractionHand.updatePaint();
+            }
+            updateHandRenderTable();
+        }
+
+        private void setUpdateRate() {
+            if (mPutChronographSecondsOnSubDial) {
+                // chrono seconds on subdial; time seconds on main dial
+                if (mStopwatchRunning) {
+                    mUpdateRateMs = 50; // for refreshing fraction of second
+                } else {
+                    mUpdateRateMs = 200;
+                }
+            } else {
+                // time seconds on subdial; chrono seconds on main dial
+                if (mStopwatchRunning) {
+                    mUpdateRateMs = 50; // for refreshing fraction of second
+                } else {
+                    mUpdateRateMs = 200;
+                }
+            }
+            if (mStopwatchRunning) {
+                if (mRenderQuality >= QUALITY_SLOW_FRACTION_HAND) {
+                    mUpdateRateMs = 200;
+                }
+            } else if (mRenderQuality >= QUALITY_ONE_HZ_SECOND_HAND) {
+                mUpdateRateMs = INTERACTIVE_UPDATE_RATE_MS;
+            }
+            if (mZoomAnimating) {
+                mUpdateRateMs = Math.min(mUpdateRateMs, mZoomAnimationFrameMs);
+            }
+        }
+
+        /**
+         * Selects the bezel scale.  Costs one table build; the clock
+         * dial shrinks to make room, so the layout is redone as well.
+         */
+        private void setBezelType(Utility.BezelType bezelType) {
+            mBezelType = bezelType;
+            mBezelScale = BezelScale.forType(bezelType);
+            if (mSurfaceWidthPx != 0) {
+                updateLayout();
+            }
+        }
+
+        private boolean isOnBezel(int x, int y) {
+            if (mBezelScale == null) {
+                return false;
+            }
+            float dx = x - mSurfaceCenterXPx;
+            float dy = y - mSurfaceCenterYPx;
+            float distanceSquared = dx * dx + dy * dy;
+            return distanceSquared >= mClockDialRadiusPx * mClockDialRadiusPx &&
+                    distanceSquared <= mDialRadiusPx * mDialRadiusPx;
+        }
+
+        /**
+         * Queues a bezel rotation.  Rotations are added up and applied
+         * once per frame capture, however fast they come in.
+         */
+        private void rotateBezel(float degrees) {
+            mPendingBezelRotationDegrees += degrees;
+            requestFrame();
+        }
+
+        private void resetBezel() {
+            mPendingBezelRotationDegrees = 0f;
+            mBezelRotationDegrees = 0f;
+            requestFrame();
+        }
+
+        private void drawBezelLayer(Canvas canvas, FrameState state) {
+            Bitmap bezelBitmap = state.ambient ? mAmbientBezelBitmap : mBezelBitmap;
+            if (bezelBitmap == null) {
+                return;
+            }
+            mBezelLayerPaint.setColorFilter(getLayerColorFilter(state.ambient));
+            if (state.bezelRotationDegrees == 0f) {
+                canvas.drawBitmap(bezelBitmap, 0, 0, mBezelLayerPaint);
+                return;
+            }
+            mBezelMatrix.setRotate(state.bezelRotationDegrees, mSurfaceCenterXPx, mSurfaceCenterYPx);
+            canvas.drawBitmap(bezelBitmap, mBezelMatrix, mBezelLayerPaint);
+        }
+
+        /**
+         * Draws the bezel from the request's own scale, which
+         * createBezelBitmap has already built.
+         */
+        private void drawBezel(Canvas canvas, LayerInputs inputs, boolean ambient) {
+            AndroidFaceCanvas faceCanvas = new AndroidFaceCanvas(mTypeface);
+            faceCanvas.setCanvas(canvas);
+            faceCanvas.setLabelAtlas(mUseLabelAtlas ? getLabelAtlas(ambient) : null);
+            FaceDrawing.drawBezel(faceCanvas, inputs.bezelScale, inputs.surfaceCenterXPx, inputs.surfaceCenterYPx,
+                    inputs.bezelTextSizePx, mTickColor, ambient);
+        }
+
+        /**
+         * Static layers built together, by the layer thread, for one
+         * layout generation.
+         */
+        private class BackgroundLayers {
+            public int generation;
+            public String cacheKey;
+            public Utility.ColorTheme colorTheme;
+            public Bitmap background;
+            public Bitmap ambientBackground;
+            public Bitmap bezel;
+            public Bitmap ambientBezel;
+        }
+
+        /**
+         * What one request's layers are drawn from, copied on the main
+         * thread when they are requested.  The layer thread, and the
+         * tiles, read only this copy, so a layout change or a bezel
+         * change while they build can't pull it from under them; the
+         * generation check then drops what they built.
+         */
+        private class LayerInputs {
+            public final int generation;
+            public final String cacheKey;
+            public final int surfaceWidthPx;
+            public final int surfaceHeightPx;
+            public final float surfaceCenterXPx;
+            public final float surfaceCenterYPx;
+            public final float dialRadiusPx;
+            /* a scale of the request's own, built on the layer thread */
+            public final BezelScale bezelScale;
+            public final float bezelTextSizePx;
+            public final float dayDateLeftPx;
+            public final float dayDateRightPx;
+            public final float dayDateTopPx;
+            public final float dayDateBottomPx;
+            public final float dayWindowRightPx;
+            public final float dateWindowLeftPx;
+            public final float zoomMarginPx;
+            public final Rect zoomLayerBounds;
+
+            public LayerInputs(int generation, String cacheKey) {
+                this.generation = generation;
+                this.cacheKey = cacheKey;
+                surfaceWidthPx = mSurfaceWidthPx;
+                surfaceHeightPx = mSurfaceHeightPx;
+                surfaceCenterXPx = mSurfaceCenterXPx;
+                surfaceCenterYPx = mSurfaceCenterYPx;
+                dialRadiusPx = mDialRadiusPx;
+                bezelScale = BezelScale.forType(mBezelType);
+                bezelTextSizePx = getClockDialTextSizePx(mBezelTextSizeVmin);
+                dayDateLeftPx = mDayDateLeftPx;
+                dayDateRightPx = mDayDateRightPx;
+                dayDateTopPx = mDayDateTopPx;
+                dayDateBottomPx = mDayDateBottomPx;
+                dayWindowRightPx = mDayWindowRightPx;
+                dateWindowLeftPx = mDateWindowLeftPx;
+                zoomMarginPx = getZoomMarginPx();
+                zoomLayerBounds = new Rect(mZoomLayerBounds);
+            }
+        }
+
+        private void drawDials(Canvas canvas, boolean ambient) {
+            for (WatchDial dial : mDials) {
+                dial.draw(canvas, ambient);
+            }
+        }
+
+        /**
+         * Draws clock dial without "Pilot Watch 3000" text, version number text, or day/date.
+         */
+        private Bitmap createBackgroundBitmap(final LayerInputs inputs) {
+            return renderLayer(inputs, new TiledRenderer.Painter() {
+                @Override
+                public void paint(Canvas backgroundCanvas) {
+                    drawClockDial(backgroundCanvas, inputs, false);
+                    drawDials(backgroundCanvas, false);
+                }
+            });
+        }
+
+        /**
+         * Draws zoomed-in clock dial without day/date, at the zoomed
+         * resolution, but only over mZoomLayerBounds: a strip across
+         * the screen rather than all of it.
+         */
+        private Bitmap createBackgroundBitmapZoomDayDate(final LayerInputs inputs) {
+            final Rect bounds = inputs.zoomLayerBounds;
+            if (bounds.isEmpty()) {
+                return null;
+            }
+            return renderLayer(bounds.width(), bounds.height(), new TiledRenderer.Painter() {
+                @Override
+                public void paint(Canvas backgroundCanvas) {
+                    backgroundCanvas.translate(-bounds.left, -bounds.top);
+                    zoomCanvas(backgroundCanvas, inputs.dayDateLeftPx, inputs.dayDateRightPx,
+                            inputs.dayDateTopPx, inputs.dayDateBottomPx, inputs.zoomMarginPx);
+                    drawClockDial(backgroundCanvas, inputs, false);
+                    drawDials(backgroundCanvas, false);
+                }
+            });
+        }
+
+        /**
+         * Draws clock dial without "Pilot Watch 3000" text, version number text, or day/date.
+         */
+        private Bitmap createAmbientBackgroundBitmap(final LayerInputs inputs) {
+            return renderLayer(inputs, new TiledRenderer.Painter() {
+                @Override
+                public void paint(Canvas backgroundCanvas) {
+                    drawClockDial(backgroundCanvas, inputs, true);
+                    drawDials(backgroundCanvas, true);
+                }
+            });
+        }
+
+        /**
+         * Draws the bezel into a layer of its own, so that rotating it
+         * only changes the matrix it is drawn with.
+         */
+        private Bitmap createBezelBitmap(final LayerInputs inputs, final boolean ambient) {
+            if (inputs.bezelScale == null) {
+                return null;
+            }
+            /* build the scale's tables before the tiles share it */
+            inputs.bezelScale.build(inputs.surfaceCenterXPx, inputs.surfaceCenterYPx, inputs.dialRadiusPx);
+            return renderLayer(inputs, new TiledRenderer.Painter() {
+                @Override
+                public void paint(Canvas canvas) {
+                    drawBezel(canvas, inputs, ambient);
+                }
+            });
+        }
+
+        /**
+         * Renders a full-surface layer, in horizontal tiles across the
+         * tile pool if tiled rendering is on.
+         */
+        private Bitmap renderLayer(LayerInputs inputs, TiledRenderer.Painter painter) {
+            return renderLayer(inputs.surfaceWidthPx, inputs.surfaceHeightPx, painter);
+        }
+
+        private Bitmap renderLayer(int widthPx, int heightPx, TiledRenderer.Painter painter) {
+            int numberOfTiles = mUseTiledRendering ? mRenderTileCount : 1;
+            if (numberOfTiles > 1 && mTiledRenderer == null) {
+                mTiledRenderer = new TiledRenderer(MAX_RENDER_TILE_COUNT - 1);
+            }
+            if (numberOfTiles <= 1) {
+                Bitmap bitmap = Bitmap.createBitmap(widthPx, heightPx, Bitmap.Config.ARGB_8888);
+                painter.paint(new Canvas(bitmap));
+                return bitmap;
+            }
+            return mTiledRenderer.render(widthPx, heightPx, numberOfTiles, painter);
+        }
+
+        /**
+         * adds "Pilot Watch 3000" or version number text, and day/date.
+         * Render thread, under mRenderLock; returns the bitmap to draw.
+         */
+        private Bitmap initBackgroundBitmap2(FrameState state) {
+            if (mBackgroundBitmap2 == null) {
+                long startNs = SystemClock.elapsedRealtimeNanos();
+                mBackgroundBitmap2 = mBackgroundBitmap.copy(Bitmap.Config.ARGB_8888, true);
+                drawWatchFaceName(new Canvas(mBackgroundBitmap2), false);
+                mBackgroundBitmap2Day = NO_DAY;
+                registerLayer2Memory("background2", mBackgroundBitmap2, startNs, mBackgroundBitmap2Evictor);
+            } else {
+                mLayerMemoryManager.touch(this, "background2");
+            }
+            mBackgroundBitmap2Day = updateDayDate(mBackgroundBitmap2, mBackgroundBitmap,
+                    mBackgroundBitmap2Day, DAY_DATE_NORMAL, state);
+            return mBackgroundBitmap2;
+        }
+
+        /**
+         * adds day/date.  Render thread, under mRenderLock; returns the
+         * bitmap to draw.
+         */
+        private Bitmap initBackgroundBitmapZoomDayDate2(FrameState state) {
+            if (mBackgroundBitmapZoomDayDate2 == null) {
+                long startNs = SystemClock.elapsedRealtimeNanos();
+                mBackgroundBitmapZoomDayDate2 = mBackgroundBitmapZoomDayDate.copy(Bitmap.Config.ARGB_8888, true);
+                mBackgroundBitmapZoomDayDate2Day = NO_DAY;
+                registerLayer2Memory("zoomDayDate2", mBackgroundBitmapZoomDayDate2, startNs, mZoomDayDate2Evictor);
+            } else {
+                mLayerMemoryManager.touch(this, "zoomDayDate2");
+            }
+            mLayerMemoryManager.touch(this, "zoomDayDate");
+            mBackgroundBitmapZoomDayDate2Day = updateDayDate(mBackgroundBitmapZoomDayDate2, mBackgroundBitmapZoomDayDate,
+                    mBackgroundBitmapZoomDayDate2Day, DAY_DATE_ZOOMED, state);
+            return mBackgroundBitmapZoomDayDate2;
+        }
+
+        /**
+         * adds "Pilot Watch 3000" or version number text, and day/date.
+         * Render thread, under mRenderLock; returns the bitmap to draw.
+         */
+        private Bitmap initAmbientBackgroundBitmap2(FrameState state) {
+            if (mAmbientBackgroundBitmap2 == null) {
+                long startNs = SystemClock.elapsedRealtimeNanos();
+                mAmbientBackgroundBitmap2 = mAmbientBackgroundBitmap.copy(Bitmap.Config.ARGB_8888, true);
+                drawWatchFaceName(new Canvas(mAmbientBackgroundBitmap2), true);
+                mAmbientBackgroundBitmap2Day = NO_DAY;
+                registerLayer2Memory("ambientBackground2", mAmbientBackgroundBitmap2, startNs,
+                        mAmbientBackgroundBitmap2Evictor);
+            } else {
+                mLayerMemoryManager.touch(this, "ambientBackground2");
+            }
+            mAmbientBackgroundBitmap2Day = updateDayDate(mAmbientBackgroundBitmap2, mAmbientBackgroundBitmap,
+                    mAmbientBackgroundBitmap2Day, DAY_DATE_NORMAL, state);
+            return mAmbientBackgroundBitmap2;
+        }
+
+        /* render thread; the day/date is left out of the cost, being cheap */
+        private void registerLayer2Memory(String name, Bitmap bitmap, long startNs,
+                                          LayerMemoryManager.Evictor evictor) {
+            mLayerMemoryManager.register(this, name, bitmap.getAllocationByteCount(),
+                    (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6f, 0, evictor);
+        }
+
+        private int getDay(FrameState state) {
+            return state.dayOfMonth * 8 + state.dayOfWeek;
+        }
+
+        /**
+         * Brings a layer's day/date windows up to the frame's day.  If
+         * they show another day, the windows are first restored from
+         * the base layer.  Returns the day the layer now shows.
+         */
+        private int updateDayDate(Bitmap layer, Bitmap base, int layerDay, int scale, FrameState state) {
+            int day = getDay(state);
+            if (day == layerDay || mDayDateAtlas == null) {
+                /* with no atlas, until rebuildEvictedLayers takes one again, keep what's there */
+                return layerDay;
+            }
+            Canvas canvas = new Canvas(layer);
+            if (scale == DAY_DATE_ZOOMED) {
+                canvas.translate(-mZoomLayerBounds.left, -mZoomLayerBounds.top);
+            }
+            if (layerDay != NO_DAY) {
+                restoreDayDateWindow(canvas, base, scale, mDayDateLeftPx, mDayWindowRightPx);
+                restoreDayDateWindow(canvas, base, scale, mDateWindowLeftPx, mDayDateRightPx);
+            }
+            drawDate(canvas, state, scale);
+            mLayerMemoryManager.touch(this, "dayDateAtlas");
+            return day;
+        }
+
+        private void restoreDayDateWindow(Canvas canvas, Bitmap base, int scale, float leftPx, float rightPx) {
+            RectF window = new RectF(leftPx, mDayDateTopPx, rightPx, mDayDateBottomPx);
+            if (scale == DAY_DATE_ZOOMED) {
+                mDayDateZoomMatrix.mapRect(window);
+            }
+            Rect rect = new Rect();
+            window.roundOut(rect);
+            rect.inset(-1, -1);
+            /* where the base layer's top left corner sits on screen */
+            int originXPx = scale == DAY_DATE_ZOOMED ? mZoomLayerBounds.left : 0;
+            int originYPx = scale == DAY_DATE_ZOOMED ? mZoomLayerBounds.top : 0;
+            if (rect.intersect(originXPx, originYPx, originXPx + base.getWidth(), originYPx + base.getHeight())) {
+                Rect source = new Rect(rect);
+                source.offset(-originXPx, -originYPx);
+                canvas.drawBitmap(base, source, rect, mWindowRestorePaint);
+            }
+        }
+
+        private static final int BENCHMARK_ITERATIONS = 10;
+
+        /**
+         * Logs how long a full rebuild of the background layers takes
+         * with and without the label atlas, then with 1 to
+         * MAX_RENDER_TILE_COUNT tiles.  Runs on the layer thread.
+         */
+        private void benchmarkBackgroundBitmaps() {
+            final LayerInputs inputs = new LayerInputs(-1, null);
+            mLayerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    boolean useLabelAtlas = mUseLabelAtlas;
+                    boolean useTiledRendering = mUseTiledRendering;
+                    int renderTileCount = mRenderTileCount;
+
+                    mUseTiledRendering = false;
+                    for (int pass = 0; pass < 2; pass += 1) {
+                        mUseLabelAtlas = pass == 1;
+                        double ms = timeBackgroundLayers(inputs);
+                        Log.d(TAG, String.format(Locale.US, "background rebuild %s label atlas: %.2f ms",
+                                mUseLabelAtlas ? "with" : "without", ms));
+                    }
+
+                    mUseLabelAtlas = true;
+                    mUseTiledRendering = true;
+                    for (int tiles = 1; tiles <= MAX_RENDER_TILE_COUNT; tiles += 1) {
+                        mRenderTileCount = tiles;
+                        double ms = timeBackgroundLayers(inputs);
+                        Log.d(TAG, String.format(Locale.US, "background rebuild in %d tile(s): %.2f ms",
+                                tiles, ms));
+                    }
+
+                    mUseLabelAtlas = useLabelAtlas;
+                    mUseTiledRendering = useTiledRendering;
+                    mRenderTileCount = renderTileCount;
+                }
+            });
+        }
+
+        private double timeBackgroundLayers(LayerInputs inputs) {
+            createBackgroundLayers(inputs); /* warm up */
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i += 1) {
+                createBackgroundLayers(inputs);
+            }
+            return (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6 / BENCHMARK_ITERATIONS;
+        }
+
+        private static final int LAYER_BACKGROUND = 0;
+        private static final int LAYER_ZOOM_DAY_DATE = 1;
+        private static final int LAYER_AMBIENT_BACKGROUND = 2;
+        private static final int LAYER_BEZEL = 3;
+        private static final int LAYER_AMBIENT_BEZEL = 4;
+
+        private final String[] mLayerNames = {
+                "background", "zoomDayDate", "ambientBackground", "bezel", "ambientBezel"
+        };
+
+        /* what getLayer last took per layer, for the memory manager */
+        private final float[] mLayerRebuildMs = new float[mLayerNames.length];
+
+        private Bitmap createLayer(int layer, LayerInputs inputs) {
+            switch (layer) {
+                case LAYER_BACKGROUND:
+                    return createBackgroundBitmap(inputs);
+                case LAYER_ZOOM_DAY_DATE:
+                    return createBackgroundBitmapZoomDayDate(inputs);
+                case LAYER_AMBIENT_BACKGROUND:
+                    return createAmbientBackgroundBitmap(inputs);
+                case LAYER_BEZEL:
+                    return createBezelBitmap(inputs, false);
+                case LAYER_AMBIENT_BEZEL:
+                    return createBezelBitmap(inputs, true);
+            }
+            return null;
+        }
+
+        /**
+         * Takes a layer from another engine, or loads it from the disk
+         * cache, or draws it and stores it there unless the build went
+         * stale meanwhile.  A null cache key bypasses both caches.
+         */
+        private Bitmap getLayer(int layer, LayerInputs inputs) {
+            int generation = inputs.generation;
+            String cacheKey = inputs.cacheKey;
+            if (cacheKey == null) {
+                return createLayer(layer, inputs);
+            }
+            if ((layer == LAYER_BEZEL || layer == LAYER_AMBIENT_BEZEL) && inputs.bezelScale == null) {
+                return null;
+            }
+            String key = getLayerKey(cacheKey, layer);
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            if (mUseSharedLayerCache) {
+                Bitmap bitmap = mSharedLayerCache.get(this, key, Bitmap.class);
+                if (bitmap != null) {
+                    Log.d(TAG, String.format(Locale.US, "%s layer shared", mLayerNames[layer]));
+                    mLayerRebuildMs[layer] = (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6f;
+                    return bitmap;
+                }
+            }
+            Bitmap bitmap = null;
+            if (mUseLayerDiskCache) {
+                if (layer == LAYER_ZOOM_DAY_DATE) {
+                    bitmap = mLayerDiskCache.load(key, inputs.zoomLayerBounds.width(), inputs.zoomLayerBounds.height());
+                } else {
+                    bitmap = mLayerDiskCache.load(key, inputs.surfaceWidthPx, inputs.surfaceHeightPx);
+                }
+            }
+            if (bitmap != null) {
+                Log.d(TAG, String.format(Locale.US, "%s layer loaded from disk in %.2f ms",
+                        mLayerNames[layer], (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6));
+            } else {
+                bitmap = createLayer(layer, inputs);
+                if (bitmap != null && mUseLayerDiskCache && generation == mLayerGeneration) {
+                    mLayerDiskCache.store(key, bitmap);
+                    Log.d(TAG, String.format(Locale.US, "%s layer drawn and stored in %.2f ms",
+                            mLayerNames[layer], (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6));
+                }
+            }
+            if (bitmap != null && mUseSharedLayerCache && generation == mLayerGeneration) {
+                bitmap = mSharedLayerCache.put(this, key, bitmap, Bitmap.class);
+            }
+            mLayerRebuildMs[layer] = (SystemClock.elapsedRealtimeNanos() - startNs) / 1e6f;
+            return bitmap;
+        }
+
+        private String getLayerKey(String cacheKey, int layer) {
+            return LayerDiskCache.key(cacheKey, mLayerNames[layer]);
+        }
+
+        /**
+         * Lets go of shared entries this engine no longer draws with:
+         * layers other than the current and the baked ones, and the
+         * zoomed layer once evicted.  Main thread only.
+         */
+        private void retainSharedEntries() {
+            HashSet<String> keys = new HashSet<String>();
+            keys.add(SHARED_DIAL_LAYOUT_KEY);
+            keys.add(SHARED_DIAL_GEOMETRY_KEY);
+            keys.add(SHARED_COMPILED_DIAL_GEOMETRY_KEY);
+            if (mDayDateAtlas != null) {
+                keys.add(SHARED_DAY_DATE_ATLAS_KEY);
+            }
+            addSharedLayerKeys(keys, mLayersCacheKey);
+            for (BackgroundLayers layers : mBakedThemeLayers.values()) {
+                addSharedLayerKeys(keys, layers.cacheKey);
+            }
+            if (mLayersCacheKey != null && mBackgroundBitmapZoomDayDate != null) {
+                keys.add(getLayerKey(mLayersCacheKey, LAYER_ZOOM_DAY_DATE));
+            }
+            mSharedLayerCache.retainOnly(this, keys);
+        }
+
+        private void addSharedLayerKeys(HashSet<String> keys, String cacheKey) {
+            if (cacheKey == null) {
+                return;
+            }
+            for (int layer = 0; layer < mLayerNames.length; layer += 1) {
+                if (layer != LAYER_ZOOM_DAY_DATE) {
+                    keys.add(getLayerKey(cacheKey, layer));
+                }
+            }
+        }
+
+        /**
+         * Everything the static layers are a function of.  The install
+         * time stands in for the code and resources, so a reinstall of
+         * the same version (a debug build, say) doesn't reuse layers
+         * drawn by the old code.  Anything a layer draws with must be
+         * listed here.  Computed on the main thread.
+         */
+        private String getLayerCacheKey() {
+            if (!mUseLayerDiskCache && !mUseSharedLayerCache) {
+                return null;
+            }
+            int versionCode = 0;
+            long lastUpdateTime = 0;
+            try {
+                PackageInfo pInfo = getApplicationContext().getPackageManager().getPackageInfo(getPackageName(), 0);
+                versionCode = pInfo.versionCode;
+                lastUpdateTime = pInfo.lastUpdateTime;
+            } catch (Exception e) {
+                return null;
+            }
+            return LayerDiskCache.key(
+                    mSurfaceWidthPx, mSurfaceHeightPx, mPixelDensity,
+                    isScreenRound(), mLowBitAmbient,
+                    Locale.getDefault(), mBezelType, mUseLabelAtlas,
+                    mBackgroundColor, mTickColor,
+                    mRidgeHighlight, mRidgeShadow, mBorderHighlight, mBorderShadow,
+                    mConicHighlight, mConicShadow,
+                    mTypefaceFamily, mCondensedTypefaceFamily,
+                    mBezelTextSizeVmin, mDayDateTextSizeVmin, mDayDateOuterVmin,
+                    mWatchFaceNameTextSizeVmin, mWatchFaceNameLeftOffsetVmin, mWatchFaceNameTopOffsetVmin,
+                    mDialLayout.name, mDialLayout.getSourceHash(), mDialSpecHash,
+                    versionCode, lastUpdateTime, Build.FINGERPRINT
+            );
+        }
+
+        private BackgroundLayers createBackgroundLayers(LayerInputs inputs) {
+            BackgroundLayers layers = new BackgroundLayers();
+            layers.generation = inputs.generation;
+            layers.cacheKey = inputs.cacheKey;
+            layers.colorTheme = mColorTheme;
+            layers.background = getLayer(LAYER_BACKGROUND, inputs);
+            layers.ambientBackground = getLayer(LAYER_AMBIENT_BACKGROUND, inputs);
+            layers.bezel = getLayer(LAYER_BEZEL, inputs);
+            layers.ambientBezel = getLayer(LAYER_AMBIENT_BEZEL, inputs);
+            prerenderDayDate();
+            return layers;
         }
 
         /**
-         * Handle updating the time periodically in interactive mode.
+         * Empties the label atlases and the dial textures, which are
+         * keyed by what they draw and so outlast layer rebuilds; only a
+         * new surface size leaves them nothing to serve.  Main thread.
          */
-        private void handleUpdateTimeMessage() {
-            invalidate();
-            if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = mUpdateRateMs - (timeMs % mUpdateRateMs);
-                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+        private void clearLayerCaches() {
+            mLabelAtlas.clear();
+            mAmbientLabelAtlas.clear();
+            if (mRenderLayersInBackground) {
+                /* the layer thread may still be drawing with them */
+                dropDialTextureCache();
+            } else {
+                clearDialTextureCache();
             }
         }
 
-        // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+        private void startLayerThread() {
+            mLayerThread = new HandlerThread("PilotWatchFaceLayers", Process.THREAD_PRIORITY_DISPLAY);
+            mLayerThread.start();
+            mLayerHandler = new Handler(mLayerThread.getLooper());
+        }
 
-        private void initColors() {
-            mBackgroundColor = ContextCompat.getColor(getApplicationContext(), R.color.background_color);
-            mHourHandColor = ContextCompat.getColor(getApplicationContext(), R.color.hour_hand_color);
-            mMinuteHandColor = ContextCompat.getColor(getApplicationContext(), R.color.minute_hand_color);
-            mSecondHandColor = ContextCompat.getColor(getApplicationContext(), R.color.second_hand_color);
-            mTickColor = ContextCompat.getColor(getApplicationContext(), R.color.tick_color);
-        }
-
-        private void initMainDial() {
-            mMainDial = new WatchDial(this);
-            mMainDial.diameterVmin = 1f;
-            mMainDial.centerXVmin = 0.0f;
-            mMainDial.centerYVmin = 0.0f;
-            mMainDial.nonAmbientOnly = false;
-            mMainDial.circle1Diameter = 1.00f;
-            mMainDial.circle2Diameter = 0.97f;
-            mMainDial.circleStrokeWidthVmin = 0.0025f;
-
-//            mMainDial.backgroundStyle = WatchDialBackgroundStyle.RADIAL_RIDGED;
-
-            WatchDialTickSet tickSet1 = new WatchDialTickSet(mMainDial);
-            tickSet1.numberOfTicks = 12;
-            tickSet1.outerDiameter = 0.97f;
-            tickSet1.innerDiameter = 0.91f;
-            tickSet1.strokeWidthVmin = 0.02f;
-            tickSet1.nonAmbientOnly = false;
-            WatchDialTickSet tickSet2 = new WatchDialTickSet(mMainDial);
-            tickSet2.numberOfTicks = 60;
-            tickSet2.outerDiameter = 1.00f;
-            tickSet2.innerDiameter = 0.94f;
-            tickSet2.strokeWidthVmin = 0.005f;
-            tickSet2.nonAmbientOnly = false;
-            WatchDialTickSet tickSet3 = new WatchDialTickSet(mMainDial);
-            tickSet3.numberOfTicks = 300;
-            tickSet3.outerDiameter = 1.00f;
-            tickSet3.innerDiameter = 0.97f;
-            tickSet3.strokeWidthVmin = 0.0025f;
-            tickSet3.nonAmbientOnly = false;
-            tickSet3.excludeTicks(tickSet2);
-
-            mMainDial.addTickSet(tickSet1);
-            mMainDial.addTickSet(tickSet2);
-            mMainDial.addTickSet(tickSet3);
-        }
-
-        /* chronograph tenths of a second */
-        private void initTopSubDial() {
-            mTopSubDial = new WatchDial(this);
-            mTopSubDial.diameterVmin = 0.35f;
-            mTopSubDial.centerXVmin = 0f;
-            mTopSubDial.centerYVmin = -0.26f;
-            mTopSubDial.nonAmbientOnly = true;
-            mTopSubDial.circle1Diameter = 1f;
-            mTopSubDial.circle2Diameter = 0.90f;
-            mTopSubDial.circleStrokeWidthVmin = 0.0025f;
-            mTopSubDial.backgroundColor = mBackgroundColor;
-            mTopSubDial.backgroundBrightness = -0.2f;
-            mTopSubDial.addText(0.0f, "0");
-            mTopSubDial.addText(0.2f, "2");
-            mTopSubDial.addText(0.4f, "4");
-            mTopSubDial.addText(0.6f, "6");
-            mTopSubDial.addText(0.8f, "8");
-
-//            mTopSubDial.borderStyle = WatchDialBorderStyle.INSET;
-//            mTopSubDial.borderWidthVmin = 0.02f;
-//            mTopSubDial.backgroundStyle = WatchDialBackgroundStyle.RADIAL_RIDGED;
-
-            WatchDialTickSet tickSet1 = new WatchDialTickSet(mTopSubDial);
-            tickSet1.numberOfTicks = 20;
-            tickSet1.outerDiameter = 1f;
-            tickSet1.innerDiameter = 0.80f;
-            tickSet1.strokeWidthVmin = 0.005f;
-            tickSet1.nonAmbientOnly = false;
-            WatchDialTickSet tickSet2 = new WatchDialTickSet(mTopSubDial);
-            tickSet2.numberOfTicks = 100;
-            tickSet2.outerDiameter = 1f;
-            tickSet2.innerDiameter = 0.90f;
-            tickSet2.strokeWidthVmin = 0.0025f;
-            tickSet2.nonAmbientOnly = false;
-            tickSet2.excludeTicks(tickSet1);
-
-            mTopSubDial.addTickSet(tickSet1);
-            mTopSubDial.addTickSet(tickSet2);
-        }
-
-        /* chronograph minutes and hours */
-        private void initLeftSubDial() {
-            mLeftSubDial = new WatchDial(this);
-            mLeftSubDial.diameterVmin = 0.35f;
-            mLeftSubDial.centerXVmin = -0.26f;
-            mLeftSubDial.centerYVmin = 0f;
-            mLeftSubDial.nonAmbientOnly = false;
-            mLeftSubDial.circle1Diameter = 1f;
-            mLeftSubDial.circle2Diameter = 0.9f;
-            mLeftSubDial.circleStrokeWidthVmin = 0.0025f;
-            mLeftSubDial.backgroundColor = mBackgroundColor;
-            mLeftSubDial.backgroundBrightness = -0.2f;
-            mLeftSubDial.addText(0.00f, "12");
-            mLeftSubDial.addText(0.25f, "3");
-            mLeftSubDial.addText(0.50f, "6");
-            mLeftSubDial.addText(0.75f, "9");
-
-//            mLeftSubDial.borderStyle = WatchDialBorderStyle.INSET;
-//            mLeftSubDial.borderWidthVmin = 0.02f;
-//            mLeftSubDial.backgroundStyle = WatchDialBackgroundStyle.RADIAL_RIDGED;
-
-            WatchDialTickSet tickSet1 = new WatchDialTickSet(mLeftSubDial);
-            tickSet1.numberOfTicks = 12;
-            tickSet1.outerDiameter = 1f;
-            tickSet1.innerDiameter = 0.80f;
-            tickSet1.strokeWidthVmin = 0.005f;
-            tickSet1.nonAmbientOnly = false;
-            WatchDialTickSet tickSet2 = new WatchDialTickSet(mLeftSubDial);
-            tickSet2.numberOfTicks = 60;
-            tickSet2.outerDiameter = 1f;
-            tickSet2.innerDiameter = 0.90f;
-            tickSet2.strokeWidthVmin = 0.0025f;
-            tickSet2.nonAmbientOnly = false;
-            tickSet2.excludeTicks(tickSet1);
-
-            mLeftSubDial.addTickSet(tickSet1);
-            mLeftSubDial.addTickSet(tickSet2);
-        }
-
-        /* chronograph seconds */
-        private void initBottomSubDial() {
-            mBottomSubDial = new WatchDial(this);
-            mBottomSubDial.diameterVmin = 0.35f;
-            mBottomSubDial.centerXVmin = 0f;
-            mBottomSubDial.centerYVmin = 0.26f;
-            mBottomSubDial.nonAmbientOnly = false;
-            mBottomSubDial.circle1Diameter = 1f;
-            mBottomSubDial.circle2Diameter = 0.9f;
-            mBottomSubDial.circleStrokeWidthVmin = 0.0025f;
-            mBottomSubDial.backgroundColor = mBackgroundColor;
-            mBottomSubDial.backgroundBrightness = -0.2f;
-            mBottomSubDial.addText(0.00f, "60");
-            mBottomSubDial.addText(0.25f, "15");
-            mBottomSubDial.addText(0.50f, "30");
-            mBottomSubDial.addText(0.75f, "45");
-
-//            mBottomSubDial.borderStyle = WatchDialBorderStyle.INSET;
-//            mBottomSubDial.borderWidthVmin = 0.02f;
-//            mBottomSubDial.backgroundStyle = WatchDialBackgroundStyle.RADIAL_RIDGED;
-
-            WatchDialTickSet tickSet1 = new WatchDialTickSet(mBottomSubDial);
-            tickSet1.numberOfTicks = 12;
-            tickSet1.outerDiameter = 1f;
-            tickSet1.innerDiameter = 0.80f;
-            tickSet1.strokeWidthVmin = 0.005f;
-            tickSet1.nonAmbientOnly = false;
-            WatchDialTickSet tickSet2 = new WatchDialTickSet(mBottomSubDial);
-            tickSet2.numberOfTicks = 60;
-            tickSet2.outerDiameter = 1f;
-            tickSet2.innerDiameter = 0.90f;
-            tickSet2.strokeWidthVmin = 0.0025f;
-            tickSet2.nonAmbientOnly = false;
-            tickSet2.excludeTicks(tickSet1);
-
-            mBottomSubDial.addTickSet(tickSet1);
-            mBottomSubDial.addTickSet(tickSet2);
-        }
-
-        /* battery percentage */
-        private void initBatterySubDial() {
-            mBatterySubDial = new WatchDial(this);
-            mBatterySubDial.diameterVmin = 0.6f;
-            mBatterySubDial.centerXVmin = 0.125f;
-            mBatterySubDial.centerYVmin = 0f;
-            mBatterySubDial.nonAmbientOnly = false;
-            mBatterySubDial.startAngle = 150f;
-            mBatterySubDial.endAngle = 30f;
-            mBatterySubDial.excludeTicksFrom = 0.4f;
-            mBatterySubDial.excludeTicksTo = 0.6f;
-            mBatterySubDial.circle1Diameter = 1f;
-            mBatterySubDial.circle2Diameter = 0.92f;
-            mBatterySubDial.circleStrokeWidthVmin = 0.0025f;
-            mBatterySubDial.addText(0.00f, "0%");
-            mBatterySubDial.addText(1.00f, "100%");
-            mBatterySubDial.typeface = mCondensedTypeface;
-
-            // mBatterySubDial.textDirection = WatchDialTextDirection.TEXT_DIRECTION_RADIAL;
-
-            WatchDialTickSet tickSet1 = new WatchDialTickSet(mBatterySubDial);
-            tickSet1.numberOfTicks = 2;
-            tickSet1.outerDiameter = 1f;
-            tickSet1.innerDiameter = 0.80f;
-            tickSet1.strokeWidthVmin = 0.01f;
-            tickSet1.nonAmbientOnly = false;
-            WatchDialTickSet tickSet2 = new WatchDialTickSet(mBatterySubDial);
-            tickSet2.numberOfTicks = 10;
-            tickSet2.outerDiameter = 1f;
-            tickSet2.innerDiameter = 0.86f;
-            tickSet2.strokeWidthVmin = 0.005f;
-            tickSet2.nonAmbientOnly = false;
-            tickSet2.excludeTicks(tickSet1);
-            WatchDialTickSet tickSet3 = new WatchDialTickSet(mBatterySubDial);
-            tickSet3.numberOfTicks = 20;
-            tickSet3.outerDiameter = 1f;
-            tickSet3.innerDiameter = 0.92f;
-            tickSet3.strokeWidthVmin = 0.0025f;
-            tickSet3.nonAmbientOnly = false;
-            tickSet3.excludeTicks(tickSet1);
-            tickSet3.excludeTicks(tickSet2);
-
-            mBatterySubDial.addTickSet(tickSet1);
-            mBatterySubDial.addTickSet(tickSet2);
-            mBatterySubDial.addTickSet(tickSet3);
+        private void stopLayerThread() {
+            mLayerGeneration += 1;
+            mLayerHandler.removeCallbacksAndMessages(null);
+            mUpdateTimeHandler.removeMessages(MSG_LAYERS_READY);
+            mUpdateTimeHandler.removeMessages(MSG_ZOOM_LAYER_READY);
+            /*
+             * The layer thread may be in the middle of a build that
+             * uses the tile pool; shut the pool down from the layer
+             * thread itself, after that build, and let the thread end.
+             */
+            mLayerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mTiledRenderer != null) {
+                        mTiledRenderer.shutdown();
+                        mTiledRenderer = null;
+                    }
+                }
+            });
+            mLayerThread.quitSafely();
         }
 
-        private void initDials() {
-            initMainDial();
-            initTopSubDial();
-            initLeftSubDial();
-            initBottomSubDial();
-            initBatterySubDial();
+        /**
+         * Rebuilds the static layers on the layer thread.  Frames drawn
+         * in the meantime keep the previous layers, or get a minimal
+         * background if there are none.  A layout change while a build
+         * is running bumps the generation, and the stale result is
+         * dropped instead of swapped in.
+         */
+        private void requestBackgroundLayers() {
+            mLayersEvicted = false;
+            mLayerGeneration += 1;
+            final LayerInputs inputs = new LayerInputs(mLayerGeneration, getLayerCacheKey());
+            if (!mRenderLayersInBackground) {
+                setBackgroundLayers(createBackgroundLayers(inputs));
+                return;
+            }
+            mLayerHandler.removeCallbacksAndMessages(null);
+            mLayerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (inputs.generation != mLayerGeneration) {
+                        return;
+                    }
+                    BackgroundLayers layers = createBackgroundLayers(inputs);
+                    mUpdateTimeHandler.obtainMessage(MSG_LAYERS_READY, layers).sendToTarget();
+                }
+            });
         }
 
-        private void initHands() {
-            mChronographSecondFractionHand = new WatchHand(mTopSubDial);
-            mChronographSecondFractionHand.color = mSecondHandColor;
-            mChronographSecondFractionHand.nonAmbientOnly = true;
-            mChronographSecondFractionHand.lengthPctRadius = 0.9f;
-            mChronographSecondFractionHand.lengthBehindPctRadius = 0.225f;
-            mChronographSecondFractionHand.widthVmin = 0.01f;
-            mChronographSecondFractionHand.shadowRadiusPx = 2f;
-
-            mSubdialSecondHand = new WatchHand(mBottomSubDial);
-            mSubdialSecondHand.color = mSecondHandColor;
-            mSubdialSecondHand.nonAmbientOnly = false; /* can draw in ambient in certain situations */
-            mSubdialSecondHand.lengthPctRadius = 0.9f;
-            mSubdialSecondHand.lengthBehindPctRadius = 0.225f;
-            mSubdialSecondHand.widthVmin = 0.01f;
-            mSubdialSecondHand.shadowRadiusPx = 2f;
-
-            mChronographMinuteHand = new WatchHand(mLeftSubDial);
-            mChronographMinuteHand.color = mMinuteHandColor;
-            mChronographMinuteHand.nonAmbientOnly = false; /* can draw in ambient in certain situations */
-            mChronographMinuteHand.hasArrowHead = true;
-            mChronographMinuteHand.lengthPctRadius = 0.8f;
-            mChronographMinuteHand.widthVmin = 0.01f;
-            mChronographMinuteHand.shadowRadiusPx = 3f;
-
-            mChronographHourHand = new WatchHand(mLeftSubDial);
-            mChronographHourHand.color = mHourHandColor;
-            mChronographHourHand.nonAmbientOnly = false; /* can draw in ambient in certain situations */
-            mChronographHourHand.hasArrowHead = true;
-            mChronographHourHand.lengthPctRadius = 0.8f * 0.6f;
-            mChronographHourHand.widthVmin = 0.01f;
-            mChronographHourHand.shadowRadiusPx = 2f;
-
-            mSecondHand = new WatchHand(mMainDial);
-            mSecondHand.color = mSecondHandColor;
-            mSecondHand.nonAmbientOnly = false; /* can draw in ambient in certain situations */
-            mSecondHand.lengthPctRadius = 0.95f;
-            mSecondHand.lengthBehindPctRadius = 0.25f;
-            mSecondHand.widthVmin = 0.01f;
-            mSecondHand.shadowRadiusPx = 6f;
-
-            mMinuteHand = new WatchHand(mMainDial);
-            mMinuteHand.color = mMinuteHandColor;
-            mMinuteHand.nonAmbientOnly = false;
-            mMinuteHand.hasArrowHead = true;
-            mMinuteHand.lengthPctRadius = 0.9f;
-            mMinuteHand.widthVmin = 0.02f;
-            mMinuteHand.shadowRadiusPx = 5f;
-
-            mHourHand = new WatchHand(mMainDial);
-            mHourHand.color = mHourHandColor;
-            mHourHand.nonAmbientOnly = false;
-            mHourHand.hasArrowHead = true;
-            mHourHand.lengthPctRadius = 0.9f * 0.6f;
-            mHourHand.widthVmin = 0.02f;
-            mHourHand.shadowRadiusPx = 4f;
-
-            mBatteryHand = new WatchHand(mBatterySubDial);
-            mBatteryHand.color = mSecondHandColor;
-            mBatteryHand.nonAmbientOnly = false;
-            mBatteryHand.hasArrowHead = true;
-            mBatteryHand.lengthPctRadius = 0.9f;
-            mBatteryHand.lengthBehindPctRadius = 0.225f;
-            mBatteryHand.widthVmin = 0.01f;
-            mBatteryHand.shadowRadiusPx = 2f;
+        /**
+         * Builds the zoomed day/date layer, which is left out of the
+         * other layers, on the layer thread.  A build dropped for a
+         * newer layer generation is requested again when that
+         * generation's layers come in.
+         */
+        private void requestZoomLayer() {
+            if (mBackgroundBitmapZoomDayDate != null || mZoomLayerRequested || !hasBackgroundLayers()) {
+                return;
+            }
+            mZoomLayerRequested = true;
+            final LayerInputs inputs = new LayerInputs(mLayerGeneration, mLayersCacheKey);
+            if (!mRenderLayersInBackground) {
+                handleZoomLayerReadyMessage(inputs.generation, getLayer(LAYER_ZOOM_DAY_DATE, inputs));
+                return;
+            }
+            mLayerHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (inputs.generation != mLayerGeneration) {
+                        return;
+                    }
+                    Bitmap bitmap = getLayer(LAYER_ZOOM_DAY_DATE, inputs);
+                    mUpdateTimeHandler.obtainMessage(MSG_ZOOM_LAYER_READY, inputs.generation, 0, bitmap).sendToTarget();
+                }
+            });
         }
 
-        private void updateDials() {
-            mMainDial.update();
-            mTopSubDial.update();
-            mLeftSubDial.update();
-            mBottomSubDial.update();
-            mBatterySubDial.update();
+        private void handleZoomLayerReadyMessage(int generation, Bitmap bitmap) {
+            if (generation != mLayerGeneration) {
+                return;
+            }
+            mZoomLayerRequested = false;
+            markFrameContentChanged();
+            synchronized (mRenderLock) {
+                mBackgroundBitmapZoomDayDate = bitmap;
+                mBackgroundBitmapZoomDayDate2 = null;
+            }
+            retainSharedEntries();
+            registerLayerMemory();
+            if (!mZoomDayDate && !mZoomAnimating) {
+                scheduleZoomLayerEviction();
+            }
+            requestFrame();
         }
 
-        private void updateHands() {
-            mHourHand.update();
-            mMinuteHand.update();
-            mSecondHand.update();
-            mBatteryHand.update();
-            mChronographHourHand.update();
-            mChronographMinuteHand.update();
-            mSubdialSecondHand.update();
-            mChronographSecondFractionHand.update();
+        private void scheduleZoomLayerEviction() {
+            mUpdateTimeHandler.removeMessages(MSG_EVICT_ZOOM_LAYER);
+            mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_EVICT_ZOOM_LAYER, ZOOM_LAYER_IDLE_MS);
         }
 
-        private void setUpdateRate() {
-            if (mPutChronographSecondsOnSubDial) {
-                // chrono seconds on subdial; time seconds on main dial
-                if (mStopwatchRunning) {
-                    mUpdateRateMs = 50; // for refreshing fraction of second
-                } else {
-                    mUpdateRateMs = 200;
-                }
-            } else {
-                // time seconds on subdial; chrono seconds on main dial
-                if (mStopwatchRunning) {
-                    mUpdateRateMs = 50; // for refreshing fraction of second
-                } else {
-                    mUpdateRateMs = 200;
-                }
+        private void handleEvictZoomLayerMessage() {
+            if (evictZoomLayer()) {
+                Log.d(TAG, "zoomed day/date layer evicted");
             }
         }
 
-        private void drawBezel(Canvas canvas, boolean ambient) {
-            switch (mBezelType) {
-                case BEZEL_SLIDE_RULE:
-                    drawSlideRuleBezel(canvas, ambient);
-                    break;
-                case BEZEL_TACHYMETER:
-                    drawTachymeterBezel(canvas, ambient);
-                    break;
+        private boolean evictZoomLayer() {
+            if (mZoomDayDate || mZoomAnimating || mBackgroundBitmapZoomDayDate == null) {
+                return false;
+            }
+            synchronized (mRenderLock) {
+                mBackgroundBitmapZoomDayDate = null;
+                mBackgroundBitmapZoomDayDate2 = null;
             }
+            retainSharedEntries();
+            registerLayerMemory();
+            return true;
         }
 
-        private float slideRuleDegrees(float x) {
-            return Utility.mod((float) Math.log10(x), 1.0f) * 360f;
+        /**
+         * Registers the caches with the memory manager at their current
+         * sizes, and unregisters those that are gone.  The "2" layers
+         * register themselves as they are built.  Layers and the atlas
+         * held through SharedLayerCache register under their shared
+         * key, so that engines holding the same ones count them once.
+         * Main thread only.
+         */
+        private void registerLayerMemory() {
+            long layersByteCount = 0;
+            float layersCostMs = 0f;
+            synchronized (mRenderLock) {
+                layersByteCount += getByteCount(mBackgroundBitmap) + getByteCount(mAmbientBackgroundBitmap) +
+                        getByteCount(mBezelBitmap) + getByteCount(mAmbientBezelBitmap);
+                for (int layer = 0; layer < mLayerNames.length; layer += 1) {
+                    if (layer != LAYER_ZOOM_DAY_DATE) {
+                        layersCostMs += mLayerRebuildMs[layer];
+                    }
+                }
+                if (mBackgroundBitmap2 == null) {
+                    mLayerMemoryManager.unregister(this, "background2");
+                }
+                if (mBackgroundBitmapZoomDayDate2 == null) {
+                    mLayerMemoryManager.unregister(this, "zoomDayDate2");
+                }
+                if (mAmbientBackgroundBitmap2 == null) {
+                    mLayerMemoryManager.unregister(this, "ambientBackground2");
+                }
+            }
+            registerMemory("layers", getSharedLayerMemoryKey(mLayersCacheKey, LAYER_BACKGROUND),
+                    layersByteCount, layersCostMs, ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, mLayersEvictor);
+            for (Utility.ColorTheme theme : Utility.ColorTheme.values()) {
+                BackgroundLayers layers = mBakedThemeLayers.get(theme);
+                long bakedByteCount = 0;
+                if (layers != null && layers != mBackgroundLayers) {
+                    bakedByteCount = getByteCount(layers.background) + getByteCount(layers.ambientBackground) +
+                            getByteCount(layers.bezel) + getByteCount(layers.ambientBezel);
+                }
+                registerMemory("bakedThemeLayers." + theme,
+                        layers == null ? null : getSharedLayerMemoryKey(layers.cacheKey, LAYER_BACKGROUND),
+                        bakedByteCount, layersCostMs, 0, new BakedThemeLayersEvictor(theme));
+            }
+            registerMemory("zoomDayDate", getSharedLayerMemoryKey(mLayersCacheKey, LAYER_ZOOM_DAY_DATE),
+                    getByteCount(mBackgroundBitmapZoomDayDate), mLayerRebuildMs[LAYER_ZOOM_DAY_DATE], 0,
+                    mZoomLayerEvictor);
+            registerMemory("labelAtlas", null, mLabelAtlas.getByteCount(),
+                    mLabelAtlas.getSpriteCount() * ATLAS_SPRITE_COST_MS, 0, mLabelAtlasEvictor);
+            registerMemory("ambientLabelAtlas", null, mAmbientLabelAtlas.getByteCount(),
+                    mAmbientLabelAtlas.getSpriteCount() * ATLAS_SPRITE_COST_MS, 0, mAmbientLabelAtlasEvictor);
+            if (mDayDateAtlas != null) {
+                registerMemory("dayDateAtlas", SHARED_DAY_DATE_ATLAS_KEY, mDayDateAtlas.getByteCount(),
+                        mDayDateAtlas.getSpriteCount() * ATLAS_SPRITE_COST_MS, 0, mDayDateAtlasEvictor);
+            }
+            registerMemory("dialTextures", null, getDialTextureByteCount(), mDialTextureCostMs, 0,
+                    mDialTextureEvictor);
         }
 
-        private void drawSlideRuleTick(Canvas canvas, boolean ambient, float x, float y, Paint paint) {
-            float degrees = slideRuleDegrees(x);
-            canvas.save();
-            canvas.rotate(degrees, mSurfaceCenterXPx, mSurfaceCenterYPx);
-
-            float yc = mSurfaceCenterYPx - mDialRadiusPx * (1 + mSlideRuleDiameter) / 2;
-            float y1 = yc + mDialRadiusPx * y * (1 - mSlideRuleDiameter) / 2;
-            float y2 = yc - mDialRadiusPx * y * (1 - mSlideRuleDiameter) / 2;
-
-            canvas.drawLine(
-                    mSurfaceCenterXPx, y1,
-                    mSurfaceCenterXPx, y2,
-                    paint);
-            canvas.restore();
+        private void registerMemory(String name, String sharedKey, long byteCount, float rebuildCostMs,
+                                    int minTrimLevel, LayerMemoryManager.Evictor evictor) {
+            if (byteCount == 0) {
+                mLayerMemoryManager.unregister(this, name);
+            } else {
+                mLayerMemoryManager.register(this, name, sharedKey, byteCount, rebuildCostMs, minTrimLevel, evictor);
+            }
         }
 
-        private float tachymeterDegrees(float x) {
-            /* if x is 60, return [360] 0 */
-            /* if x is 240, return 90 */
-            /* if x is 120, return 180 */
-
-            return Utility.mod(60f / x, 1) * 360f;
+        /**
+         * The key the memory manager knows a shared layer by (the
+         * background standing for its whole set), or null if layers
+         * aren't shared.
+         */
+        private String getSharedLayerMemoryKey(String cacheKey, int layer) {
+            if (!mUseSharedLayerCache || cacheKey == null) {
+                return null;
+            }
+            return getLayerKey(cacheKey, layer);
         }
 
-        private void drawTachymeterTick(Canvas canvas, boolean ambient, float x, float y, Paint paint) {
-            float degrees = tachymeterDegrees(x);
-            canvas.save();
-            canvas.rotate(degrees, mSurfaceCenterXPx, mSurfaceCenterYPx);
-
-            float y1 = mSurfaceCenterYPx - mDialRadiusPx * mTachymeterDiameter;
-            float y2 = y1 - mDialRadiusPx * y * (1 - mTachymeterDiameter);
-
-            canvas.drawLine(
-                    mSurfaceCenterXPx, y1,
-                    mSurfaceCenterXPx, y2,
-                    paint);
-            canvas.restore();
+        private long getByteCount(Bitmap bitmap) {
+            return bitmap == null ? 0 : bitmap.getAllocationByteCount();
         }
 
-        private void drawSlideRuleBezel(Canvas canvas, boolean ambient) {
-            Paint paint = new Paint();
-            paint.setAntiAlias(true);
-            paint.setColor(ambient ? Color.WHITE : mTickColor);
-            paint.setStrokeWidth(MINIMUM_STROKE_WIDTH_PX);
-            paint.setStyle(Paint.Style.STROKE);
-            paint.setStrokeCap(Paint.Cap.BUTT);
+        /* the static layers, only while hidden; rebuilt by rebuildEvictedLayers */
+        private final LayerMemoryManager.Evictor mLayersEvictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                if (isVisible() || !hasBackgroundLayers()) {
+                    return false;
+                }
+                discardBackgroundLayers();
+                mLayersEvicted = true;
+                return true;
+            }
+        };
 
-            canvas.drawCircle(mSurfaceCenterXPx, mSurfaceCenterYPx, mDialRadiusPx, paint);
-            canvas.drawCircle(mSurfaceCenterXPx, mSurfaceCenterYPx, mDialRadiusPx * (1 + mSlideRuleDiameter) / 2, paint);
-            canvas.drawCircle(mSurfaceCenterXPx, mSurfaceCenterYPx, mDialRadiusPx * mSlideRuleDiameter, paint);
+        /* one baked theme's layers, unless they're the ones in use */
+        private class BakedThemeLayersEvictor implements LayerMemoryManager.Evictor {
+            private final Utility.ColorTheme mTheme;
 
-            int i;
-            for (i = 1000; i < 2500; i += 100) {
-                drawSlideRuleTick(canvas, ambient, i, 0.5f, paint);
-            }
-            for (i = 1000; i < 2500; i += 20) {
-                drawSlideRuleTick(canvas, ambient, i, 0.25f, paint);
-            }
-            for (i = 2500; i < 5000; i += 250) {
-                drawSlideRuleTick(canvas, ambient, i, 0.5f, paint);
-            }
-            for (i = 2500; i < 5000; i += 50) {
-                drawSlideRuleTick(canvas, ambient, i, 0.25f, paint);
+            BakedThemeLayersEvictor(Utility.ColorTheme theme) {
+                mTheme = theme;
             }
-            for (i = 5000; i < 10000; i += 500) {
-                drawSlideRuleTick(canvas, ambient, i, 0.5f, paint);
-            }
-            for (i = 5000; i < 10000; i += 100) {
-                drawSlideRuleTick(canvas, ambient, i, 0.25f, paint);
-            }
-
-            Paint textPaint = new Paint();
-            textPaint.setAntiAlias(true);
-            textPaint.setColor(ambient ? Color.WHITE : mTickColor);
-            textPaint.setTextAlign(Paint.Align.CENTER);
-            textPaint.setTextSize(getClockDialTextSizePx(mSlideRuleTextSizeVmin));
-            textPaint.setStyle(Paint.Style.FILL);
-            textPaint.setTypeface(mTypeface);
 
-            int[] slideRulePoints = {10, 11, 12, 15, 18, 20, 25, 30, 35, 40, 45, 50, 55, 60, 70, 80, 90};
-            for (int point : slideRulePoints) {
-                drawSlideRuleText(canvas, ambient, point, Integer.toString(point), Utility.SlideRuleDial.SLIDE_RULE_DIAL_INNER, textPaint);
-                drawSlideRuleText(canvas, ambient, point, Integer.toString(point), Utility.SlideRuleDial.SLIDE_RULE_DIAL_OUTER, textPaint);
+            @Override
+            public boolean evict() {
+                BackgroundLayers layers = mBakedThemeLayers.get(mTheme);
+                if (layers == mBackgroundLayers) {
+                    return false;
+                }
+                mBakedThemeLayers.remove(mTheme);
+                retainSharedEntries();
+                return true;
             }
         }
 
-        private void drawSlideRuleText(Canvas canvas, boolean ambient,
-                                       float x, String text,
-                                       Utility.SlideRuleDial slideRuleDial,
-                                       Paint textPaint) {
-            float degrees = slideRuleDegrees(x);
-            float radiusPx = mDialRadiusPx;
-            switch (slideRuleDial) {
-                case SLIDE_RULE_DIAL_INNER:
-                    radiusPx = mDialRadiusPx * 0.85f;
-                    break;
-                case SLIDE_RULE_DIAL_OUTER:
-                    radiusPx = mDialRadiusPx * 0.95f;
-                    break;
+        private final LayerMemoryManager.Evictor mZoomLayerEvictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                return evictZoomLayer();
             }
-            drawRoundDialText(canvas, ambient, degrees, text, radiusPx, textPaint);
-        }
+        };
 
-        private void drawTachymeterText(Canvas canvas, boolean ambient, float x, String text, Paint textPaint) {
-            float degrees = tachymeterDegrees(x);
-            drawRoundDialText(canvas, ambient, degrees, text, mDialRadiusPx * 0.95f, textPaint);
-        }
+        private final LayerMemoryManager.Evictor mLabelAtlasEvictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                mLabelAtlas.clear();
+                return true;
+            }
+        };
 
-        private void drawRoundDialText(Canvas canvas, boolean ambient,
-                                       float degrees, String text, float radiusPx,
-                                       Paint textPaint) {
-            canvas.save();
-            canvas.rotate(degrees, mSurfaceCenterXPx, mSurfaceCenterYPx);
-            float textXPx = mSurfaceCenterXPx;
-            float textYPx = mSurfaceCenterYPx - radiusPx;
-            if (degrees >= (90f + TEXT_ROTATION_FUDGE_FACTOR) &&
-                    degrees <= (270f - TEXT_ROTATION_FUDGE_FACTOR)) {
-                canvas.rotate(180f, textXPx, textYPx);
-            }
-            drawVerticallyCenteredText(canvas, text, textXPx, textYPx, textPaint);
-            canvas.restore();
-        }
+        private final LayerMemoryManager.Evictor mAmbientLabelAtlasEvictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                mAmbientLabelAtlas.clear();
+                return true;
+            }
+        };
 
-        private void drawTachymeterBezel(Canvas canvas, boolean ambient) {
-            Paint paint = new Paint();
-            paint.setAntiAlias(true);
-            paint.setColor(ambient ? Color.WHITE : mTickColor);
-            paint.setStrokeWidth(MINIMUM_STROKE_WIDTH_PX);
-            paint.setStyle(Paint.Style.STROKE);
-            paint.setStrokeCap(Paint.Cap.BUTT);
+        /*
+         * The atlas is shared, so this engine only lets go of it; it is
+         * freed once no engine holds it, and taken again, or rebuilt,
+         * by rebuildEvictedLayers.
+         */
+        private final LayerMemoryManager.Evictor mDayDateAtlasEvictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                synchronized (mRenderLock) {
+                    mDayDateAtlas = null;
+                }
+                retainSharedEntries();
+                return true;
+            }
+        };
 
-            canvas.drawCircle(mSurfaceCenterXPx, mSurfaceCenterYPx, mDialRadiusPx, paint);
-            canvas.drawCircle(mSurfaceCenterXPx, mSurfaceCenterYPx, mDialRadiusPx * mTachymeterDiameter, paint);
+        private final LayerMemoryManager.Evictor mDialTextureEvictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                dropDialTextureCache();
+                return true;
+            }
+        };
 
-            if (false) {
-                int i;
-                for (i = 60; i <= 80; i += 1) {
-                    drawTachymeterTick(canvas, ambient, i, 0.5f, paint);
+        private final LayerMemoryManager.Evictor mBackgroundBitmap2Evictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                synchronized (mRenderLock) {
+                    mBackgroundBitmap2 = null;
                 }
-                for (i = 80; i <= 120; i += 1) {
-                    drawTachymeterTick(canvas, ambient, i, 0.5f, paint);
+                return true;
+            }
+        };
+
+        private final LayerMemoryManager.Evictor mZoomDayDate2Evictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                synchronized (mRenderLock) {
+                    mBackgroundBitmapZoomDayDate2 = null;
                 }
-                drawTachymeterTick(canvas, ambient, 135, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 150, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 175, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 200, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 250, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 300, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 400, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 500, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 600, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 750, 0.5f, paint);
-                drawTachymeterTick(canvas, ambient, 1000, 0.5f, paint);
+                return true;
             }
+        };
 
-            Paint textPaint = new Paint();
-            textPaint.setAntiAlias(true);
-            textPaint.setColor(ambient ? Color.WHITE : mTickColor);
-            textPaint.setTextAlign(Paint.Align.CENTER);
-            textPaint.setTextSize(getClockDialTextSizePx(mSlideRuleTextSizeVmin));
-            textPaint.setStyle(Paint.Style.FILL);
-            textPaint.setTypeface(mTypeface);
+        private final LayerMemoryManager.Evictor mAmbientBackgroundBitmap2Evictor = new LayerMemoryManager.Evictor() {
+            @Override
+            public boolean evict() {
+                synchronized (mRenderLock) {
+                    mAmbientBackgroundBitmap2 = null;
+                }
+                return true;
+            }
+        };
 
-            int[] points = {
-                    60, 62, 64, 66, 68, 70, 72, 75, 80, 85, 90, 100, 110, 120,
-                    135, 150, 175, 200, 240, 300, 400, 600, 1000
-            };
+        /**
+         * Requests the static layers again if the memory manager took
+         * them while the face was hidden.
+         */
+        private void rebuildEvictedLayers() {
+            if (mDayDateAtlas == null) {
+                initDayDateAtlas();
+                registerLayerMemory();
+            }
+            if (mLayersEvicted && mSurfaceWidthPx != 0) {
+                mLayersEvicted = false;
+                requestBackgroundLayers();
+            }
+        }
 
-            for (int point : points) {
-                drawTachymeterText(canvas, ambient, point, Integer.toString(point), textPaint);
+        private void handleLayersReadyMessage(BackgroundLayers layers) {
+            if (layers.generation != mLayerGeneration) {
+                return;
+            }
+            setBackgroundLayers(layers);
+            if (mBakeColorTheme) {
+                mBakedThemeLayers.put(layers.colorTheme, layers);
+                registerLayerMemory();
             }
+            requestFrame();
         }
 
         /**
-         * Draws clock dial without "Pilot Watch 3000" text, version number text, or day/date.
+         * Swaps in a complete set of layers at once.  Main thread only.
          */
-        private void initBackgroundBitmap() {
-            mBackgroundBitmap = Bitmap.createBitmap(mSurfaceWidthPx, mSurfaceHeightPx, Bitmap.Config.ARGB_8888);
-            Canvas backgroundCanvas = new Canvas(mBackgroundBitmap);
-            drawClockDial(backgroundCanvas, false);
-            mMainDial.draw(backgroundCanvas, false);
-            mTopSubDial.draw(backgroundCanvas, false);
-            mLeftSubDial.draw(backgroundCanvas, false);
-            mBottomSubDial.draw(backgroundCanvas, false);
-            mBatterySubDial.draw(backgroundCanvas, false);
-            drawBezel(backgroundCanvas, false);
-            mBackgroundBitmap2 = null;
+        private void setBackgroundLayers(BackgroundLayers layers) {
+            markFrameContentChanged();
+            synchronized (mRenderLock) {
+                mBackgroundBitmap = layers.background;
+                mBackgroundBitmapZoomDayDate = null;
+                mAmbientBackgroundBitmap = layers.ambientBackground;
+                mBezelBitmap = layers.bezel;
+                mAmbientBezelBitmap = layers.ambientBezel;
+                mBackgroundBitmap2 = null;
+                mBackgroundBitmapZoomDayDate2 = null;
+                mAmbientBackgroundBitmap2 = null;
+            }
+            mBackgroundLayers = layers;
+            mLayersCacheKey = layers.cacheKey;
+            mZoomLayerRequested = false;
+            retainSharedEntries();
+            registerLayerMemory();
+            if (mZoomDayDate || mZoomAnimating) {
+                requestZoomLayer();
+            }
         }
 
-        /**
-         * Draws zoomed-in clock dial without day/date.
-         */
-        private void initBackgroundBitmapZoomDayDate() {
-            mBackgroundBitmapZoomDayDate = Bitmap.createBitmap(mSurfaceWidthPx, mSurfaceHeightPx, Bitmap.Config.ARGB_8888);
-            Canvas backgroundCanvas = new Canvas(mBackgroundBitmapZoomDayDate);
-            zoomCanvas(backgroundCanvas, mDayDateLeftPx, mDayDateRightPx, mDayDateTopPx, mDayDateBottomPx);
-            drawClockDial(backgroundCanvas, false);
-            mMainDial.draw(backgroundCanvas, false);
-            mTopSubDial.draw(backgroundCanvas, false);
-            mLeftSubDial.draw(backgroundCanvas, false);
-            mBottomSubDial.draw(backgroundCanvas, false);
-            mBatterySubDial.draw(backgroundCanvas, false);
-            drawBezel(backgroundCanvas, false);
-            mBackgroundBitmapZoomDayDate2 = null;
+        private void discardBackgroundLayers() {
+            mLayerGeneration += 1;
+            mBakedThemeLayers.clear();
+            setBackgroundLayers(new BackgroundLayers());
         }
 
-        /**
-         * Draws clock dial without "Pilot Watch 3000" text, version number text, or day/date.
-         */
-        private void initAmbientBackgroundBitmap() {
-            mAmbientBackgroundBitmap = Bitmap.createBitmap(mSurfaceWidthPx, mSurfaceHeightPx, Bitmap.Config.ARGB_8888);
-            Canvas backgroundCanvas = new Canvas(mAmbientBackgroundBitmap);
-            drawClockDial(backgroundCanvas, true);
-            mMainDial.draw(backgroundCanvas, true);
-//                mTopSubDial.draw(backgroundCanvas, true);
-//                mLeftSubDial.draw(backgroundCanvas, true);
-//                mBottomSubDial.draw(backgroundCanvas, true);
-            mBatterySubDial.draw(backgroundCanvas, true);
-            drawBezel(backgroundCanvas, true);
-            mAmbientBackgroundBitmap2 = null;
+        private boolean hasBackgroundLayers() {
+            return mBackgroundBitmap != null;
         }
 
         /**
-         * adds "Pilot Watch 3000" or version number text, and day/date.
+         * Stands in for the background layers until they are built.
          */
-        private void initBackgroundBitmap2() {
-            if (mBackgroundBitmap2 != null) {
-                return;
-            }
-            mBackgroundBitmap2 = Bitmap.createBitmap(mBackgroundBitmap);
-            Canvas backgroundCanvas = new Canvas(mBackgroundBitmap2);
-            drawDate(backgroundCanvas, false);
-            drawWatchFaceName(backgroundCanvas, false);
+        private void drawMinimalBackground(Canvas canvas, boolean ambient) {
+            mLayerPaint.setColor(ambient ? Color.BLACK : mBackgroundColor);
+            mLayerPaint.setColorFilter(getLayerColorFilter(ambient));
+            canvas.drawPaint(mLayerPaint);
         }
 
-        /**
-         * adds day/date.
-         */
-        private void initBackgroundBitmapZoomDayDate2() {
-            if (mBackgroundBitmapZoomDayDate2 != null) {
+        private void logTimeToFirstFrame() {
+            if (mSurfaceChangedTimeNs < 0) {
                 return;
             }
-            mBackgroundBitmapZoomDayDate2 = Bitmap.createBitmap(mBackgroundBitmapZoomDayDate);
-            Canvas backgroundCanvas = new Canvas(mBackgroundBitmapZoomDayDate2);
-            zoomCanvas(backgroundCanvas, mDayDateLeftPx, mDayDateRightPx, mDayDateTopPx, mDayDateBottomPx);
-            drawDate(backgroundCanvas, false);
+            long elapsedNs = SystemClock.elapsedRealtimeNanos() - mSurfaceChangedTimeNs;
+            if (!mFirstFrameLogged) {
+                Log.d(TAG, String.format(Locale.US, "time to first frame (%s layers): %.2f ms",
+                        mRenderLayersInBackground ? "background" : "synchronous",
+                        elapsedNs / 1e6));
+                mFirstFrameLogged = true;
+            }
+            if (hasBackgroundLayers()) {
+                Log.d(TAG, String.format(Locale.US, "time to first full frame: %.2f ms", elapsedNs / 1e6));
+                mSurfaceChangedTimeNs = -1;
+            }
         }
 
         /**
-         * adds "Pilot Watch 3000" or version number text, and day/date.
+         * Measures the day and date windows.  Runs on the main thread
+         * at layout time, so the layer thread only reads the results.
          */
-        private void initAmbientBackgroundBitmap2() {
-            if (mAmbientBackgroundBitmap2 != null) {
-                return;
-            }
-            mAmbientBackgroundBitmap2 = Bitmap.createBitmap(mAmbientBackgroundBitmap);
-            Canvas backgroundCanvas = new Canvas(mAmbientBackgroundBitmap2);
-            drawDate(backgroundCanvas, true);
-            drawWatchFaceName(backgroundCanvas, true);
-        }
-
-        private void drawClockDial(Canvas canvas, boolean ambient) {
-            canvas.drawColor(Color.WHITE);
-
-            int widthPx = canvas.getWidth();
-            int heightPx = canvas.getHeight();
-
+        private void updateDayDateWindows() {
             Rect dayBounds = new Rect();
             Rect dateBounds = new Rect();
 
@@ -2058,15 +3850,17 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             }
 
             mDayTextPaint.setTypeface(mTypeface);
+            HashMap<String, Integer> dayFontStretchMap = new HashMap<String, Integer>();
             for (String dayText : dayMap.keySet()) {
                 dayText = dayText.toUpperCase();
                 mDayTextPaint.getTextBounds(dayText, 0, dayText.length(), dayBounds);
                 if (dayBounds.width() <= maxDayBounds.width()) {
-                    mDayFontStretchMap.put(dayText, 0);
+                    dayFontStretchMap.put(dayText, 0);
                 } else {
-                    mDayFontStretchMap.put(dayText, -1);
+                    dayFontStretchMap.put(dayText, -1);
                 }
             }
+            mDayFontStretchMap = dayFontStretchMap;
 
             for (int date = 1; date <= 31; date += 1) {
                 String dateText = Integer.toString(date);
@@ -2094,20 +3888,60 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             mDayDateBottomPx = mSurfaceCenterYPx + mDayDateTextSizePx * 0.5f;
             mDayDateLeftPx = dayWindowLeftXPx;
             mDayDateRightPx = dateWindowRightXPx;
+            mDayWindowRightPx = dayWindowRightXPx;
+            mDateWindowLeftPx = dateWindowLeftXPx;
+
+            setZoomMatrix(mDayDateZoomMatrix, mDayDateLeftPx, mDayDateRightPx, mDayDateTopPx, mDayDateBottomPx);
+            float zoomScale = mDayDateZoomMatrix.mapRadius(1f);
+            mDayDateZoomMatrix.invert(mDayDateUnzoomMatrix);
+            float[] values = new float[9];
+            mDayDateZoomMatrix.getValues(values);
+            mDayDateZoomScale = values[Matrix.MSCALE_X];
+            if (mDayDateZoomScale != 1f) {
+                /* the point x = scale * x + translation */
+                mDayDateZoomFixedXPx = values[Matrix.MTRANS_X] / (1f - mDayDateZoomScale);
+                mDayDateZoomFixedYPx = values[Matrix.MTRANS_Y] / (1f - mDayDateZoomScale);
+            }
+            float marginPx = getZoomMarginPx();
+            RectF zoomLayerBounds = new RectF(mDayDateLeftPx - marginPx, mDayDateTopPx - marginPx,
+                    mDayDateRightPx + marginPx, mDayDateBottomPx + marginPx);
+            mDayDateZoomMatrix.mapRect(zoomLayerBounds);
+            zoomLayerBounds.roundOut(mZoomLayerBounds);
+            if (!mZoomLayerBounds.intersect(0, 0, mSurfaceWidthPx, mSurfaceHeightPx)) {
+                mZoomLayerBounds.setEmpty();
+            }
+            mDayDateTextPaints[DAY_DATE_NORMAL] = createDayDateTextPaint(mTypeface, 1f);
+            mDayDateTextPaints[DAY_DATE_ZOOMED] = createDayDateTextPaint(mTypeface, zoomScale);
+            mCondensedDayDateTextPaints[DAY_DATE_NORMAL] = createDayDateTextPaint(mCondensedTypeface, 1f);
+            mCondensedDayDateTextPaints[DAY_DATE_ZOOMED] = createDayDateTextPaint(mCondensedTypeface, zoomScale);
+        }
+
+        private Paint createDayDateTextPaint(Typeface typeface, float scale) {
+            Paint paint = new Paint();
+            paint.setAntiAlias(true);
+            paint.setTextSize(mDayDateTextSizePx * scale);
+            paint.setColor(Color.BLACK);
+            paint.setTypeface(typeface);
+            paint.setTextAlign(Paint.Align.CENTER);
+            return paint;
+        }
+
+        private void drawClockDial(Canvas canvas, LayerInputs inputs, boolean ambient) {
+            canvas.drawColor(Color.WHITE);
 
             Path dialPath = new Path();
-            dialPath.addRect(0, 0, widthPx, heightPx, Path.Direction.CW);
+            dialPath.addRect(0, 0, inputs.surfaceWidthPx, inputs.surfaceHeightPx, Path.Direction.CW);
 
             Path dateWindowPath = new Path();
             dateWindowPath.addRect(
-                    dateWindowLeftXPx, mDayDateTopPx,
-                    dateWindowRightXPx, mDayDateBottomPx, Path.Direction.CW
+                    inputs.dateWindowLeftPx, inputs.dayDateTopPx,
+                    inputs.dayDateRightPx, inputs.dayDateBottomPx, Path.Direction.CW
             );
 
             Path dayWindowPath = new Path();
             dayWindowPath.addRect(
-                    dayWindowLeftXPx, mDayDateTopPx,
-                    dayWindowRightXPx, mDayDateBottomPx, Path.Direction.CW
+                    inputs.dayDateLeftPx, inputs.dayDateTopPx,
+                    inputs.dayWindowRightPx, inputs.dayDateBottomPx, Path.Direction.CW
             );
 
             dialPath.op(dateWindowPath, Path.Op.DIFFERENCE);
@@ -2170,7 +4004,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                 xPx = mSurfaceCenterXPx + dx;
             }
             float yPx = mSurfaceCenterYPx - mClockDialDiameterPx * mWatchFaceNameTopOffsetVmin -
-                    (1f - TEXT_CAP_HEIGHT / 2) * lineSpacingPx + dy;
+                    (1f - FaceStyle.TEXT_CAP_HEIGHT / 2) * lineSpacingPx + dy;
             canvas.drawText("PILOT", xPx, yPx, textPaint);
             yPx += lineSpacingPx;
             canvas.drawText("WATCH", xPx, yPx, textPaint);
@@ -2194,7 +4028,7 @@ public class PilotWatchFace extends CanvasWatchFaceService {
                     xPx = mSurfaceCenterXPx + dx;
                 }
                 float yPx = mSurfaceCenterYPx - mClockDialDiameterPx * mWatchFaceNameTopOffsetVmin +
-                        (TEXT_CAP_HEIGHT / 2) * lineSpacingPx + dy;
+                        (FaceStyle.TEXT_CAP_HEIGHT / 2) * lineSpacingPx + dy;
                 canvas.drawText(pInfo.versionName, xPx, yPx, textPaint);
                 yPx += lineSpacingPx;
                 canvas.drawText("(" + pInfo.versionCode + ")", xPx, yPx, textPaint);
@@ -2258,142 +4092,93 @@ public class PilotWatchFace extends CanvasWatchFaceService {
             return dp * mPixelDensity;
         }
 
-        private void drawBackground(Canvas canvas) {
-            if (mAmbient) {
-                initAmbientBackgroundBitmap2();
-                canvas.drawBitmap(mAmbientBackgroundBitmap2, 0, 0, null);
-            } else if (mZoomDayDate) {
-                initBackgroundBitmapZoomDayDate2();
-                canvas.drawBitmap(mBackgroundBitmapZoomDayDate2, 0, 0, null);
+        private void drawBackground(Canvas canvas, FrameState state) {
+            mLayerPaint.setColorFilter(getLayerColorFilter(state.ambient));
+            if (!hasBackgroundLayers()) {
+                drawMinimalBackground(canvas, state.ambient);
+            } else if (state.ambient) {
+                canvas.drawBitmap(initAmbientBackgroundBitmap2(state), 0, 0, mLayerPaint);
+            } else if (state.zoomProgress > 0f) {
+                drawZoomingBackground(canvas, state);
             } else {
-                initBackgroundBitmap2();
-                canvas.drawBitmap(mBackgroundBitmap2, 0, 0, null);
+                canvas.drawBitmap(initBackgroundBitmap2(state), 0, 0, mLayerPaint);
             }
         }
 
-        private void drawDate(Canvas canvas) {
-            drawDate(canvas, mAmbient);
+        /**
+         * Draws the background through this frame's zoom: the normal
+         * layer scaled up, and over it, once built, the zoomed strip
+         * scaled down to where it will end up.  The normal layer is
+         * only filtered once the zoom comes to rest; while animating
+         * it is soft at any scale past 1 anyway.
+         */
+        private void drawZoomingBackground(Canvas canvas, FrameState state) {
+            Bitmap background = initBackgroundBitmap2(state);
+            mZoomLayerPaint.setColorFilter(mLayerPaint.getColorFilter());
+            canvas.save();
+            canvas.concat(mZoomAnimationMatrix);
+            canvas.drawBitmap(background, 0, 0, state.zoomProgress >= 1f ? mZoomLayerPaint : mLayerPaint);
+            if (mBackgroundBitmapZoomDayDate != null) {
+                Bitmap zoomDayDate = initBackgroundBitmapZoomDayDate2(state);
+                canvas.concat(mDayDateUnzoomMatrix);
+                canvas.drawBitmap(zoomDayDate, mZoomLayerBounds.left, mZoomLayerBounds.top, mZoomLayerPaint);
+            }
+            canvas.restore();
         }
 
-        private void drawDate(Canvas canvas, boolean ambient) {
-            int day = mCalendar.get(Calendar.DAY_OF_WEEK);
-            int date = mCalendar.get(Calendar.DAY_OF_MONTH);
-
-            String dayText = mCalendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.SHORT, Locale.getDefault());
-            dayText = dayText.toUpperCase();
-            String dateText = Integer.toString(date);
-
-            float baselineY = mSurfaceCenterXPx + mDayDateTextSizePx * TEXT_CAP_HEIGHT / 2;
-
+        private boolean isDayCondensed(String dayText) {
             Integer fontStretch = mDayFontStretchMap.get(dayText);
-            if (fontStretch == null) {
-                fontStretch = -1;
-            }
-            if (fontStretch <= -1) {
-                mDayTextPaint.setTypeface(mCondensedTypeface);
-            } else {
-                mDayTextPaint.setTypeface(mTypeface);
-            }
-            canvas.drawText(dayText, mDayWindowCenterXPx, baselineY, mDayTextPaint);
-            canvas.drawText(dateText, mDateWindowCenterXPx, baselineY, mDateTextPaint);
+            return fontStretch == null || fontStretch <= -1;
         }
 
-        private void drawBattery(Canvas canvas) {
-            float batteryPercentage = -1f;
-            IntentFilter intentFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-            Intent batteryStatus = PilotWatchFace.this.registerReceiver(null, intentFilter);
-            if (batteryStatus != null) {
-                int batteryLevel = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
-                int batteryScale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
-                batteryPercentage = batteryLevel * 100f / batteryScale;
-            }
-
-            /* apperance of levels off the odometer range in case they happen */
-            if (batteryPercentage < 0f) {
-                batteryPercentage = -10f;
-            } else if (batteryPercentage > 100f) {
-                batteryPercentage = 110f;
+        /**
+         * Blits the day and date sprites onto an unzoomed canvas, at
+         * the zoomed scale and position if asked.
+         */
+        private void drawDate(Canvas canvas, FrameState state, int scale) {
+            String dayText = state.dayText;
+            String dateText = Integer.toString(state.dayOfMonth);
+            Paint dayPaint = isDayCondensed(dayText) ? mCondensedDayDateTextPaints[scale] : mDayDateTextPaints[scale];
+
+            float[] centers = {mDayWindowCenterXPx, mSurfaceCenterXPx, mDateWindowCenterXPx, mSurfaceCenterXPx};
+            if (scale == DAY_DATE_ZOOMED) {
+                mDayDateZoomMatrix.mapPoints(centers);
             }
-
-            float batteryRotation = batteryPercentage / 100f;
-            mBatteryHand.draw(canvas, batteryRotation);
+            mDayDatePlacement.setTranslate(centers[0], centers[1]);
+            mDayDateAtlas.drawVerticallyCenteredText(canvas, dayText, mDayDatePlacement, dayPaint);
+            mDayDatePlacement.setTranslate(centers[2], centers[3]);
+            mDayDateAtlas.drawVerticallyCenteredText(canvas, dateText, mDayDatePlacement, mDayDateTextPaints[scale]);
         }
 
-        private void drawTimeAndStopwatch(Canvas canvas) {
-            WatchHand chronographSecondHand = mPutChronographSecondsOnSubDial ? mSubdialSecondHand : mSecondHand;
-            WatchHand wallTimeSecondHand = mPutChronographSecondsOnSubDial ? mSecondHand : mSubdialSecondHand;
-            boolean showChronograph = !mAmbient;
-            boolean showSecondHand = !mAmbient;
-
-            int h = mCalendar.get(Calendar.HOUR);
-            int m = mCalendar.get(Calendar.MINUTE);
-            int s = mCalendar.get(Calendar.SECOND);
-            int ms = mCalendar.get(Calendar.MILLISECOND); /* 0 to 999 */
-
-            /* when stopwatch is running, watch face refreshes more often.
-               However, we still want to only "tick" the time second hand
-               5 times a second. */
-            int watchMs = (ms / 200) * 200;
-
-            final float seconds = (float) s + (float) watchMs / 1000f; /* [0f, 60f) */
-            final float minutes = (float) m + seconds / 60f;      /* [0f, 60f) */
-            final float hours = (float) h + minutes / 60f;        /* [0f, 12f) */
-
-            final float secondHandDegrees = seconds / 60f;
-            final float minuteHandDegrees = minutes / 60f;
-            final float hourHandDegrees = hours / 12f;
-
-            long chronographMs = 0;
-            float chronographSecondFractionHandDegrees = 0;
-            float chronographSecondHandDegrees = 0;
-            float chronographMinuteHandDegrees = 0;
-            float chronographHourHandDegrees = 0;
-
-            if (showChronograph) {
-                chronographMs = getStopwatchTimeMs();
-                chronographMs = (chronographMs / 10) * 10; // resolution 1/100 sec
-                if (mDemoTimeMode) {
-                    chronographMs = 650 + 1000 * (32 + 60 * (10 + (60 * 10)));
-                }
-                chronographSecondFractionHandDegrees = (chronographMs % 1000) / 1000f;
-
-                // whether chronograph seconds are on the subdial or the main dial,
-                // we change them once a second.
-                chronographMs = (long) (chronographMs / 1000) * 1000;
-
-                chronographSecondHandDegrees = (chronographMs % 60000) / 60000f;
-                chronographMinuteHandDegrees = (chronographMs % 3600000) / 3600000f;
-                chronographHourHandDegrees = (chronographMs % 43200000) / 43200000f;
-                mChronographHourHand.draw(canvas, chronographHourHandDegrees);
-                mChronographMinuteHand.draw(canvas, chronographMinuteHandDegrees);
-                mChronographSecondFractionHand.draw(canvas, chronographSecondFractionHandDegrees);
+        /**
+         * Rasterizes every date and day name at both scales.  Runs on
+         * the layer thread, so the first frame of a new day finds its
+         * sprites ready.
+         */
+        private void prerenderDayDate() {
+            LabelAtlas atlas = mDayDateAtlas;
+            if (atlas == null) {
+                return;
             }
-
-            // draw whichever is the subdial seconds first
-            if (mPutChronographSecondsOnSubDial) {
-                if (showChronograph) {
-                    chronographSecondHand.draw(canvas, chronographSecondHandDegrees);
+            Map<String, Integer> dayFontStretchMap = mDayFontStretchMap;
+            for (int scale = DAY_DATE_NORMAL; scale <= DAY_DATE_ZOOMED; scale += 1) {
+                for (int date = 1; date <= 31; date += 1) {
+                    atlas.prerender(Integer.toString(date), mDayDateTextPaints[scale]);
                 }
-            } else {
-                if (showSecondHand) {
-                    wallTimeSecondHand.draw(canvas, secondHandDegrees);
+                for (String dayText : dayFontStretchMap.keySet()) {
+                    Paint dayPaint = isDayCondensed(dayText) ? mCondensedDayDateTextPaints[scale] : mDayDateTextPaints[scale];
+                    atlas.prerender(dayText, dayPaint);
                 }
             }
+        }
 
-            // then draw these hands
-            mHourHand.draw(canvas, hourHandDegrees);
-            mMinuteHand.draw(canvas, minuteHandDegrees);
-
-            // then draw whichever is used for the main dial seconds
-            if (mPutChronographSecondsOnSubDial) {
-                if (showSecondHand) {
-                    wallTimeSecondHand.draw(canvas, secondHandDegrees);
-                }
-            } else {
-                if (showChronograph) {
-                    chronographSecondHand.draw(canvas, chronographSecondHandDegrees);
-                }
-            }
+        /**
+         * Fills in the hand rotations and draws all hands from the
+         * render table.
+         */
+        private void drawHands(Canvas canvas, FrameState state) {
+            FaceDrawing.getHandRotations(state, mPutChronographSecondsOnSubDial, mHandRenderTable.rotations);
+            mHandRenderTable.draw(canvas, state.ambient);
         }
 
         private void stopwatchButton1() {
@@ -2463,6 +4248,6 @@ public class PilotWatchFace extends CanvasWatchFaceService {
     // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
 
     private void drawVerticallyCenteredText(Canvas canvas, String text, float x, float y, Paint paint) {
-        canvas.drawText(text, x, y + paint.getTextSize() * TEXT_CAP_HEIGHT / 2, paint);
+        canvas.drawText(text, x, y + paint.getTextSize() * FaceStyle.TEXT_CAP_HEIGHT / 2, paint);
     }
 }
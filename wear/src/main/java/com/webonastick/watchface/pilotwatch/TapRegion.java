@@ -0,0 +1,48 @@
+package com.webonastick.watchface.pilotwatch;
+
+import com.webonastick.watchface.GestureRecognizer;
+
+/**
+ * Tap regions of the face, and the gestures bound to each.  Kept out
+ * of the engine so the bindings can be checked without a device.
+ */
+final class TapRegion {
+    static final int TOP_SUB_DIAL = 0;
+    static final int LEFT_SUB_DIAL = 1;
+    static final int BOTTOM_SUB_DIAL = 2;
+    static final int BATTERY_SUB_DIAL = 3;
+    static final int WATCH_FACE_NAME = 4;
+    static final int CENTER_OF_DIAL = 5;
+    static final int BEZEL_LEFT = 6;
+    static final int BEZEL_RIGHT = 7;
+    static final int COMPLICATION_LOWER_LEFT = 8;
+    static final int COMPLICATION_UPPER_LEFT = 9;
+    static final int COUNT = 10;
+
+    private TapRegion() {
+    }
+
+    /**
+     * Binds what the engine handles.  The bottom subdial's gestures
+     * are debugging aids, only bound on the emulator.
+     */
+    static void bindGestures(GestureRecognizer recognizer, boolean emulatorMode) {
+        recognizer.bind(TOP_SUB_DIAL, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(LEFT_SUB_DIAL, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(BATTERY_SUB_DIAL, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(WATCH_FACE_NAME, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(CENTER_OF_DIAL, GestureRecognizer.GESTURE_DOUBLE_TAP);
+        recognizer.bind(BEZEL_LEFT, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(BEZEL_LEFT, GestureRecognizer.GESTURE_PRESS_AND_HOLD);
+        recognizer.bind(BEZEL_RIGHT, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(BEZEL_RIGHT, GestureRecognizer.GESTURE_PRESS_AND_HOLD);
+        recognizer.bind(COMPLICATION_LOWER_LEFT, GestureRecognizer.GESTURE_SINGLE_TAP);
+        recognizer.bind(COMPLICATION_UPPER_LEFT, GestureRecognizer.GESTURE_SINGLE_TAP);
+        if (emulatorMode) {
+            recognizer.bind(BOTTOM_SUB_DIAL, GestureRecognizer.GESTURE_SINGLE_TAP);
+            recognizer.bind(BOTTOM_SUB_DIAL, GestureRecognizer.GESTURE_DOUBLE_TAP);
+            recognizer.bind(BOTTOM_SUB_DIAL, GestureRecognizer.GESTURE_TRIPLE_TAP);
+            recognizer.bind(BOTTOM_SUB_DIAL, GestureRecognizer.GESTURE_PRESS_AND_HOLD);
+        }
+    }
+}
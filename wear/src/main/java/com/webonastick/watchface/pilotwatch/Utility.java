@@ -1,8 +1,127 @@
 package com.webonastick.watchface.pilotwatch;
 
+import java.util.HashMap;
+
 public class Utility {
+    /**
+     * x modulo y, with the sign of y.  Values already in range, by far
+     * the common case for angles, are returned without a division.
+     */
     public static float mod(float x, float y) {
-        return x - (float) Math.floor(x / y) * y;
+        if (y > 0f && x >= 0f && x < y) {
+            return x;
+        }
+        float result = x - (float) Math.floor(x / y) * y;
+        /* a hair below a multiple of y rounds up to y itself */
+        return result == y ? 0f : result;
+    }
+
+    /**
+     * Degrees in [0, 360).
+     */
+    public static float normalizeDegrees(float degrees) {
+        return mod(degrees, 360f);
+    }
+
+    // @@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@@
+
+    /*
+     * Fast trig in degrees, in float, from tables with linear
+     * interpolation.  Absolute error is below 1e-6 for sin and cos
+     * within a turn either side of zero, growing beyond that as float
+     * runs out of precision, and below 2e-5 degrees for atan2 (about
+     * one float ulp at 180).  See UtilityTest.
+     */
+
+    private static final int SIN_TABLE_BITS = 12;
+    private static final int SIN_TABLE_SIZE = 1 << SIN_TABLE_BITS;
+    private static final int SIN_TABLE_MASK = SIN_TABLE_SIZE - 1;
+    private static final float SIN_TABLE_STEPS_PER_DEGREE = SIN_TABLE_SIZE / 360f;
+    private static final float[] SIN_TABLE = new float[SIN_TABLE_SIZE + 1];
+
+    private static final int ATAN_TABLE_SIZE = 1024;
+    private static final float[] ATAN_TABLE = new float[ATAN_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= SIN_TABLE_SIZE; i += 1) {
+            SIN_TABLE[i] = (float) Math.sin(2.0 * Math.PI * i / SIN_TABLE_SIZE);
+        }
+        for (int i = 0; i <= ATAN_TABLE_SIZE; i += 1) {
+            ATAN_TABLE[i] = (float) Math.toDegrees(Math.atan((double) i / ATAN_TABLE_SIZE));
+        }
+    }
+
+    public static float sinDegrees(float degrees) {
+        float index = degrees * SIN_TABLE_STEPS_PER_DEGREE;
+        int i = (int) index;
+        if (index < i) {
+            i -= 1;
+        }
+        float fraction = index - i;
+        i &= SIN_TABLE_MASK;
+        float a = SIN_TABLE[i];
+        return a + (SIN_TABLE[i + 1] - a) * fraction;
+    }
+
+    public static float cosDegrees(float degrees) {
+        return sinDegrees(degrees + 90f);
+    }
+
+    public static float tanDegrees(float degrees) {
+        return sinDegrees(degrees) / cosDegrees(degrees);
+    }
+
+    /**
+     * Angle of (x, y) in degrees, in [-180, 180], like Math.atan2.
+     */
+    public static float atan2Degrees(float y, float x) {
+        float ax = Math.abs(x);
+        float ay = Math.abs(y);
+        if (ax == 0f && ay == 0f) {
+            return 0f;
+        }
+        /* first octant, then unfold */
+        boolean swap = ay > ax;
+        float ratio = swap ? ax / ay : ay / ax;
+        float index = ratio * ATAN_TABLE_SIZE;
+        int i = (int) index;
+        float angle;
+        if (i >= ATAN_TABLE_SIZE) {
+            angle = ATAN_TABLE[ATAN_TABLE_SIZE];
+        } else {
+            float a = ATAN_TABLE[i];
+            angle = a + (ATAN_TABLE[i + 1] - a) * (index - i);
+        }
+        if (swap) {
+            angle = 90f - angle;
+        }
+        if (x < 0f) {
+            angle = 180f - angle;
+        }
+        return y < 0f ? -angle : angle;
+    }
+
+    private static final HashMap<Integer, float[]> TICK_ANGLE_TABLES = new HashMap<Integer, float[]>();
+
+    /**
+     * Sine and cosine of 360 * i / numberOfTicks degrees for each i
+     * in [0, numberOfTicks), interleaved: sin0, cos0, sin1, cos1, ...
+     * Exact to float precision.  Shared; do not modify.
+     */
+    public static float[] getTickAngleTable(int numberOfTicks) {
+        synchronized (TICK_ANGLE_TABLES) {
+            float[] table = TICK_ANGLE_TABLES.get(numberOfTicks);
+            if (table == null) {
+                table = new float[numberOfTicks * 2];
+                for (int i = 0; i < numberOfTicks; i += 1) {
+                    double radians = 2.0 * Math.PI * i / numberOfTicks;
+                    table[i * 2] = (float) Math.sin(radians);
+                    table[i * 2 + 1] = (float) Math.cos(radians);
+                }
+                TICK_ANGLE_TABLES.put(numberOfTicks, table);
+            }
+            return table;
+        }
     }
 
     public static float clamp(float x, float min, float max) {
@@ -15,7 +134,11 @@ public class Utility {
     enum BezelType {
         BEZEL_NONE,
         BEZEL_SLIDE_RULE,
-        BEZEL_TACHYMETER
+        BEZEL_TACHYMETER,
+        BEZEL_TELEMETER,
+        BEZEL_PULSOMETER,
+        BEZEL_DECIMAL_MINUTES,
+        BEZEL_ELAPSED_TIME
     }
 
     enum WatchDialTextDirection {
@@ -24,11 +147,6 @@ public class Utility {
         TEXT_DIRECTION_RADIAL
     }
 
-    enum SlideRuleDial {
-        SLIDE_RULE_DIAL_INNER,
-        SLIDE_RULE_DIAL_OUTER
-    }
-
     enum WatchDialBorderStyle {
         NONE,
         SOLID,
@@ -38,6 +156,70 @@ public class Utility {
 
     enum WatchDialBackgroundStyle {
         NONE,
-        RADIAL_RIDGED
+        RADIAL_RIDGED,
+        CONIC_GRADIENT
+    }
+
+    /**
+     * Color themes as 4x5 color matrices, in the layout of
+     * android.graphics.ColorMatrix (offsets in 0 to 255).  A null
+     * matrix is the identity.
+     */
+    enum ColorTheme {
+        THEME_CLASSIC(null),
+        THEME_SEPIA(new float[]{
+                0.393f, 0.769f, 0.189f, 0, 0,
+                0.349f, 0.686f, 0.168f, 0, 0,
+                0.272f, 0.534f, 0.131f, 0, 0,
+                0, 0, 0, 1, 0
+        }),
+        THEME_NIGHT(new float[]{
+                0.299f, 0.587f, 0.114f, 0, 0,
+                0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0,
+                0, 0, 0, 1, 0
+        }),
+        THEME_ARCTIC(new float[]{
+                0.8f, 0, 0, 0, 0,
+                0, 0.9f, 0, 0, 10,
+                0, 0, 1, 0, 40,
+                0, 0, 0, 1, 0
+        });
+
+        final float[] matrix;
+
+        ColorTheme(float[] matrix) {
+            this.matrix = matrix;
+        }
+
+        /**
+         * The theme after this one, wrapping around.
+         */
+        ColorTheme next() {
+            ColorTheme[] themes = values();
+            return themes[(ordinal() + 1) % themes.length];
+        }
+
+        /**
+         * Applies the matrix to one ARGB color, the way a
+         * ColorMatrixColorFilter would.
+         */
+        int apply(int color) {
+            if (matrix == null) {
+                return color;
+            }
+            float[] in = {
+                    (color >> 16) & 0xff, (color >> 8) & 0xff, color & 0xff, (color >>> 24) & 0xff
+            };
+            int[] out = new int[4];
+            for (int row = 0; row < 4; row += 1) {
+                float value = matrix[row * 5 + 4];
+                for (int column = 0; column < 4; column += 1) {
+                    value += matrix[row * 5 + column] * in[column];
+                }
+                out[row] = Math.round(clamp(value, 0f, 255f));
+            }
+            return (out[3] << 24) | (out[0] << 16) | (out[1] << 8) | out[2];
+        }
     }
 }
@@ -0,0 +1,173 @@
+package com.webonastick.watchface;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link GestureRecognizer} with a fake clock: every event
+ * carries an explicit time, and timeouts fire only when the test
+ * advances the clock.
+ */
+public class GestureRecognizerTest {
+    private static final int REGION_SINGLE = 0;
+    private static final int REGION_MULTI = 1;
+    private static final int REGION_HOLD = 2;
+
+    private long mNowMs;
+    private List<int[]> mGestures;
+    private GestureRecognizer mRecognizer;
+
+    @Before
+    public void setUp() {
+        mNowMs = 1000;
+        mGestures = new ArrayList<>();
+        mRecognizer = new GestureRecognizer(new GestureEventHandler() {
+            @Override
+            public void onGesture(int region, int gesture) {
+                mGestures.add(new int[]{region, gesture});
+            }
+        }, 3);
+        mRecognizer.bind(REGION_SINGLE, GestureRecognizer.GESTURE_SINGLE_TAP);
+        mRecognizer.bind(REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP);
+        mRecognizer.bind(REGION_MULTI, GestureRecognizer.GESTURE_DOUBLE_TAP);
+        mRecognizer.bind(REGION_MULTI, GestureRecognizer.GESTURE_TRIPLE_TAP);
+        mRecognizer.bind(REGION_HOLD, GestureRecognizer.GESTURE_SINGLE_TAP);
+        mRecognizer.bind(REGION_HOLD, GestureRecognizer.GESTURE_PRESS_AND_HOLD);
+    }
+
+    private void tap(int region, long durationMs) {
+        mRecognizer.onTouch(region, mNowMs);
+        mNowMs += durationMs;
+        mRecognizer.onTap(region, mNowMs);
+    }
+
+    private void tap(int region) {
+        tap(region, 50);
+    }
+
+    private void advance(long ms) {
+        mNowMs += ms;
+        if (mNowMs >= mRecognizer.getDeadline()) {
+            mRecognizer.onTimeout(mNowMs);
+        }
+    }
+
+    private void assertGestures(int... regionGesturePairs) {
+        assertEquals(regionGesturePairs.length / 2, mGestures.size());
+        for (int i = 0; i < mGestures.size(); i += 1) {
+            assertEquals(regionGesturePairs[i * 2], mGestures.get(i)[0]);
+            assertEquals(regionGesturePairs[i * 2 + 1], mGestures.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void singleTapWithoutMultiTapBindingIsImmediate() {
+        tap(REGION_SINGLE);
+        assertGestures(REGION_SINGLE, GestureRecognizer.GESTURE_SINGLE_TAP);
+        assertEquals(GestureRecognizer.NO_DEADLINE, mRecognizer.getDeadline());
+    }
+
+    @Test
+    public void singleTapWithMultiTapBindingWaitsForThreshold() {
+        tap(REGION_MULTI);
+        assertGestures();
+        advance(GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS - 1);
+        assertGestures();
+        advance(1);
+        assertGestures(REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP);
+    }
+
+    @Test
+    public void doubleTap() {
+        tap(REGION_MULTI);
+        advance(200);
+        tap(REGION_MULTI);
+        advance(GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS);
+        assertGestures(REGION_MULTI, GestureRecognizer.GESTURE_DOUBLE_TAP);
+    }
+
+    @Test
+    public void tripleTapDispatchesWithoutWaiting() {
+        tap(REGION_MULTI);
+        advance(100);
+        tap(REGION_MULTI);
+        advance(100);
+        tap(REGION_MULTI);
+        assertGestures(REGION_MULTI, GestureRecognizer.GESTURE_TRIPLE_TAP);
+        assertEquals(GestureRecognizer.NO_DEADLINE, mRecognizer.getDeadline());
+    }
+
+    @Test
+    public void slowTapsAreSeparateSingleTaps() {
+        tap(REGION_MULTI);
+        mNowMs += GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS + 100; /* timeout message lost */
+        tap(REGION_MULTI);
+        advance(GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS);
+        assertGestures(
+                REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP,
+                REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP
+        );
+    }
+
+    @Test
+    public void tapInAnotherRegionFlushesPendingTaps() {
+        tap(REGION_MULTI);
+        advance(100);
+        tap(REGION_SINGLE);
+        assertGestures(
+                REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP,
+                REGION_SINGLE, GestureRecognizer.GESTURE_SINGLE_TAP
+        );
+    }
+
+    @Test
+    public void pressAndHold() {
+        tap(REGION_HOLD, GestureRecognizer.DEFAULT_PRESS_AND_HOLD_THRESHOLD_MS);
+        assertGestures(REGION_HOLD, GestureRecognizer.GESTURE_PRESS_AND_HOLD);
+    }
+
+    @Test
+    public void longPressWithoutHoldBindingIsATap() {
+        tap(REGION_SINGLE, GestureRecognizer.DEFAULT_PRESS_AND_HOLD_THRESHOLD_MS * 2);
+        assertGestures(REGION_SINGLE, GestureRecognizer.GESTURE_SINGLE_TAP);
+    }
+
+    @Test
+    public void touchCancelForgetsPress() {
+        mRecognizer.onTouch(REGION_HOLD, mNowMs);
+        mNowMs += GestureRecognizer.DEFAULT_PRESS_AND_HOLD_THRESHOLD_MS;
+        mRecognizer.onTouchCancel(mNowMs);
+        mRecognizer.onTap(REGION_HOLD, mNowMs);
+        assertGestures(REGION_HOLD, GestureRecognizer.GESTURE_SINGLE_TAP);
+    }
+
+    @Test
+    public void configurableThreshold() {
+        mRecognizer.setMultiTapThresholdMs(250);
+        tap(REGION_MULTI);
+        advance(249);
+        assertGestures();
+        advance(1);
+        assertGestures(REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP);
+    }
+
+    @Test
+    public void tapOutsideAnyRegionFlushesPendingTaps() {
+        tap(REGION_MULTI);
+        tap(GestureRecognizer.NO_REGION);
+        assertGestures(REGION_MULTI, GestureRecognizer.GESTURE_SINGLE_TAP);
+    }
+
+    @Test
+    public void cancel() {
+        tap(REGION_MULTI);
+        mRecognizer.cancel();
+        advance(GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS);
+        assertGestures();
+    }
+}
@@ -0,0 +1,82 @@
+package com.webonastick.watchface.pilotwatch;
+
+import com.webonastick.watchface.GestureEventHandler;
+import com.webonastick.watchface.GestureRecognizer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a {@link GestureRecognizer} bound the way the engine binds
+ * it, with a fake clock, and applies center-of-dial double taps the
+ * way the engine does.
+ */
+public class TapRegionTest {
+    private long mNowMs;
+    private Utility.ColorTheme mColorTheme;
+    private int mGestureCount;
+    private GestureRecognizer mRecognizer;
+
+    @Before
+    public void setUp() {
+        mNowMs = 1000;
+        mColorTheme = Utility.ColorTheme.THEME_CLASSIC;
+        mGestureCount = 0;
+        mRecognizer = new GestureRecognizer(new GestureEventHandler() {
+            @Override
+            public void onGesture(int region, int gesture) {
+                mGestureCount += 1;
+                if (region == TapRegion.CENTER_OF_DIAL && gesture == GestureRecognizer.GESTURE_DOUBLE_TAP) {
+                    mColorTheme = mColorTheme.next();
+                }
+            }
+        }, TapRegion.COUNT);
+        TapRegion.bindGestures(mRecognizer, false);
+    }
+
+    private void tap(int region) {
+        mRecognizer.onTouch(region, mNowMs);
+        mNowMs += 50;
+        mRecognizer.onTap(region, mNowMs);
+    }
+
+    private void advance(long ms) {
+        mNowMs += ms;
+        if (mNowMs >= mRecognizer.getDeadline()) {
+            mRecognizer.onTimeout(mNowMs);
+        }
+    }
+
+    @Test
+    public void centerOfDialDoubleTapIsBound() {
+        assertTrue(mRecognizer.isBound(TapRegion.CENTER_OF_DIAL, GestureRecognizer.GESTURE_DOUBLE_TAP));
+    }
+
+    @Test
+    public void doubleTapOnCenterCyclesTheme() {
+        tap(TapRegion.CENTER_OF_DIAL);
+        advance(100);
+        tap(TapRegion.CENTER_OF_DIAL);
+        advance(GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS);
+        assertEquals(Utility.ColorTheme.THEME_SEPIA, mColorTheme);
+        assertEquals(1, mGestureCount);
+    }
+
+    @Test
+    public void singleTapOnCenterKeepsTheme() {
+        tap(TapRegion.CENTER_OF_DIAL);
+        advance(GestureRecognizer.DEFAULT_MULTI_TAP_THRESHOLD_MS);
+        assertEquals(Utility.ColorTheme.THEME_CLASSIC, mColorTheme);
+    }
+
+    @Test
+    public void themesWrapAround() {
+        Utility.ColorTheme theme = Utility.ColorTheme.THEME_CLASSIC;
+        for (int i = 0; i < Utility.ColorTheme.values().length; i += 1) {
+            theme = theme.next();
+        }
+        assertEquals(Utility.ColorTheme.THEME_CLASSIC, theme);
+    }
+}
@@ -0,0 +1,124 @@
+package com.webonastick.watchface.pilotwatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the table-driven angle functions in {@link Utility} against
+ * java.lang.Math, in double precision.
+ */
+public class UtilityTest {
+    private static final double SIN_COS_TOLERANCE = 1e-6;
+    private static final double ATAN2_TOLERANCE_DEGREES = 2e-5;
+
+    @Test
+    public void sinAndCosWithinOneTurnOfZero() {
+        double maxError = 0;
+        for (int i = -3600000; i <= 3600000; i += 7) {
+            float degrees = i / 10000f;
+            double radians = Math.toRadians(degrees);
+            maxError = Math.max(maxError, Math.abs(Utility.sinDegrees(degrees) - Math.sin(radians)));
+            maxError = Math.max(maxError, Math.abs(Utility.cosDegrees(degrees) - Math.cos(radians)));
+        }
+        assertTrue("max error " + maxError, maxError < SIN_COS_TOLERANCE);
+    }
+
+    @Test
+    public void sinAndCosAtQuadrants() {
+        for (int k = -8; k <= 8; k += 1) {
+            float degrees = k * 90f;
+            assertEquals(Math.sin(Math.toRadians(degrees)), Utility.sinDegrees(degrees), SIN_COS_TOLERANCE);
+            assertEquals(Math.cos(Math.toRadians(degrees)), Utility.cosDegrees(degrees), SIN_COS_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void tanAwayFromPoles() {
+        for (int i = -890; i <= 890; i += 1) {
+            float degrees = i / 10f;
+            double expected = Math.tan(Math.toRadians(degrees));
+            /* relative, since tan grows without bound */
+            assertEquals(expected, Utility.tanDegrees(degrees), 1e-4 * Math.max(1, Math.abs(expected)));
+        }
+    }
+
+    @Test
+    public void atan2OverAGrid() {
+        double maxError = 0;
+        for (int iy = -200; iy <= 200; iy += 1) {
+            for (int ix = -200; ix <= 200; ix += 1) {
+                if (ix == 0 && iy == 0) {
+                    continue;
+                }
+                float y = iy * 0.37f;
+                float x = ix * 0.53f;
+                double expected = Math.toDegrees(Math.atan2(y, x));
+                double error = Math.abs(Utility.atan2Degrees(y, x) - expected);
+                /* -180 and 180 are the same angle */
+                error = Math.min(error, Math.abs(error - 360));
+                maxError = Math.max(maxError, error);
+            }
+        }
+        assertTrue("max error " + maxError, maxError < ATAN2_TOLERANCE_DEGREES);
+    }
+
+    @Test
+    public void atan2OnAxes() {
+        assertEquals(0f, Utility.atan2Degrees(0f, 0f), 0f);
+        assertEquals(0f, Utility.atan2Degrees(0f, 5f), ATAN2_TOLERANCE_DEGREES);
+        assertEquals(90f, Utility.atan2Degrees(5f, 0f), ATAN2_TOLERANCE_DEGREES);
+        assertEquals(180f, Utility.atan2Degrees(0f, -5f), ATAN2_TOLERANCE_DEGREES);
+        assertEquals(-90f, Utility.atan2Degrees(-5f, 0f), ATAN2_TOLERANCE_DEGREES);
+        assertEquals(45f, Utility.atan2Degrees(1f, 1f), ATAN2_TOLERANCE_DEGREES);
+        assertEquals(-135f, Utility.atan2Degrees(-1f, -1f), ATAN2_TOLERANCE_DEGREES);
+    }
+
+    @Test
+    public void modMatchesFloorDefinition() {
+        float[] ys = {1f, 360f, 0.25f};
+        for (float y : ys) {
+            for (int i = -5000; i <= 5000; i += 1) {
+                float x = i * 0.173f;
+                float expected = x - (float) Math.floor(x / y) * y;
+                float actual = Utility.mod(x, y);
+                assertTrue(x + " mod " + y + " = " + actual, actual >= 0f && actual < y);
+                assertEquals(x + " mod " + y, expected, actual, 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void modOfTinyNegativeStaysInRange() {
+        float result = Utility.mod(-1e-9f, 360f);
+        assertTrue(result >= 0f && result < 360f);
+    }
+
+    @Test
+    public void modWithNegativeDivisor() {
+        assertEquals(-1f, Utility.mod(2f, -3f), 1e-6f);
+    }
+
+    @Test
+    public void normalizeDegrees() {
+        assertEquals(0f, Utility.normalizeDegrees(360f), 0f);
+        assertEquals(270f, Utility.normalizeDegrees(-90f), 1e-4f);
+        assertEquals(30f, Utility.normalizeDegrees(750f), 1e-4f);
+        assertEquals(123.5f, Utility.normalizeDegrees(123.5f), 0f);
+    }
+
+    @Test
+    public void tickAngleTable() {
+        int[] counts = {4, 12, 60, 240};
+        for (int n : counts) {
+            float[] table = Utility.getTickAngleTable(n);
+            assertEquals(n * 2, table.length);
+            for (int i = 0; i < n; i += 1) {
+                double radians = 2.0 * Math.PI * i / n;
+                assertEquals((float) Math.sin(radians), table[i * 2], 0f);
+                assertEquals((float) Math.cos(radians), table[i * 2 + 1], 0f);
+            }
+            assertSame(table, Utility.getTickAngleTable(n));
+        }
+    }
+}